@@ -0,0 +1,179 @@
+package com.jin12.reviews_api.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * In-process read-through cache bounded by size and age.
+ * Entries are kept in least-recently-used order; putting into a full cache evicts the least recently used
+ * entry, and an entry older than the TTL is treated as missing and dropped.
+ * <p>
+ * A value loaded while its key was invalidated is returned but not stored, so a load that read the
+ * database just before a write committed cannot put the stale value back after the write invalidated it.
+ * Invalidations are counted per key, and only while a load of that key is in flight, so writes to one key
+ * never keep other keys from being cached.
+ * <p>
+ * Publishes the standard cache meters tagged cache=name: cache.gets{result=hit|miss}, cache.puts,
+ * cache.evictions{cause=size|expired|invalidated} and cache.size.
+ *
+ * @param <K> key type
+ * @param <V> value type; values are shared between callers and must not be modified
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    // Keys with loads in flight, and how often each was invalidated since the first of them started
+    private final Map<K, Loads> loading = new HashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter puts;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidatedEvictions;
+
+    /**
+     * @param name     cache name, used in metric tags
+     * @param maxSize  maximum number of entries
+     * @param ttl      how long an entry may be served after it was stored
+     * @param registry meter registry for the cache metrics
+     */
+    public BoundedCache(String name, int maxSize, Duration ttl, MeterRegistry registry) {
+        this(name, maxSize, ttl, registry, System::nanoTime);
+    }
+
+    BoundedCache(String name, int maxSize, Duration ttl, MeterRegistry registry, LongSupplier nanoClock) {
+        if (maxSize <= 0 || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("maxSize and ttl must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = Counter.builder("cache.gets").tag("cache", name).tag("result", "hit").register(registry);
+        this.misses = Counter.builder("cache.gets").tag("cache", name).tag("result", "miss").register(registry);
+        this.puts = Counter.builder("cache.puts").tag("cache", name).register(registry);
+        this.sizeEvictions = eviction(registry, name, "size");
+        this.expiredEvictions = eviction(registry, name, "expired");
+        this.invalidatedEvictions = eviction(registry, name, "invalidated");
+        Gauge.builder("cache.size", this, BoundedCache::size).tag("cache", name).register(registry);
+    }
+
+    private static Counter eviction(MeterRegistry registry, String name, String cause) {
+        return Counter.builder("cache.evictions").tag("cache", name).tag("cause", cause).register(registry);
+    }
+
+    /**
+     * Returns the cached value for the key, or loads it and stores it if cacheable accepts it.
+     * The loader runs outside the cache lock; concurrent misses for the same key may each load.
+     *
+     * @param key       the key
+     * @param loader    computes the value on a miss
+     * @param cacheable decides whether a loaded value may be stored
+     * @return the cached or loaded value
+     */
+    public V get(K key, Function<K, V> loader, Predicate<V> cacheable) {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        Loads loads;
+        long invalidationsBefore;
+        synchronized (this) {
+            loads = loading.computeIfAbsent(key, k -> new Loads());
+            loads.running++;
+            invalidationsBefore = loads.invalidations;
+        }
+        V value = null;
+        try {
+            value = loader.apply(key);
+        } finally {
+            finishLoad(key, loads, invalidationsBefore,
+                    value != null && cacheable.test(value) ? value : null);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the entry for the key, and keeps loads already in flight from storing their value.
+     *
+     * @param key the key
+     */
+    public synchronized void invalidate(K key) {
+        Loads loads = loading.get(key);
+        if (loads != null) {
+            loads.invalidations++;
+        }
+        if (entries.remove(key) != null) {
+            invalidatedEvictions.increment();
+        }
+    }
+
+    /**
+     * @return the number of entries, including expired ones not yet dropped
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (nanoClock.getAsLong() - entry.storedAt() >= ttlNanos) {
+            entries.remove(key);
+            expiredEvictions.increment();
+            return null;
+        }
+        return entry.value();
+    }
+
+    /**
+     * Ends a load of the key and stores its value, unless the key was invalidated while it ran.
+     *
+     * @param value the loaded value, or null if it must not be stored
+     */
+    private synchronized void finishLoad(K key, Loads loads, long invalidationsBefore, V value) {
+        if (--loads.running == 0) {
+            loading.remove(key);
+        }
+        if (value == null || loads.invalidations != invalidationsBefore) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, nanoClock.getAsLong()));
+        puts.increment();
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            sizeEvictions.increment();
+        }
+    }
+
+    private record Entry<V>(V value, long storedAt) {
+    }
+
+    /**
+     * Loads in flight for one key. Guarded by the cache's lock.
+     */
+    private static final class Loads {
+        private int running;
+        private long invalidations;
+    }
+}
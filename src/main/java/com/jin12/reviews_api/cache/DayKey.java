@@ -0,0 +1,23 @@
+package com.jin12.reviews_api.cache;
+
+import java.time.LocalDate;
+
+/**
+ * Cache key for content that also depends on the current day, such as reviews of the last two months.
+ * An entry built on one day is never found with the next day's key, so its body, ETag and Last-Modified
+ * always describe the day it is served on.
+ *
+ * @param key the key of the cached resource
+ * @param day the day the content is built for
+ * @param <K> key type
+ */
+public record DayKey<K>(K key, LocalDate day) {
+
+    /**
+     * @param key the key of the cached resource
+     * @return the key for today's content
+     */
+    public static <K> DayKey<K> today(K key) {
+        return new DayKey<>(key, LocalDate.now());
+    }
+}
@@ -0,0 +1,62 @@
+package com.jin12.reviews_api.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializes response bodies once for caching: UTF-8 JSON and a gzip copy for bodies of at least gzipMinBytes.
+ * Uses the application's ObjectMapper, so the bytes match what the message converters would write.
+ */
+public class ResponseSerializer {
+
+    private final ObjectMapper objectMapper;
+    private final int gzipMinBytes;
+
+    /**
+     * @param objectMapper mapper used for the JSON encoding
+     * @param gzipMinBytes smallest JSON size that is also stored gzipped; negative disables gzip
+     */
+    public ResponseSerializer(ObjectMapper objectMapper, int gzipMinBytes) {
+        this.objectMapper = objectMapper;
+        this.gzipMinBytes = gzipMinBytes;
+    }
+
+    /**
+     * @param body         the response object
+     * @param etag         entity tag of the version the body was built from
+     * @param lastModified when that version was last modified, or null if unknown
+     * @param <T>          body type
+     * @return the body with its encodings and validators
+     * @throws IllegalStateException if the body cannot be serialized
+     */
+    public <T> SerializedResponse<T> serialize(T body, String etag, Instant lastModified) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + body.getClass().getSimpleName(), e);
+        }
+        byte[] gzip = gzipMinBytes >= 0 && json.length >= gzipMinBytes ? gzip(json) : null;
+        // Keep the gzip copy only when it actually saves bytes
+        if (gzip != null && gzip.length >= json.length) {
+            gzip = null;
+        }
+        return new SerializedResponse<>(body, json, gzip, etag, lastModified);
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,16 @@
+package com.jin12.reviews_api.cache;
+
+import java.time.Instant;
+
+/**
+ * A response body together with its JSON encoding, so cache hits can be written without serializing again.
+ *
+ * @param body         the response object
+ * @param json         the body serialized as UTF-8 JSON
+ * @param gzip         the JSON gzip-compressed, or null when it was too small to be worth compressing
+ * @param etag         entity tag of the version the body was built from
+ * @param lastModified when that version was last modified, or null if unknown
+ * @param <T>          body type
+ */
+public record SerializedResponse<T>(T body, byte[] json, byte[] gzip, String etag, Instant lastModified) {
+}
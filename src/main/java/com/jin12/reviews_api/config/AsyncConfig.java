@@ -0,0 +1,49 @@
+package com.jin12.reviews_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    /**
+     * Executor used to generate AI reviews concurrently.
+     * Each task mostly waits on HTTP calls, so a virtual thread per task is cheap
+     * and keeps blocked calls from tying up Tomcat request threads.
+     *
+     * @return an ExecutorService that starts a new virtual thread for each task
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService aiReviewExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Fixed-size pool for the background review pre-generation worker.
+     * The pool size caps how many products are filled at the same time.
+     *
+     * @param workers number of worker threads
+     * @return a fixed thread pool with the given number of threads
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService reviewJobExecutor(@Value("${reviews.pregeneration.workers:2}") int workers) {
+        return Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("review-job-", 0).factory());
+    }
+
+    /**
+     * Single thread that fetches the prefetched weather snapshots in the background.
+     * Fetches run one at a time, which also keeps the weather API call rate low.
+     *
+     * @return a single-thread executor for weather refreshes
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService weatherRefreshExecutor() {
+        return Executors.newSingleThreadExecutor(Thread.ofPlatform().name("weather-refresh").daemon().factory());
+    }
+}
@@ -0,0 +1,72 @@
+package com.jin12.reviews_api.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jin12.reviews_api.cache.BoundedCache;
+import com.jin12.reviews_api.cache.DayKey;
+import com.jin12.reviews_api.cache.ResponseSerializer;
+import com.jin12.reviews_api.cache.SerializedResponse;
+import com.jin12.reviews_api.dto.ReviewsRespons;
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * In-process caches for hot read endpoints and authentication.
+ */
+@Configuration
+public class CacheConfig {
+
+    /**
+     * Built product review responses keyed by product key and day, stored already serialized so a hit is
+     * written as bytes. The day in the key moves the review window and the validators on at midnight.
+     * ReviewService invalidates today's entry whenever the product's reviews change; the TTL bounds
+     * staleness from anything else.
+     *
+     * @param maxSize maximum number of cached products
+     * @param ttlMs   how long a response may be served from the cache
+     * @return the response cache
+     */
+    @Bean
+    public BoundedCache<DayKey<ProductKey>, SerializedResponse<ReviewsRespons>> reviewsResponseCache(
+            MeterRegistry registry,
+            @Value("${reviews.cache.max-size:10000}") int maxSize,
+            @Value("${reviews.cache.ttl-ms:300000}") long ttlMs) {
+        return new BoundedCache<>("reviews", maxSize, Duration.ofMillis(ttlMs), registry);
+    }
+
+    /**
+     * Users loaded for authentication, keyed by username, so password logins and tokens without a user id
+     * do not query the database each time. UserService invalidates an entry when it changes the user;
+     * the TTL bounds staleness from changes made elsewhere.
+     *
+     * @param maxSize maximum number of cached users
+     * @param ttlMs   how long a user may be served from the cache
+     * @return the user cache
+     */
+    @Bean
+    public BoundedCache<String, User> userCache(
+            MeterRegistry registry,
+            @Value("${reviews.user-cache.max-size:10000}") int maxSize,
+            @Value("${reviews.user-cache.ttl-ms:60000}") long ttlMs) {
+        return new BoundedCache<>("users", maxSize, Duration.ofMillis(ttlMs), registry);
+    }
+
+    /**
+     * Serializer for cached responses, using the same ObjectMapper as the HTTP message converters.
+     *
+     * @param objectMapper the application's ObjectMapper
+     * @param gzipMinBytes smallest response that is also kept gzipped; negative disables gzip
+     * @return the response serializer
+     */
+    @Bean
+    public ResponseSerializer responseSerializer(
+            ObjectMapper objectMapper,
+            @Value("${reviews.cache.gzip-min-bytes:1024}") int gzipMinBytes) {
+        return new ResponseSerializer(objectMapper, gzipMinBytes);
+    }
+}
@@ -0,0 +1,89 @@
+package com.jin12.reviews_api.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Outbound HTTP clients for the AI, weather and product-info integrations.
+ * Each destination gets its own JDK HttpClient with its own connect and read timeout, so a slow AI host
+ * does not dictate how long a weather call may wait. Connections (HTTP/2 where the server supports it,
+ * otherwise pooled keep-alive HTTP/1.1) are reused across requests to the same destination, and all
+ * clients share one executor instead of starting a thread pool each. The templates are built from
+ * Spring's RestTemplateBuilder, which records http.client.requests metrics tagged with the destination host.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * Executor shared by all outbound HttpClients for their internal and asynchronous work.
+     *
+     * @return a cached thread pool of daemon threads
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService httpClientExecutor() {
+        return Executors.newCachedThreadPool(Thread.ofPlatform().name("http-client-", 0).daemon().factory());
+    }
+
+    /**
+     * RestTemplate for the 1minAI endpoint. AI answers are slow, so the read timeout is long.
+     */
+    @Bean
+    public RestTemplate aiRestTemplate(RestTemplateBuilder builder,
+                                       @Qualifier("httpClientExecutor") ExecutorService httpClientExecutor,
+                                       @Value("${http.client.ai.connect-timeout-ms:${http.client.connect-timeout-ms:2000}}") long connectTimeoutMs,
+                                       @Value("${http.client.ai.read-timeout-ms:30000}") long readTimeoutMs) {
+        return build(builder, httpClient(httpClientExecutor, connectTimeoutMs), readTimeoutMs);
+    }
+
+    /**
+     * RestTemplate for the OpenWeather API.
+     */
+    @Bean
+    public RestTemplate weatherRestTemplate(RestTemplateBuilder builder,
+                                            @Qualifier("httpClientExecutor") ExecutorService httpClientExecutor,
+                                            @Value("${http.client.weather.connect-timeout-ms:${http.client.connect-timeout-ms:2000}}") long connectTimeoutMs,
+                                            @Value("${http.client.weather.read-timeout-ms:3000}") long readTimeoutMs) {
+        return build(builder, httpClient(httpClientExecutor, connectTimeoutMs), readTimeoutMs);
+    }
+
+    /**
+     * RestTemplate for the customers' product-info URLs used by the withUrl mode.
+     */
+    @Bean
+    public RestTemplate productInfoRestTemplate(RestTemplateBuilder builder,
+                                                @Qualifier("httpClientExecutor") ExecutorService httpClientExecutor,
+                                                @Value("${http.client.product-info.connect-timeout-ms:${http.client.connect-timeout-ms:2000}}") long connectTimeoutMs,
+                                                @Value("${http.client.product-info.read-timeout-ms:5000}") long readTimeoutMs) {
+        return build(builder, httpClient(httpClientExecutor, connectTimeoutMs), readTimeoutMs);
+    }
+
+    private static HttpClient httpClient(Executor executor, long connectTimeoutMs) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+
+    private static RestTemplate build(RestTemplateBuilder builder, HttpClient httpClient, long readTimeoutMs) {
+        return builder
+                .requestFactory(() -> {
+                    JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+                    factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+                    return factory;
+                })
+                .build();
+    }
+}
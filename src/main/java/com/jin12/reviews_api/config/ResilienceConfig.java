@@ -0,0 +1,71 @@
+package com.jin12.reviews_api.config;
+
+import com.jin12.reviews_api.resilience.CallGuard;
+import com.jin12.reviews_api.resilience.CircuitBreaker;
+import com.jin12.reviews_api.resilience.TokenBucket;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Circuit breakers, rate limits and bulkheads for the external dependencies.
+ * Each breaker reads its settings from &lt;prefix&gt;.circuit-breaker.*, with the defaults below.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    /**
+     * Breaker for the 1minAI endpoint. AI answers are slow by nature, so only very slow calls count as failures.
+     */
+    @Bean
+    public CircuitBreaker aiCircuitBreaker(Environment env, MeterRegistry registry) {
+        return circuitBreaker("ai", "reviews.ai.circuit-breaker.", 20000, env, registry);
+    }
+
+    /**
+     * Breaker for the OpenWeather API.
+     */
+    @Bean
+    public CircuitBreaker weatherCircuitBreaker(Environment env, MeterRegistry registry) {
+        return circuitBreaker("weather", "weather.circuit-breaker.", 2000, env, registry);
+    }
+
+    private static CircuitBreaker circuitBreaker(String name, String prefix, long defaultSlowCallMs,
+                                                 Environment env, MeterRegistry registry) {
+        return new CircuitBreaker(
+                name,
+                env.getProperty(prefix + "failure-rate-threshold", Integer.class, 50),
+                env.getProperty(prefix + "window-size", Integer.class, 20),
+                env.getProperty(prefix + "minimum-calls", Integer.class, 5),
+                Duration.ofMillis(env.getProperty(prefix + "slow-call-ms", Long.class, defaultSlowCallMs)),
+                Duration.ofMillis(env.getProperty(prefix + "open-ms", Long.class, 30000L)),
+                env.getProperty(prefix + "half-open-calls", Integer.class, 2),
+                registry);
+    }
+
+    /**
+     * Guard for calls to the 1minAI endpoint.
+     *
+     * @param aiCircuitBreaker breaker that trips when the AI endpoint keeps failing
+     * @param permitsPerSecond long-run AI calls started per second
+     * @param burst            how many AI calls may start at once after an idle period
+     * @param maxConcurrent    maximum AI calls in flight
+     * @param maxWaitMs        how long a call waits for a free slot before it is rejected
+     * @return the CallGuard wrapping every AI request
+     */
+    @Bean
+    public CallGuard aiCallGuard(@Qualifier("aiCircuitBreaker") CircuitBreaker aiCircuitBreaker,
+                                 MeterRegistry registry,
+                                 @Value("${reviews.ai.rate-limit.permits-per-second:2}") double permitsPerSecond,
+                                 @Value("${reviews.ai.rate-limit.burst:10}") long burst,
+                                 @Value("${reviews.ai.bulkhead.max-concurrent:8}") int maxConcurrent,
+                                 @Value("${reviews.ai.bulkhead.max-wait-ms:0}") long maxWaitMs) {
+        return new CallGuard("ai", aiCircuitBreaker, new TokenBucket(permitsPerSecond, burst),
+                maxConcurrent, maxWaitMs, registry);
+    }
+}
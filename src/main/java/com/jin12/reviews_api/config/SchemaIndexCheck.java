@@ -0,0 +1,102 @@
+package com.jin12.reviews_api.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Verifies at startup, after the migrations have run, that the indexes the hot queries rely on exist.
+ * Without them those queries still work but scan whole tables, which only shows once the data has grown,
+ * so a missing index stops the application instead. Disabled with reviews.schema.verify-indexes=false.
+ */
+@Component
+public class SchemaIndexCheck implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaIndexCheck.class);
+
+    /**
+     * Required index names per table, created by the db/migration scripts.
+     */
+    static final Map<String, List<String>> REQUIRED_INDEXES = Map.of(
+            "reviews", List.of("idx_reviews_product_date_desc_id"),
+            "products", List.of("idx_products_user_name", "idx_products_user_category"),
+            "api_key", List.of("idx_api_key_expires_at"));
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+
+    public SchemaIndexCheck(DataSource dataSource,
+                            @Value("${reviews.schema.verify-indexes:true}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @throws IllegalStateException if a required index is missing
+     * @throws SQLException          if the database metadata cannot be read
+     */
+    @Override
+    public void run(ApplicationArguments args) throws SQLException {
+        if (!enabled) {
+            return;
+        }
+        List<String> missing = findMissingIndexes(REQUIRED_INDEXES);
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Missing database indexes " + missing
+                    + "; run the db/migration scripts or set reviews.schema.verify-indexes=false");
+        }
+        log.info("run – all {} required index(es) present", REQUIRED_INDEXES.values().stream().mapToInt(List::size).sum());
+    }
+
+    /**
+     * @param required index names per table
+     * @return the required indexes that do not exist, as "table.index"
+     * @throws SQLException if the database metadata cannot be read
+     */
+    List<String> findMissingIndexes(Map<String, List<String>> required) throws SQLException {
+        List<String> missing = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (Map.Entry<String, List<String>> table : required.entrySet()) {
+                Set<String> existing = indexNames(metaData, connection.getSchema(), table.getKey());
+                for (String index : table.getValue()) {
+                    if (!existing.contains(index.toLowerCase(Locale.ROOT))) {
+                        missing.add(table.getKey() + "." + index);
+                    }
+                }
+            }
+        }
+        return missing;
+    }
+
+    // Lower-cased index names of a table; unquoted identifiers are stored in upper or lower case depending on the database
+    private static Set<String> indexNames(DatabaseMetaData metaData, String schema, String table) throws SQLException {
+        String storedTable = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT)
+                : metaData.storesLowerCaseIdentifiers() ? table.toLowerCase(Locale.ROOT) : table;
+        Set<String> names = new HashSet<>();
+        try (ResultSet rs = metaData.getIndexInfo(null, schema, storedTable, false, true)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                if (name != null) {
+                    names.add(name.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return names;
+    }
+}
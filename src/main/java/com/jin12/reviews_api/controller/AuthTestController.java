@@ -4,17 +4,17 @@ import com.jin12.reviews_api.exception.UnauthorizedException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import com.jin12.reviews_api.model.User;
+import com.jin12.reviews_api.security.AuthenticatedUser;
 
 @RestController
 @RequestMapping("/test-auth")
 public class AuthTestController {
 
     @GetMapping
-    public ResponseEntity<String> testAccess(@AuthenticationPrincipal User user) {
+    public ResponseEntity<String> testAccess(@AuthenticationPrincipal AuthenticatedUser user) {
         if (user == null) {
             throw new UnauthorizedException("User is not authenticated");
         }
-        return ResponseEntity.ok("✅ Authenticated as: " + user.getUsername());
+        return ResponseEntity.ok("✅ Authenticated as: " + user.username());
     }
 }
\ No newline at end of file
@@ -1,27 +1,42 @@
 package com.jin12.reviews_api.controller;
 
+import com.jin12.reviews_api.cache.SerializedResponse;
 import com.jin12.reviews_api.dto.*;
 import com.jin12.reviews_api.exception.*;
 import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductKey;
 import com.jin12.reviews_api.model.Review;
-import com.jin12.reviews_api.model.User;
 import com.jin12.reviews_api.dto.ProductInfo;
+import com.jin12.reviews_api.security.AuthenticatedUser;
 import com.jin12.reviews_api.service.ApiKeyService;
 import com.jin12.reviews_api.service.ProductService;
 import com.jin12.reviews_api.service.ReviewService;
+import com.jin12.reviews_api.service.UserService;
 import lombok.RequiredArgsConstructor;
-import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.*;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * REST controller for managing products and reviews.
@@ -32,52 +47,480 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ProductController {
     private static final Logger log = LoggerFactory.getLogger(ProductController.class);
+    private static final Pattern WINDOW_PATTERN = Pattern.compile("(\\d{1,5})d");
+    // Longest stats window, about ten years
+    private static final int MAX_WINDOW_DAYS = 3660;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_PRODUCT_PAGE_SIZE = 100;
+    private static final int MAX_PRODUCT_PAGE_SIZE = 1000;
+    private static final int MAX_STATS_BATCH_SIZE = 100;
+    // Fields of ProductRespons that can be selected in GET /product/all, in response order
+    private static final List<String> PRODUCT_FIELDS = List.of("productId", "productName", "category", "tags");
 
     private final ProductService productService;
     private final ReviewService reviewService;
     private final ApiKeyService apiKeyService;
+    private final UserService userService;
+    @Qualifier("productInfoRestTemplate")
+    private final RestTemplate productInfoRestTemplate;
 
     /**
      * Retrieves all reviews for a given product.
+     * Responses carry a weak ETag and Last-Modified taken from the product's review version, which is read
+     * before anything else: a matching If-None-Match (or, without it, a current If-Modified-Since) is answered
+     * with 304 Not Modified without loading reviews or serializing anything.
+     * Without a window the response is written from its pre-serialized JSON, gzipped when the client accepts it.
      *
-     * @param productId   the client-visible product ID (without user prefix)
-     * @param currentUser the authenticated user
-     * @return a ResponseEntity containing a ReviewsRespons object with review data
+     * @param productId      the client-visible product ID (without user prefix)
+     * @param window         optional stats window such as "30d"; stats cover the last two months
+     *                       when omitted; allTimeAverage and allTimeReviews always cover every review
+     * @param requestHeaders the request headers, for Accept-Encoding and the conditional headers
+     * @param currentUser    the authenticated user
+     * @return a ResponseEntity containing a ReviewsRespons object with review data, its JSON bytes, or 304
+     * @throws BadRequestException if the window is not a number of days between 1 and MAX_WINDOW_DAYS
      */
     @GetMapping("/{productId}")
-    public ResponseEntity<ReviewsRespons> getReviews(
+    public ResponseEntity<?> getReviews(
             @PathVariable String productId,
-            @AuthenticationPrincipal User currentUser) {
-        String fullProductId = currentUser.getId().toString() + productId;
-        log.info("getReviews – productId={}, fullProductId={}, userId={}", productId, fullProductId, currentUser.getId());
-        ReviewsRespons resp = reviewService.getReviewsForProduct(fullProductId);
-        log.debug("getReviews – returning {} reviews for fullProductId={}", resp.getReviews().size(), fullProductId);
-        return ResponseEntity.ok(resp);
+            @RequestParam(required = false) String window,
+            @RequestHeader HttpHeaders requestHeaders,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        ProductKey productKey = new ProductKey(currentUser.id(), productId);
+        log.info("getReviews – productId={}, userId={}, window={}", productId, currentUser.id(), window);
+        Integer windowDays = parseWindowDays(window);
+
+        LocalDate today = LocalDate.now();
+        Optional<ContentVersion> version = reviewService.getReviewsVersion(productKey);
+        if (version.isPresent()) {
+            String etag = version.get().etag(today);
+            Instant lastModified = version.get().lastModified(today);
+            if (notModified(requestHeaders, etag, lastModified)) {
+                log.debug("getReviews – not modified productKey={}", productKey);
+                return notModifiedResponse(etag, lastModified);
+            }
+        }
+
+        if (windowDays != null) {
+            ReviewsRespons resp = reviewService.getReviewsForProduct(productKey, windowDays);
+            log.debug("getReviews – returning {} reviews for productKey={}", resp.getReviews().size(), productKey);
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+            version.ifPresent(v -> builder.eTag(v.etag(today)).lastModified(v.lastModified(today)));
+            return builder.body(resp);
+        }
+        SerializedResponse<ReviewsRespons> serialized = reviewService.getSerializedReviewsForProduct(productKey);
+        log.debug("getReviews – returning {} reviews for productKey={}",
+                serialized.body().getReviews().size(), productKey);
+        return serializedBody(serialized, requestHeaders.getFirst(HttpHeaders.ACCEPT_ENCODING));
     }
 
     /**
-     * Retrieves a list of all products for the authenticated user.
+     * Builds a response that writes the serialized JSON as is, skipping the JSON message converter.
      *
-     * @param currentUser the authenticated user
-     * @return a ResponseEntity containing a list of ProductRespons objects
+     * @param serialized     the serialized response
+     * @param acceptEncoding the Accept-Encoding header, or null
+     * @return a ResponseEntity with the JSON or gzip bytes
+     */
+    static ResponseEntity<byte[]> serializedBody(SerializedResponse<?> serialized, String acceptEncoding) {
+        boolean gzipped = serialized.gzip() != null && acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(serialized.etag());
+        if (serialized.lastModified() != null) {
+            builder.lastModified(serialized.lastModified());
+        }
+        if (serialized.gzip() != null) {
+            builder.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (gzipped) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return builder.body(serialized.gzip());
+        }
+        return builder.body(serialized.json());
+    }
+
+    /**
+     * Evaluates If-None-Match, or If-Modified-Since when no If-None-Match was sent, against the current
+     * version of a resource. Entity tags are compared weakly, so a gzip and a plain copy match alike.
+     *
+     * @param requestHeaders the request headers
+     * @param etag           the current entity tag
+     * @param lastModified   the current Last-Modified, or null if unknown
+     * @return true if the client's copy is current
+     */
+    static boolean notModified(HttpHeaders requestHeaders, String etag, Instant lastModified) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            ETag current = ETag.create(etag);
+            for (String header : ifNoneMatch) {
+                for (ETag tag : ETag.parse(header)) {
+                    if (tag.isWildcard() || tag.compare(current, false)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        // HTTP dates have whole seconds
+        return lastModified != null && ifModifiedSince >= 0
+                && lastModified.getEpochSecond() * 1000 <= ifModifiedSince;
+    }
+
+    private static ResponseEntity<?> notModifiedResponse(String etag, Instant lastModified) {
+        ResponseEntity.HeadersBuilder<?> builder = ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag);
+        if (lastModified != null) {
+            builder.lastModified(lastModified);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Tells whether an Accept-Encoding header lists gzip without q=0.
+     *
+     * @param acceptEncoding the header value, or null
+     * @return true if a gzip body may be sent
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim().toLowerCase(Locale.ROOT).equals("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().toLowerCase(Locale.ROOT);
+                if (param.startsWith("q=") && param.substring(2).matches("0(\\.0{0,3})?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parses a stats window of the form "&lt;days&gt;d", e.g. "30d".
+     *
+     * @param window the window parameter, or null
+     * @return the number of days, or null when no window was given
+     * @throws BadRequestException if the window is malformed or out of range
+     */
+    static Integer parseWindowDays(String window) {
+        if (window == null || window.isBlank()) {
+            return null;
+        }
+        Matcher matcher = WINDOW_PATTERN.matcher(window.trim());
+        if (matcher.matches()) {
+            int days = Integer.parseInt(matcher.group(1));
+            if (days >= 1 && days <= MAX_WINDOW_DAYS) {
+                return days;
+            }
+        }
+        throw new BadRequestException("Invalid window '" + window + "', expected 1d to " + MAX_WINDOW_DAYS + "d");
+    }
+
+    /**
+     * Lists all reviews of a product, newest first, one page at a time.
+     * Pages are found by seeking past the last review of the previous page on (date, id), so a deep page
+     * costs the same as the first. Pass the nextCursor of a page as cursor to get the next one; it is
+     * null on the last page.
+     *
+     * @param productId     the client-visible product ID (without user prefix)
+     * @param cursor        optional nextCursor from the previous page
+     * @param limit         page size, 1 to MAX_PAGE_SIZE, default DEFAULT_PAGE_SIZE
+     * @param rating        optional rating 1 to 5
+     * @param generatedByAI optional "true" for AI-generated or "false" for human reviews only
+     * @param from          optional first date (ISO yyyy-MM-dd), inclusive
+     * @param to            optional last date (ISO yyyy-MM-dd), inclusive
+     * @param currentUser   the authenticated user
+     * @return a ResponseEntity containing a ReviewPage
+     * @throws BadRequestException      if a parameter is malformed or out of range
+     * @throws ProductNotFoundException if the product does not exist
+     */
+    @GetMapping("/{productId}/reviews")
+    public ResponseEntity<ReviewPage> listReviews(
+            @PathVariable String productId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String limit,
+            @RequestParam(required = false) String rating,
+            @RequestParam(required = false) String generatedByAI,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        ProductKey productKey = new ProductKey(currentUser.id(), productId);
+        log.info("listReviews – productId={}, userId={}, limit={}, rating={}, generatedByAI={}, from={}, to={}",
+                productId, currentUser.id(), limit, rating, generatedByAI, from, to);
+        ReviewFilter filter = new ReviewFilter(parseRating(rating), parseGeneratedByAI(generatedByAI),
+                parseDate("from", from), parseDate("to", to));
+        if (filter.from() != null && filter.to() != null && filter.from().isAfter(filter.to())) {
+            throw new BadRequestException("'from' must not be after 'to'");
+        }
+        ReviewPage page = reviewService.getReviewPage(productKey, filter, parseCursor(cursor),
+                parsePageSize(limit, DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+        log.debug("listReviews – returning {} reviews for productKey={}", page.getReviews().size(), productKey);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * @param limit       the limit parameter, or null
+     * @param defaultSize page size when no limit was given
+     * @param maxSize     largest allowed page size
+     * @return the page size
+     * @throws BadRequestException if the limit is not a number between 1 and maxSize
+     */
+    static int parsePageSize(String limit, int defaultSize, int maxSize) {
+        if (limit == null || limit.isBlank()) {
+            return defaultSize;
+        }
+        if (limit.trim().matches("\\d{1,5}")) {
+            int size = Integer.parseInt(limit.trim());
+            if (size >= 1 && size <= maxSize) {
+                return size;
+            }
+        }
+        throw new BadRequestException("Invalid limit '" + limit + "', expected 1 to " + maxSize);
+    }
+
+    /**
+     * @param rating the rating parameter, or null
+     * @return the rating, or null when none was given
+     * @throws BadRequestException if the rating is not a number between 1 and 5
+     */
+    static Integer parseRating(String rating) {
+        if (rating == null || rating.isBlank()) {
+            return null;
+        }
+        if (rating.trim().matches("[1-5]")) {
+            return Integer.parseInt(rating.trim());
+        }
+        throw new BadRequestException("Invalid rating '" + rating + "', expected 1 to 5");
+    }
+
+    /**
+     * @param generatedByAI the generatedByAI parameter, or null
+     * @return true or false, or null when none was given
+     * @throws BadRequestException if the value is not "true" or "false"
+     */
+    static Boolean parseGeneratedByAI(String generatedByAI) {
+        if (generatedByAI == null || generatedByAI.isBlank()) {
+            return null;
+        }
+        return switch (generatedByAI.trim().toLowerCase(Locale.ROOT)) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new BadRequestException("Invalid generatedByAI '" + generatedByAI + "', expected true or false");
+        };
+    }
+
+    /**
+     * @param name  the parameter name, for the error message
+     * @param value an ISO date (yyyy-MM-dd), or null
+     * @return the date, or null when none was given
+     * @throws BadRequestException if the value is not an ISO date
+     */
+    static LocalDate parseDate(String name, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid " + name + " '" + value + "', expected yyyy-MM-dd");
+        }
+    }
+
+    /**
+     * @param cursor the cursor parameter, or null
+     * @return the decoded cursor, or null for the first page
+     * @throws BadRequestException if the cursor was not produced by this API
+     */
+    static ReviewCursor parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return ReviewCursor.decode(cursor.trim());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Retrieves the authenticated user's products, one page at a time.
+     * Products are read as lightweight rows without loading entities, and each page seeks past the last
+     * product of the previous one, so a deep page costs the same as the first. When there are more products
+     * the response has a Link header with rel="next" pointing at the next page.
+     * Responses carry a weak ETag and Last-Modified from the user's product list version, which changes
+     * whenever a product is added or deleted; a client with a current copy gets 304 Not Modified without
+     * the products being loaded.
+     *
+     * @param cursor         optional cursor from the previous page's next link
+     * @param limit          page size, 1 to MAX_PRODUCT_PAGE_SIZE, default DEFAULT_PRODUCT_PAGE_SIZE
+     * @param sort           optional "id" (default), "name" or "category"
+     * @param fields         optional comma-separated subset of productId, productName, category and tags
+     * @param requestHeaders the request headers, for the conditional headers
+     * @param currentUser    the authenticated user
+     * @return a ResponseEntity containing a list of ProductRespons objects (or only the selected fields), or 304
+     * @throws BadRequestException if a parameter is malformed or the cursor belongs to another sort order
      */
     @GetMapping("/all")
-    public ResponseEntity<List<ProductRespons>> getAllProducts(
-            @AuthenticationPrincipal User currentUser) {
-        List<Product> products = productService.getProductsByUser(currentUser.getId());
-        List<ProductRespons> productResponsList = new ArrayList<>();
-        for (Product product : products) {
-            // Remove userId prefix from stored productId
-            int userIdSize = currentUser.getId().toString().length();
-            String productId = product.getProductId().substring(userIdSize);
-            productResponsList.add(ProductRespons.builder()
+    public ResponseEntity<?> getAllProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String limit,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String fields,
+            @RequestHeader HttpHeaders requestHeaders,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        ProductSort productSort = parseSort(sort);
+        ProductCursor productCursor = parseProductCursor(cursor, productSort);
+        int pageSize = parsePageSize(limit, DEFAULT_PRODUCT_PAGE_SIZE, MAX_PRODUCT_PAGE_SIZE);
+        Set<String> selectedFields = parseFields(fields);
+
+        // Read before the products, so the returned tag is never newer than the list
+        Optional<ContentVersion> version = productService.getProductListVersion(currentUser.id());
+        if (version.isPresent() && notModified(requestHeaders, version.get().etag(), version.get().updatedAt())) {
+            return notModifiedResponse(version.get().etag(), version.get().updatedAt());
+        }
+        ProductPage page = productService.getProductPage(currentUser.id(), productSort, productCursor, pageSize);
+        log.debug("getAllProducts – returning {} products for userId={}", page.getProducts().size(), currentUser.id());
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        version.ifPresent(v -> {
+            builder.eTag(v.etag());
+            if (v.updatedAt() != null) {
+                builder.lastModified(v.updatedAt());
+            }
+        });
+        if (page.getNextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .build().toUriString();
+            builder.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        if (selectedFields == null) {
+            return builder.body(page.getProducts());
+        }
+        return builder.body(page.getProducts().stream().map(p -> selectFields(p, selectedFields)).toList());
+    }
+
+    /**
+     * @param sort the sort parameter, or null
+     * @return the sort order, ID when none was given
+     * @throws BadRequestException if the value names no sort order
+     */
+    static ProductSort parseSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return ProductSort.ID;
+        }
+        try {
+            return ProductSort.parse(sort);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid sort '" + sort + "', expected id, name or category");
+        }
+    }
+
+    /**
+     * @param cursor the cursor parameter, or null
+     * @param sort   the requested sort order
+     * @return the decoded cursor, or null for the first page
+     * @throws BadRequestException if the cursor was not produced by this API or belongs to another sort order
+     */
+    static ProductCursor parseProductCursor(String cursor, ProductSort sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        ProductCursor decoded;
+        try {
+            decoded = ProductCursor.decode(cursor.trim());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        if (decoded.sort() != sort) {
+            throw new BadRequestException("Cursor does not match sort '" + sort.name().toLowerCase(Locale.ROOT) + "'");
+        }
+        return decoded;
+    }
+
+    /**
+     * @param fields the fields parameter, or null
+     * @return the selected fields in response order, or null when all fields are wanted
+     * @throws BadRequestException if a field is unknown
+     */
+    static Set<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> selected = new HashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!PRODUCT_FIELDS.contains(name)) {
+                throw new BadRequestException("Invalid field '" + name + "', expected " + String.join(", ", PRODUCT_FIELDS));
+            }
+            selected.add(name);
+        }
+        Set<String> ordered = new LinkedHashSet<>(PRODUCT_FIELDS);
+        ordered.retainAll(selected);
+        return ordered;
+    }
+
+    private static Map<String, Object> selectFields(ProductRespons product, Set<String> fields) {
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (String field : fields) {
+            switch (field) {
+                case "productId" -> selected.put(field, product.getProductId());
+                case "productName" -> selected.put(field, product.getProductName());
+                case "category" -> selected.put(field, product.getCategory());
+                case "tags" -> selected.put(field, product.getTags());
+                default -> throw new IllegalStateException("Unknown field " + field);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Retrieves the review statistics of several of the user's products at once, over the last two months,
+     * with allTimeAverage and allTimeReviews over every review. All products are read with one query from
+     * their rating totals and one from their rating buckets; no reviews are loaded and no AI generation
+     * is triggered. Products that do not exist get an entry with an error instead of stats.
+     *
+     * @param request     the client-visible product IDs, at most MAX_STATS_BATCH_SIZE
+     * @param currentUser the authenticated user
+     * @return a ResponseEntity containing one StatsBatchEntry per distinct requested ID, in request order
+     * @throws BadRequestException if the list is missing, empty, too long or contains a blank ID
+     */
+    @PostMapping("/stats:batch")
+    public ResponseEntity<StatsBatchResponse> getStatsBatch(@RequestBody StatsBatchRequest request,
+                                                            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        List<String> productIds = request.getProductIds();
+        if (productIds == null || productIds.isEmpty() || productIds.size() > MAX_STATS_BATCH_SIZE) {
+            throw new BadRequestException("productIds must list 1 to " + MAX_STATS_BATCH_SIZE + " products");
+        }
+        Set<String> distinctIds = new LinkedHashSet<>();
+        for (String productId : productIds) {
+            if (productId == null || productId.isBlank()) {
+                throw new BadRequestException("productIds must not contain blank IDs");
+            }
+            distinctIds.add(productId);
+        }
+        log.info("getStatsBatch – {} products for userId={}", distinctIds.size(), currentUser.id());
+
+        Map<String, ReviewStatsResponse> stats =
+                reviewService.getProductStatsBatch(currentUser.id(), List.copyOf(distinctIds));
+        List<StatsBatchEntry> results = new ArrayList<>(distinctIds.size());
+        for (String productId : distinctIds) {
+            ReviewStatsResponse productStats = stats.get(productId);
+            results.add(StatsBatchEntry.builder()
                     .productId(productId)
-                    .productName(product.getProductName())
-                    .category(product.getCategory())
-                    .tags(product.getTags())
+                    .stats(productStats)
+                    .error(productStats == null ? "Product does not exist" : null)
                     .build());
         }
-        return ResponseEntity.ok(productResponsList);
+        log.debug("getStatsBatch – found {} of {} products for userId={}", stats.size(), distinctIds.size(),
+                currentUser.id());
+        return ResponseEntity.ok(StatsBatchResponse.builder().results(results).build());
     }
 
     /**
@@ -85,7 +528,7 @@ public class ProductController {
      * Supported modes: "productOnly", "withUrl", "withDetails", "customReview".
      *
      * @param productRequest the request body containing product/review details
-     * @param userDetails    the authenticated user's details
+     * @param user           the authenticated user
      * @return a ResponseEntity with operation-specific response
      * @throws BadRequestException         if the mode is invalid
      * @throws ApiKeyException             if API key decryption fails or is missing
@@ -95,9 +538,8 @@ public class ProductController {
      */
     @PostMapping
     public ResponseEntity<Object> addProducts(@RequestBody ProductRequest productRequest,
-                                              @AuthenticationPrincipal UserDetails userDetails) {
-        User user = (User) userDetails;
-        log.info("addProducts – mode={} by userId={}", productRequest.getMode(), user.getId());
+                                              @AuthenticationPrincipal AuthenticatedUser user) {
+        log.info("addProducts – mode={} by userId={}", productRequest.getMode(), user.id());
 
         ResponseEntity<Object> respons;
         switch (productRequest.getMode()) {
@@ -114,7 +556,7 @@ public class ProductController {
                 respons = handleCustomReview(productRequest, user);
                 break;
             default:
-                log.warn("addProducts – unknown mode={} by userId={}", productRequest.getMode(), user.getId());
+                log.warn("addProducts – unknown mode={} by userId={}", productRequest.getMode(), user.id());
                 throw new BadRequestException("Invalid mode");
         }
         log.debug("addProducts – response status={}", respons.getStatusCode());
@@ -132,34 +574,33 @@ public class ProductController {
      * @throws ApiKeyException           if API key decryption fails or no key exists
      * @throws ExternalServiceException  if an error occurs during the external service call
      */
-    private ResponseEntity<Object> handleWithUrl(ProductRequest productRequest, User user) {
+    private ResponseEntity<Object> handleWithUrl(ProductRequest productRequest, AuthenticatedUser user) {
         // Flow: 1) decrypt user's API key, 2) call external service, 3) map response to ProductInfo, 4) delegate to handleWithDetails
-        log.info("handleWithUrl – productInfoUrl={} by userId={}", productRequest.getProductInfoUrl(), user.getId());
+        log.info("handleWithUrl – productInfoUrl={} by userId={}", productRequest.getProductInfoUrl(), user.id());
         if (productRequest.getProductId() == null) {
-            log.warn("handleWithUrl – missing product URL for userId={}", user.getId());
+            log.warn("handleWithUrl – missing product URL for userId={}", user.id());
             throw new BadRequestException("Missing product URL");
         }
 
         String apiKey;
         try {
-            // Decrypt the stored API key for the user
-            apiKey = apiKeyService.getDecryptedApiKey(user);
+            // Decrypt the stored API key; the only product flow that needs the full user
+            apiKey = apiKeyService.getDecryptedApiKey(userService.getUserById(user.id()));
             if (apiKey == null || apiKey.isEmpty()) {
-                log.warn("handleWithUrl – no API key configured for userId={}", user.getId());
+                log.warn("handleWithUrl – no API key configured for userId={}", user.id());
                 throw new ApiKeyException("User has no API key configured");
             }
         } catch (Exception e) {
-            log.error("handleWithUrl – failed to decrypt API key for userId={}", user.getId(), e);
+            log.error("handleWithUrl – failed to decrypt API key for userId={}", user.id(), e);
             throw new ApiKeyException("Failed to decrypt API key or no Api key exists", e);
         }
 
-        RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = new HttpHeaders();
         headers.set("X-API-KEY", apiKey);  // Set header according to API requirements
         HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
 
         try {
-            ResponseEntity<ProductInfo> response = restTemplate.exchange(
+            ResponseEntity<ProductInfo> response = productInfoRestTemplate.exchange(
                     productRequest.getProductInfoUrl(),
                     HttpMethod.GET,
                     requestEntity,
@@ -168,7 +609,7 @@ public class ProductController {
 
             ProductInfo info = response.getBody();
             if (info == null) {
-                log.warn("handleWithUrl – empty body from external service for userId={}", user.getId());
+                log.warn("handleWithUrl – empty body from external service for userId={}", user.id());
                 throw new BadRequestException("Url did not work correctly");
             }
             // Set product details from external response
@@ -179,7 +620,7 @@ public class ProductController {
             // Delegate to handleWithDetails to save the product
             return handleWithDetails(productRequest, user);
         } catch (RestClientException e) {
-            log.error("handleWithUrl – error calling external service for userId={}", user.getId(), e);
+            log.error("handleWithUrl – error calling external service for userId={}", user.id(), e);
             throw new ExternalServiceException("Error calling external product info service", e);
         }
     }
@@ -192,11 +633,11 @@ public class ProductController {
      * @return a ResponseEntity with a success message and HTTP 201 status
      * @throws ProductNotFoundException if the product does not exist
      */
-    private ResponseEntity<Object> handleCustomReview(ProductRequest productRequest, User user) {
-        String productId = createProductId(productRequest, user);
-        log.info("handleCustomReview – fullProductId={}, reviewer={}", productId, productRequest.getReview().getName());
+    private ResponseEntity<Object> handleCustomReview(ProductRequest productRequest, AuthenticatedUser user) {
+        ProductKey productKey = new ProductKey(user.id(), productRequest.getProductId());
+        log.info("handleCustomReview – productKey={}, reviewer={}", productKey, productRequest.getReview().getName());
 
-        Product product = productService.getProductById(productId);
+        Product product = productService.getProductById(productKey);
         if (product == null) {
             throw new ProductNotFoundException("Product does not exist");
         }
@@ -207,8 +648,8 @@ public class ProductController {
                 reviewRequest.getText(),
                 reviewRequest.getRating(),
                 false);
-        reviewService.addReview(productId, review);
-        log.info("handleCustomReview – review added for fullProductId={}", productId);
+        reviewService.addReview(productKey, review);
+        log.info("handleCustomReview – review added for productKey={}", productKey);
         return ResponseEntity.status(HttpStatus.CREATED).body("Review added successfully");
     }
 
@@ -220,52 +661,46 @@ public class ProductController {
      * @return a ResponseEntity with created product data
      * @throws ProductAlreadyExistsException if a product with the same ID already exists
      */
-    private ResponseEntity<Object> handleWithDetails(ProductRequest productRequest, User user) {
-        String productId = createProductId(productRequest, user);
-        log.info("handleWithDetails – fullProductId={}", productId);
+    private ResponseEntity<Object> handleWithDetails(ProductRequest productRequest, AuthenticatedUser user) {
+        ProductKey productKey = new ProductKey(user.id(), productRequest.getProductId());
+        log.info("handleWithDetails – productKey={}", productKey);
 
         Product product = null;
         try {
             // Check if product already exists; catch exception if not found
-            product = productService.getProductById(productId);
+            product = productService.getProductById(productKey);
         } catch (RuntimeException e) {
             // If exception thrown, assume product does not exist
         }
 
         if (product != null) {
-            log.warn("handleWithDetails – product already exists fullProductId={}", productId);
+            log.warn("handleWithDetails – product already exists productKey={}", productKey);
             throw new ProductAlreadyExistsException("Product already exists");
         }
 
         // Create and save new product
-        log.debug("handleWithDetails – creating product fullProductId={}", productId);
+        log.debug("handleWithDetails – creating product productKey={}", productKey);
         product = Product.builder()
-                .productId(productId)
+                .userId(user.id())
+                .productId(productKey.productId())
                 .productName(productRequest.getProductName())
                 .category(productRequest.getCategory())
                 .tags(String.join(", ", productRequest.getTags()))
-                .user(user)
                 .build();
         productService.addProduct(product);
-        log.info("handleWithDetails – product created fullProductId={}", productId);
+        log.info("handleWithDetails – product created productKey={}", productKey);
 
         // Build response with product info
         ProductRespons productRespons = ProductRespons.builder()
-                .productId(productRequest.getProductId())
+                .productId(product.getProductId())
                 .productName(product.getProductName())
                 .category(product.getCategory())
                 .tags(product.getTags())
                 .build();
-        log.debug("handleWithDetails – returning ProductRespons fullProductId={}", productId);
+        log.debug("handleWithDetails – returning ProductRespons productKey={}", productKey);
         return ResponseEntity.status(HttpStatus.CREATED).body(productRespons);
     }
 
-    // fullProductId uses userId prefix to avoid ID collisions between users
-    @NotNull
-    private static String createProductId(ProductRequest productRequest, User user) {
-        return user.getId() + productRequest.getProductId();
-    }
-
     /**
      * Handles creating a product with default hardcoded values.
      *
@@ -273,9 +708,9 @@ public class ProductController {
      * @param user           the authenticated user
      * @return a ResponseEntity with created default product data
      */
-    private ResponseEntity<Object> handleProductOnly(ProductRequest productRequest, User user) {
+    private ResponseEntity<Object> handleProductOnly(ProductRequest productRequest, AuthenticatedUser user) {
         // Set default product details if no external source is provided
-        log.info("handleProductOnly – setting defaults for userId={}", user.getId());
+        log.info("handleProductOnly – setting defaults for userId={}", user.id());
         productRequest.setProductName("Whitesnake T-shirt");
         productRequest.setCategory("T-shirt");
         productRequest.setTags(List.of("hårdrock", "80-tal", "svart", "bomull"));
@@ -286,26 +721,25 @@ public class ProductController {
      * Deletes a product and all associated reviews for the authenticated user.
      *
      * @param productId   the client-visible product ID to delete
-     * @param userDetails the authenticated user's details
+     * @param user        the authenticated user
      * @return a ResponseEntity with a success message if deletion succeeds
      * @throws ProductNotFoundException if the product is not found
      */
     @DeleteMapping("/{productId}")
     public ResponseEntity<Object> deleteProduct(@PathVariable String productId,
-                                                @AuthenticationPrincipal UserDetails userDetails) {
-        User user = (User) userDetails;
-        String fullProductId = user.getId() + productId;
-        log.info("deleteProduct – productId={}, fullProductId={}, userId={}", productId, fullProductId, user.getId());
+                                                @AuthenticationPrincipal AuthenticatedUser user) {
+        ProductKey productKey = new ProductKey(user.id(), productId);
+        log.info("deleteProduct – productId={}, userId={}", productId, user.id());
 
         try {
             // Remove related reviews first
-            reviewService.deleteReviewsByProductId(fullProductId);
+            reviewService.deleteReviewsByProductId(productKey);
             // Then delete the product itself
-            productService.deleteProduct(fullProductId);
-            log.info("deleteProduct – deleted product and reviews fullProductId={}", fullProductId);
+            productService.deleteProduct(productKey);
+            log.info("deleteProduct – deleted product and reviews productKey={}", productKey);
             return ResponseEntity.ok("Product and related reviews deleted successfully");
         } catch (Exception e) {
-            log.warn("deleteProduct – failed to delete fullProductId={}", fullProductId, e);
+            log.warn("deleteProduct – failed to delete productKey={}", productKey, e);
             throw new ProductNotFoundException("Product not found and not deleted");
         }
     }
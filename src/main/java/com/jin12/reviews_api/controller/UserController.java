@@ -1,6 +1,6 @@
 package com.jin12.reviews_api.controller;
 
-import com.jin12.reviews_api.model.User;
+import com.jin12.reviews_api.security.AuthenticatedUser;
 import com.jin12.reviews_api.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -28,8 +28,8 @@ public class UserController {
      * @return a ResponseEntity confirming the update
      */
     @PostMapping("/api-key")
-    public ResponseEntity<String> setApiKey(@RequestBody String rawKey, @AuthenticationPrincipal User user) {
-        userService.updateUserApiKey(user.getId(), rawKey); // Encrypt and save the new API key
+    public ResponseEntity<String> setApiKey(@RequestBody String rawKey, @AuthenticationPrincipal AuthenticatedUser user) {
+        userService.updateUserApiKey(user.id(), rawKey); // Encrypt and save the new API key
         return ResponseEntity.ok("API key updated");
     }
 }
\ No newline at end of file
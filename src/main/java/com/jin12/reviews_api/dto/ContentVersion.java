@@ -0,0 +1,46 @@
+package com.jin12.reviews_api.dto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Version of a resource for conditional GETs: a counter that grows with every change and the time of the
+ * last change, or null if unknown. A response built from the same version has the same content.
+ */
+public record ContentVersion(long version, Instant updatedAt) {
+
+    /**
+     * @return a weak entity tag for this version
+     */
+    public String etag() {
+        return "W/\"" + tag() + "\"";
+    }
+
+    /**
+     * Entity tag for content that also depends on the current day, such as reviews of the last two months.
+     *
+     * @param day the day the content was built
+     * @return a weak entity tag for this version on that day
+     */
+    public String etag(LocalDate day) {
+        return "W/\"" + tag() + "-" + day.toEpochDay() + "\"";
+    }
+
+    /**
+     * Last-Modified for content that also depends on the current day: the later of updatedAt and the
+     * start of the day.
+     *
+     * @param day the day the content was built
+     * @return the last modification time
+     */
+    public Instant lastModified(LocalDate day) {
+        Instant startOfDay = day.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        return updatedAt != null && updatedAt.isAfter(startOfDay) ? updatedAt : startOfDay;
+    }
+
+    // The update time keeps a recreated resource, whose counter starts over, from reusing an old tag
+    private String tag() {
+        return updatedAt == null ? Long.toString(version) : version + "." + updatedAt.toEpochMilli();
+    }
+}
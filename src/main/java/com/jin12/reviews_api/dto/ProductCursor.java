@@ -0,0 +1,43 @@
+package com.jin12.reviews_api.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a user's product list: the next page starts after this product. Sent to clients as an
+ * opaque string, which only continues the sort order it was created for.
+ *
+ * @param sort      the sort order of the list
+ * @param value     sort value of the last product on the previous page, empty for ID order
+ * @param productId client-visible ID of the last product on the previous page
+ */
+public record ProductCursor(ProductSort sort, String value, String productId) {
+
+    /**
+     * @return the cursor as an opaque URL-safe string
+     */
+    public String encode() {
+        // The length prefix keeps the free-text value apart from the ID
+        String raw = sort.name() + ":" + value.length() + ":" + value + productId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor a string from encode()
+     * @return the cursor
+     * @throws IllegalArgumentException if the string is not a valid cursor
+     */
+    public static ProductCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = raw.split(":", 3);
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        int length = Integer.parseInt(parts[1]);
+        if (length < 0 || length > parts[2].length()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return new ProductCursor(ProductSort.valueOf(parts[0]), parts[2].substring(0, length),
+                parts[2].substring(length));
+    }
+}
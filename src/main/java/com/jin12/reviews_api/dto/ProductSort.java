@@ -0,0 +1,19 @@
+package com.jin12.reviews_api.dto;
+
+import java.util.Locale;
+
+/**
+ * Sort orders for a user's product list. Every order ends with the product ID, so positions are unique.
+ */
+public enum ProductSort {
+    ID, NAME, CATEGORY;
+
+    /**
+     * @param value "id", "name" or "category", in any case
+     * @return the sort order
+     * @throws IllegalArgumentException if the value names no sort order
+     */
+    public static ProductSort parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
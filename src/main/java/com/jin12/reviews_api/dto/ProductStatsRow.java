@@ -0,0 +1,10 @@
+package com.jin12.reviews_api.dto;
+
+import com.jin12.reviews_api.model.ProductReviewStats;
+
+/**
+ * A product's id and name with its rating totals, without loading the Product entity. stats is null if the
+ * row is missing.
+ */
+public record ProductStatsRow(String productId, String productName, ProductReviewStats stats) {
+}
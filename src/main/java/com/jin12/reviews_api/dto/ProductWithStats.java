@@ -0,0 +1,10 @@
+package com.jin12.reviews_api.dto;
+
+import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductReviewStats;
+
+/**
+ * A product loaded together with its rating totals in one query. stats is null if the row is missing.
+ */
+public record ProductWithStats(Product product, ProductReviewStats stats) {
+}
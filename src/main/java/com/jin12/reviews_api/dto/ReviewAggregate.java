@@ -0,0 +1,10 @@
+package com.jin12.reviews_api.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Rating totals computed from the reviews table, used to rebuild ProductReviewStats and for the recent stats.
+ */
+public record ReviewAggregate(long count, long ratingSum, long stars1, long stars2, long stars3, long stars4,
+                              long stars5, LocalDate lastReviewDate) {
+}
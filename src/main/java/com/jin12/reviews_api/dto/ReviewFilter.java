@@ -0,0 +1,16 @@
+package com.jin12.reviews_api.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Optional filters for listing a product's reviews; null means no restriction.
+ *
+ * @param rating        only reviews with this rating
+ * @param generatedByAI only AI-generated (true) or human (false) reviews
+ * @param from          only reviews on or after this date
+ * @param to            only reviews on or before this date
+ */
+public record ReviewFilter(Integer rating, Boolean generatedByAI, LocalDate from, LocalDate to) {
+
+    public static final ReviewFilter NONE = new ReviewFilter(null, null, null, null);
+}
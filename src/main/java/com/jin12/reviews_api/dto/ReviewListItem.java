@@ -0,0 +1,24 @@
+package com.jin12.reviews_api.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewListItem {
+    // Only used to build the page cursor
+    @JsonIgnore
+    private Long id;
+    private LocalDate date;
+    private String name;
+    private int rating;
+    private String text;
+    private boolean generatedByAI;
+}
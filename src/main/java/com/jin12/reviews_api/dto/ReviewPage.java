@@ -0,0 +1,19 @@
+package com.jin12.reviews_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewPage {
+    private String productId;
+    private List<ReviewListItem> reviews;
+    // Pass as cursor to get the next page; null on the last page
+    private String nextCursor;
+}
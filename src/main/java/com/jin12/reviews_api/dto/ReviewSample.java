@@ -0,0 +1,8 @@
+package com.jin12.reviews_api.dto;
+
+/**
+ * Lightweight projection of a stored review, used as training text for MarkovReviewGenerator.
+ * Carries no reviewer name, so generated reviews cannot copy one.
+ */
+public record ReviewSample(String reviewText, int rating) {
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 @Data
 @Builder
 @AllArgsConstructor
@@ -15,4 +17,13 @@ public class ReviewStatsResponse {
     private double currentAverage;
     private int totalReviews;
     private String lastReviewDate;
+    // Number of reviews per star rating, keyed 1 to 5
+    private Map<Integer, Long> ratingHistogram;
+    // Rating window the stats cover, e.g. "30d"; null for the default of the last two months
+    private String window;
+    // Average of the window of the same length just before, for trends; null without a window or reviews
+    private Double previousAverage;
+    // Average and count over all of the product's reviews, whatever the window
+    private double allTimeAverage;
+    private int allTimeReviews;
 }
\ No newline at end of file
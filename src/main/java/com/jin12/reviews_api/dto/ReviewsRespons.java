@@ -15,4 +15,6 @@ public class ReviewsRespons {
     private String productId;
     private ReviewStatsResponse stats;
     private List<ReviewRespons> reviews;
+    // Reviews still being generated (AI busy or too slow); 0 when the response is complete
+    private int pendingReviews;
 }
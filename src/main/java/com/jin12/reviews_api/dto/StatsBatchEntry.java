@@ -0,0 +1,19 @@
+package com.jin12.reviews_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatsBatchEntry {
+    // Client-visible product ID, as sent in the request
+    private String productId;
+    // Null when the product could not be read
+    private ReviewStatsResponse stats;
+    // Why stats is missing, e.g. "Product does not exist"; null on success
+    private String error;
+}
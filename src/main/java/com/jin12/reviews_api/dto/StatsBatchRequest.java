@@ -0,0 +1,13 @@
+package com.jin12.reviews_api.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class StatsBatchRequest {
+    // Client-visible product IDs
+    private List<String> productIds;
+}
@@ -0,0 +1,17 @@
+package com.jin12.reviews_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatsBatchResponse {
+    // One entry per requested product, in request order
+    private List<StatsBatchEntry> results;
+}
@@ -0,0 +1,11 @@
+package com.jin12.reviews_api.exception;
+
+/**
+ * Thrown when a call to an external service is rejected locally because its rate limit
+ * or concurrency limit is used up. The call was never sent, so it is safe to retry later.
+ */
+public class CapacityExceededException extends RuntimeException {
+    public CapacityExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.jin12.reviews_api.exception;
+
+/**
+ * Thrown when a call is rejected because the circuit breaker for the external service is open.
+ * Like CapacityExceededException, the call was never sent and can be retried later.
+ */
+public class CircuitOpenException extends CapacityExceededException {
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
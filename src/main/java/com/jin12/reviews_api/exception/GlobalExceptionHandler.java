@@ -1,5 +1,7 @@
 package com.jin12.reviews_api.exception;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -11,6 +13,8 @@ import java.time.LocalDateTime;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+
     /**
      * Simple DTO for error response body sent to clients on exceptions.
      * Automatically serialized to JSON with fields: timestamp, status, error, message, path.
@@ -187,7 +191,7 @@ public class GlobalExceptionHandler {
                 "An unexpected error occurred",
                 request.getDescription(false).replace("uri=", "")
         );
-        ex.printStackTrace(); // Log stack trace for debugging
+        log.error("Unhandled exception for {}", request.getDescription(false), ex);
         return new ResponseEntity<>(error, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
+@Table(indexes = @Index(name = "idx_api_key_expires_at", columnList = "expiresAt"))
 public class ApiKey {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -10,19 +10,28 @@ import java.util.List;
 
 /**
  * Product entity representing a product record.
- * productId is a combination of userId and client-visible ID to avoid collisions.
+ * The primary key is (userId, productId): productId is the client-visible ID, unique per user,
+ * so one user's products lie next to each other in the key index.
  * Cascade and orphanRemoval ensure that removing a Product also removes its Reviews.
  */
 @Entity
 @Data
 @Builder
-@Table(name = "products")
+@IdClass(ProductKey.class)
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_user_name", columnList = "user_id, productName, productId"),
+        @Index(name = "idx_products_user_category", columnList = "user_id, category, productId")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Product {
 
     @Id
-    @Column(nullable = false)
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Id
+    @Column(name = "product_id", nullable = false)
     private String productId;
 
     @Column(nullable = true)
@@ -42,7 +51,15 @@ public class Product {
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Review> reviews;
 
-    @ManyToOne
-    @JoinColumn(name = "user_id", nullable = false)
+    // Owner of the product; user_id is written through userId
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, insertable = false, updatable = false)
     private User user;
+
+    /**
+     * @return the product's primary key
+     */
+    public ProductKey key() {
+        return new ProductKey(userId, productId);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.jin12.reviews_api.model;
+
+import java.io.Serializable;
+
+/**
+ * Composite primary key of a product: the owning user's id and the product ID the client chose.
+ * Client product IDs are only unique per user, so both parts are needed to identify a product.
+ * Also keys the product's review statistics and is used as cache key for the product's reviews.
+ *
+ * @param userId    id of the user who owns the product
+ * @param productId the client-visible product ID
+ */
+public record ProductKey(Long userId, String productId) implements Serializable {
+}
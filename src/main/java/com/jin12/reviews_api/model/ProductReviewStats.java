@@ -0,0 +1,78 @@
+package com.jin12.reviews_api.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Running rating totals for one product: review count, rating sum, a per-star histogram and the latest review date.
+ * Kept up to date with atomic increments in the same transaction as every review insert and delete,
+ * and rebuilt from the reviews table by ReviewStatsRepairJob. version grows with every change and updatedAt
+ * records when it last changed; together they version the product's review responses.
+ */
+@Entity
+@Data
+@IdClass(ProductKey.class)
+@Table(name = "product_review_stats")
+@NoArgsConstructor
+public class ProductReviewStats {
+
+    @Id
+    @Column(nullable = false)
+    private Long userId;
+
+    @Id
+    @Column(nullable = false)
+    private String productId;
+
+    @Column(nullable = false)
+    private long reviewCount;
+
+    @Column(nullable = false)
+    private long ratingSum;
+
+    @Column(nullable = false)
+    private long stars1;
+
+    @Column(nullable = false)
+    private long stars2;
+
+    @Column(nullable = false)
+    private long stars3;
+
+    @Column(nullable = false)
+    private long stars4;
+
+    @Column(nullable = false)
+    private long stars5;
+
+    @Column
+    private LocalDate lastReviewDate;
+
+    @Column(nullable = false)
+    private long version;
+
+    @Column
+    private Instant updatedAt;
+
+    /**
+     * Creates an empty stats row for a product without reviews.
+     *
+     * @param key the product's key
+     */
+    public ProductReviewStats(ProductKey key) {
+        this.userId = key.userId();
+        this.productId = key.productId();
+        this.updatedAt = Instant.now();
+    }
+
+    /**
+     * @return the number of reviews per star, index 0 holding 1-star reviews
+     */
+    public long[] histogram() {
+        return new long[]{stars1, stars2, stars3, stars4, stars5};
+    }
+}
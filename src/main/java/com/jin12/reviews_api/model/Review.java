@@ -13,7 +13,9 @@ import java.time.LocalDate;
  */
 @Entity
 @Data
-@Table(name = "reviews")
+@Table(name = "reviews",
+        // Seek index for the newest-first review listings of a product
+        indexes = @Index(name = "idx_reviews_product_date_desc_id", columnList = "user_id, product_id, date DESC, id DESC"))
 @NoArgsConstructor
 public class Review {
     @Id
@@ -37,7 +39,10 @@ public class Review {
     private boolean generatedByAI;
 
     @ManyToOne
-    @JoinColumn(name = "product_id", nullable = false)
+    @JoinColumns({
+            @JoinColumn(name = "user_id", referencedColumnName = "user_id", nullable = false),
+            @JoinColumn(name = "product_id", referencedColumnName = "product_id", nullable = false)
+    })
     @JsonIgnore // Prevents circular JSON serialization between Review and Product
     private Product product;
 
@@ -0,0 +1,72 @@
+package com.jin12.reviews_api.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outbox entry asking the background worker to fill a product up to the minimum number of reviews.
+ * Written in the same transaction as the product, so a created product always gets its job.
+ * attempts and nextAttemptAt drive retry with backoff; lockedAt lets a crashed RUNNING job be picked up again.
+ */
+@Entity
+@Data
+@Table(name = "review_generation_jobs")
+@NoArgsConstructor
+public class ReviewGenerationJob {
+
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String productId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column
+    private LocalDateTime lockedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    /**
+     * Creates a new pending job that is due immediately.
+     *
+     * @param key the product to generate reviews for
+     */
+    public ReviewGenerationJob(ProductKey key) {
+        LocalDateTime now = LocalDateTime.now();
+        this.userId = key.userId();
+        this.productId = key.productId();
+        this.status = Status.PENDING;
+        this.attempts = 0;
+        this.nextAttemptAt = now;
+        this.createdAt = now;
+    }
+
+    /**
+     * @return the key of the product the job is for
+     */
+    public ProductKey productKey() {
+        return new ProductKey(userId, productId);
+    }
+}
@@ -0,0 +1,82 @@
+package com.jin12.reviews_api.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Rating totals of one product over one day or one calendar month, used for windowed statistics.
+ * Recent reviews are counted in DAY buckets; ReviewStatsRepairJob rolls days older than the daily retention
+ * into MONTH buckets, so a product has at most a few hundred buckets however many reviews it gets.
+ * bucketStart is the day, or the first day of the month.
+ */
+@Entity
+@Data
+@Table(name = "review_stats_buckets",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"userId", "productId", "granularity", "bucketStart"}))
+@NoArgsConstructor
+public class ReviewStatsBucket {
+
+    public enum Granularity { DAY, MONTH }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String productId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Granularity granularity;
+
+    @Column(nullable = false)
+    private LocalDate bucketStart;
+
+    @Column(nullable = false)
+    private long reviewCount;
+
+    @Column(nullable = false)
+    private long ratingSum;
+
+    @Column(nullable = false)
+    private long stars1;
+
+    @Column(nullable = false)
+    private long stars2;
+
+    @Column(nullable = false)
+    private long stars3;
+
+    @Column(nullable = false)
+    private long stars4;
+
+    @Column(nullable = false)
+    private long stars5;
+
+    /**
+     * Creates an empty bucket.
+     *
+     * @param key         the product's key
+     * @param granularity DAY or MONTH
+     * @param bucketStart the day, or the first day of the month
+     */
+    public ReviewStatsBucket(ProductKey key, Granularity granularity, LocalDate bucketStart) {
+        this.userId = key.userId();
+        this.productId = key.productId();
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+    }
+
+    /**
+     * @return the number of reviews per star, index 0 holding 1-star reviews
+     */
+    public long[] histogram() {
+        return new long[]{stars1, stars2, stars3, stars4, stars5};
+    }
+}
@@ -2,9 +2,11 @@ package com.jin12.reviews_api.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -12,6 +14,8 @@ import java.util.List;
 /**
  * User entity implementing UserDetails for authentication.
  * encryptedApiKey stores the user's API key in encrypted form.
+ * productsVersion and productsUpdatedAt version the user's product list; they are only changed by
+ * UserRepository.bumpProductsVersion, so saving a stale User cannot roll them back.
  */
 @Entity
 @Table(name = "users")
@@ -37,6 +41,16 @@ public class User implements UserDetails {
     @Column(name = "encrypted_api_key")
     private String encryptedApiKey;
 
+    /**
+     * Grows every time a product of the user is added or deleted.
+     */
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long productsVersion;
+
+    @Column(updatable = false)
+    private Instant productsUpdatedAt;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Product> products;
 
@@ -1,17 +1,58 @@
 package com.jin12.reviews_api.repository;
 
+import com.jin12.reviews_api.dto.ProductRespons;
 import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductKey;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
-import java.util.Optional;
 
 
-public interface ProductRepository extends JpaRepository<Product, String> {
-
-    Optional<Product> findByProductId(String productId);
+public interface ProductRepository extends JpaRepository<Product, ProductKey> {
 
     List<Product> findByUserId(Long userId);
 
+    // Bara nycklarna, så att alla produkter kan gås igenom utan att entiteterna laddas
+    @Query("SELECT new com.jin12.reviews_api.model.ProductKey(p.userId, p.productId) FROM Product p " +
+            "ORDER BY p.userId, p.productId")
+    List<ProductKey> findAllProductKeys();
+
+    /*
+     * Sidor av en användares produktlista. Läser bara produktens egna kolumner, aldrig reviews eller user,
+     * och söker förbi sista produkten på föregående sida i stället för att hoppa över rader med OFFSET.
+     * Sorterat på id blir det en sammanhängande läsning av primärnyckeln (user_id, product_id).
+     * Tomma afterValue och afterProductId ger första sidan. Saknat namn eller kategori sorteras som tom sträng.
+     */
+
+    @Query("""
+            SELECT new com.jin12.reviews_api.dto.ProductRespons(p.productId, p.productName, p.category, p.tags)
+            FROM Product p
+            WHERE p.userId = :userId
+              AND p.productId > :afterProductId
+            ORDER BY p.productId
+            """)
+    List<ProductRespons> findPageOrderById(Long userId, String afterProductId, Limit limit);
+
+    @Query("""
+            SELECT new com.jin12.reviews_api.dto.ProductRespons(p.productId, p.productName, p.category, p.tags)
+            FROM Product p
+            WHERE p.userId = :userId
+              AND (COALESCE(p.productName, '') > :afterValue
+                   OR (COALESCE(p.productName, '') = :afterValue AND p.productId > :afterProductId))
+            ORDER BY COALESCE(p.productName, ''), p.productId
+            """)
+    List<ProductRespons> findPageOrderByName(Long userId, String afterValue, String afterProductId, Limit limit);
+
+    @Query("""
+            SELECT new com.jin12.reviews_api.dto.ProductRespons(p.productId, p.productName, p.category, p.tags)
+            FROM Product p
+            WHERE p.userId = :userId
+              AND (COALESCE(p.category, '') > :afterValue
+                   OR (COALESCE(p.category, '') = :afterValue AND p.productId > :afterProductId))
+            ORDER BY COALESCE(p.category, ''), p.productId
+            """)
+    List<ProductRespons> findPageOrderByCategory(Long userId, String afterValue, String afterProductId, Limit limit);
 
 }
@@ -0,0 +1,84 @@
+package com.jin12.reviews_api.repository;
+
+import com.jin12.reviews_api.dto.ContentVersion;
+import com.jin12.reviews_api.dto.ProductStatsRow;
+import com.jin12.reviews_api.dto.ProductWithStats;
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ProductReviewStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ProductReviewStatsRepository extends JpaRepository<ProductReviewStats, ProductKey> {
+
+    // Produkten och dess statistikrad i en och samma fråga
+    @Query("SELECT new com.jin12.reviews_api.dto.ProductWithStats(p, s) FROM Product p " +
+            "LEFT JOIN ProductReviewStats s ON s.userId = p.userId AND s.productId = p.productId " +
+            "WHERE p.userId = :userId AND p.productId = :productId")
+    Optional<ProductWithStats> findProductWithStats(Long userId, String productId);
+
+    // Flera av en användares produkter med namn och statistikrad i en fråga, utan att Product-entiteterna laddas
+    @Query("SELECT new com.jin12.reviews_api.dto.ProductStatsRow(p.productId, p.productName, s) FROM Product p " +
+            "LEFT JOIN ProductReviewStats s ON s.userId = p.userId AND s.productId = p.productId " +
+            "WHERE p.userId = :userId AND p.productId IN :productIds")
+    List<ProductStatsRow> findStatsRows(Long userId, Collection<String> productIds);
+
+    // Bara versionen, för villkorliga GET utan att läsa produkten
+    @Query("SELECT new com.jin12.reviews_api.dto.ContentVersion(s.version, s.updatedAt) FROM ProductReviewStats s " +
+            "WHERE s.userId = :userId AND s.productId = :productId")
+    Optional<ContentVersion> findVersion(Long userId, String productId);
+
+    /**
+     * Lägger till recensioner i statistiken atomärt, utan att läsa raden först.
+     *
+     * @return antal uppdaterade rader (0 om raden saknas)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ProductReviewStats s SET s.reviewCount = s.reviewCount + :count, s.ratingSum = s.ratingSum + :ratingSum, " +
+            "s.stars1 = s.stars1 + :stars1, s.stars2 = s.stars2 + :stars2, s.stars3 = s.stars3 + :stars3, " +
+            "s.stars4 = s.stars4 + :stars4, s.stars5 = s.stars5 + :stars5, " +
+            "s.lastReviewDate = CASE WHEN s.lastReviewDate IS NULL OR s.lastReviewDate < :lastReviewDate " +
+            "THEN :lastReviewDate ELSE s.lastReviewDate END, " +
+            "s.version = s.version + 1, s.updatedAt = :updatedAt WHERE s.userId = :userId AND s.productId = :productId")
+    int increment(Long userId, String productId, long count, long ratingSum, long stars1, long stars2, long stars3,
+                  long stars4, long stars5, LocalDate lastReviewDate, Instant updatedAt);
+
+    /**
+     * Drar bort raderade recensioner ur statistiken. Senaste datum räknas om från de recensioner som finns kvar.
+     *
+     * @return antal uppdaterade rader (0 om raden saknas)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ProductReviewStats s SET s.reviewCount = s.reviewCount - :count, s.ratingSum = s.ratingSum - :ratingSum, " +
+            "s.stars1 = s.stars1 - :stars1, s.stars2 = s.stars2 - :stars2, s.stars3 = s.stars3 - :stars3, " +
+            "s.stars4 = s.stars4 - :stars4, s.stars5 = s.stars5 - :stars5, " +
+            "s.lastReviewDate = (SELECT max(r.date) FROM Review r " +
+            "WHERE r.product.userId = :userId AND r.product.productId = :productId), " +
+            "s.version = s.version + 1, s.updatedAt = :updatedAt WHERE s.userId = :userId AND s.productId = :productId")
+    int decrement(Long userId, String productId, long count, long ratingSum, long stars1, long stars2, long stars3,
+                  long stars4, long stars5, Instant updatedAt);
+
+    // Låser raden under ombyggnad, så samtidiga ökningar väntar in den
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductReviewStats s WHERE s.userId = :userId AND s.productId = :productId")
+    Optional<ProductReviewStats> lockByProductId(Long userId, String productId);
+
+    // Produkter som saknar statistikrad, t.ex. från innan tabellen fanns
+    @Query("SELECT new com.jin12.reviews_api.model.ProductKey(p.userId, p.productId) FROM Product p WHERE NOT EXISTS " +
+            "(SELECT 1 FROM ProductReviewStats s WHERE s.userId = p.userId AND s.productId = p.productId)")
+    List<ProductKey> findProductKeysWithoutStats();
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ProductReviewStats s WHERE s.userId = :userId AND s.productId = :productId")
+    void deleteByProductId(Long userId, String productId);
+}
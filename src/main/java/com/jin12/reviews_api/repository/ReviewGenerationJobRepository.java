@@ -0,0 +1,75 @@
+package com.jin12.reviews_api.repository;
+
+import com.jin12.reviews_api.model.ReviewGenerationJob;
+import com.jin12.reviews_api.model.ReviewGenerationJob.Status;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ReviewGenerationJobRepository extends JpaRepository<ReviewGenerationJob, Long> {
+
+    // Jobb som står på tur, äldsta först
+    List<ReviewGenerationJob> findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+            Status status, LocalDateTime now, Limit limit);
+
+    // Finns det redan ett jobb som väntar eller körs för produkten?
+    boolean existsByUserIdAndProductIdAndStatusIn(Long userId, String productId, Collection<Status> statuses);
+
+    /**
+     * Markerar ett väntande jobb som påbörjat. Returnerar 0 om någon annan redan tagit jobbet.
+     *
+     * @param id  jobbets id
+     * @param now tidpunkten jobbet låses
+     * @return antal uppdaterade rader (0 eller 1)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReviewGenerationJob j SET j.status = 'RUNNING', j.lockedAt = :now, j.attempts = j.attempts + 1 " +
+            "WHERE j.id = :id AND j.status = 'PENDING'")
+    int claim(Long id, LocalDateTime now);
+
+    // Släpper jobb som fastnat i RUNNING, t.ex. efter en omstart mitt i ett jobb
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReviewGenerationJob j SET j.status = 'PENDING', j.lockedAt = null " +
+            "WHERE j.status = 'RUNNING' AND j.lockedAt < :lockedBefore")
+    int releaseStale(LocalDateTime lockedBefore);
+
+    /**
+     * Markerar ett påbörjat jobb som klart. Returnerar 0 om jobbet raderats, släppts eller tagits
+     * av någon annan sedan det låstes vid lockedAt.
+     *
+     * @param id       jobbets id
+     * @param lockedAt tidpunkten jobbet låstes
+     * @return antal uppdaterade rader (0 eller 1)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReviewGenerationJob j SET j.status = 'DONE', j.lockedAt = null, j.lastError = null " +
+            "WHERE j.id = :id AND j.status = 'RUNNING' AND j.lockedAt = :lockedAt")
+    int finish(Long id, LocalDateTime lockedAt);
+
+    /**
+     * Registrerar ett misslyckat försök på ett påbörjat jobb: nytt försök senare (PENDING) eller FAILED.
+     * Returnerar 0 om jobbet raderats, släppts eller tagits av någon annan sedan det låstes vid lockedAt.
+     *
+     * @return antal uppdaterade rader (0 eller 1)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReviewGenerationJob j SET j.status = :status, j.nextAttemptAt = :nextAttemptAt, " +
+            "j.lockedAt = null, j.lastError = :lastError " +
+            "WHERE j.id = :id AND j.status = 'RUNNING' AND j.lockedAt = :lockedAt")
+    int fail(Long id, LocalDateTime lockedAt, Status status, LocalDateTime nextAttemptAt, String lastError);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ReviewGenerationJob j WHERE j.userId = :userId AND j.productId = :productId")
+    void deleteByProductId(Long userId, String productId);
+}
@@ -1,7 +1,12 @@
 package com.jin12.reviews_api.repository;
 
+import com.jin12.reviews_api.dto.ReviewAggregate;
+import com.jin12.reviews_api.dto.ReviewListItem;
+import com.jin12.reviews_api.dto.ReviewRespons;
+import com.jin12.reviews_api.dto.ReviewSample;
 import com.jin12.reviews_api.model.Review;
 import com.jin12.reviews_api.model.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -22,10 +27,105 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
 
     List<Review> findByProductAndDateAfter(Product product, LocalDate fromDate);
 
+    /**
+     * Hämtar de senaste recensionerna efter ett datum, nyast först, direkt som svars-DTO:er.
+     *
+     * @param product  produkten som recensionerna tillhör
+     * @param fromDate från datumet man vill hämta
+     * @param limit    max antal rader
+     * @return de senaste recensionerna, nyast först
+     */
+    @Query("""
+            SELECT new com.jin12.reviews_api.dto.ReviewRespons(r.date, r.name, r.rating, r.reviewText)
+            FROM Review r
+            WHERE r.product = :product AND r.date > :fromDate
+            ORDER BY r.date DESC, r.id DESC
+            """)
+    List<ReviewRespons> findRecentReviews(Product product, LocalDate fromDate, Limit limit);
+
+    /**
+     * Hämtar en sida av en produkts recensioner, nyast först, med keyset-paginering på (date, id).
+     * Sidan börjar direkt efter (beforeDate, beforeId), så en djup sida kostar lika lite som den första.
+     *
+     * @param userId        id för användaren som äger produkten
+     * @param productId     produktens ID
+     * @param fromDate      tidigaste datum som tas med
+     * @param beforeDate    datum för sista recensionen på föregående sida
+     * @param beforeId      id för sista recensionen på föregående sida
+     * @param rating        bara detta betyg, eller null för alla
+     * @param generatedByAI bara AI- (true) eller mänskliga (false) recensioner, eller null för alla
+     * @param limit         max antal rader
+     * @return recensionerna, nyast först
+     */
+    @Query("""
+            SELECT new com.jin12.reviews_api.dto.ReviewListItem(r.id, r.date, r.name, r.rating, r.reviewText, r.generatedByAI)
+            FROM Review r
+            WHERE r.product.userId = :userId
+              AND r.product.productId = :productId
+              AND r.date >= :fromDate
+              AND (r.date < :beforeDate OR (r.date = :beforeDate AND r.id < :beforeId))
+              AND (:rating IS NULL OR r.rating = :rating)
+              AND (:generatedByAI IS NULL OR r.generatedByAI = :generatedByAI)
+            ORDER BY r.date DESC, r.id DESC
+            """)
+    List<ReviewListItem> findReviewPage(Long userId, String productId, LocalDate fromDate, LocalDate beforeDate,
+                                        long beforeId, Integer rating, Boolean generatedByAI, Limit limit);
+
+    // Räknar recensioner efter ett datum utan att ladda dem, används innan AI-generering
+    long countByProductAndDateAfter(Product product, LocalDate fromDate);
+
     // Om vi behöver fler recensioner -> hämta senaste 10 oavsett datum
     List<Review> findTop10ByProductOrderByDateDesc(Product product);
+
+    /**
+     * Hämtar de senaste recensionerna skrivna av människor på en användares produkter, nyast först,
+     * som träningstext för MarkovReviewGenerator. Genererade recensioner tas inte med.
+     *
+     * @param userId id för användaren som äger produkterna
+     * @param limit  max antal rader
+     * @return texter och betyg, nyast först
+     */
+    @Query("""
+            SELECT new com.jin12.reviews_api.dto.ReviewSample(r.reviewText, r.rating)
+            FROM Review r
+            WHERE r.product.userId = :userId AND r.generatedByAI = false
+            ORDER BY r.id DESC
+            """)
+    List<ReviewSample> findHumanSamplesByUserId(Long userId, Limit limit);
+
+    // Summerar alla recensioner för en produkt, används för att bygga om ProductReviewStats
+    @Query("""
+            SELECT new com.jin12.reviews_api.dto.ReviewAggregate(
+                count(r), coalesce(sum(r.rating), 0),
+                coalesce(sum(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END), 0),
+                coalesce(sum(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END), 0),
+                coalesce(sum(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END), 0),
+                coalesce(sum(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END), 0),
+                coalesce(sum(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END), 0),
+                max(r.date))
+            FROM Review r
+            WHERE r.product.userId = :userId AND r.product.productId = :productId
+            """)
+    ReviewAggregate aggregateByProductId(Long userId, String productId);
+
+    // Samma summor per recensionsdatum (lastReviewDate är dagen), används för att bygga om ReviewStatsBucket
+    @Query("""
+            SELECT new com.jin12.reviews_api.dto.ReviewAggregate(
+                count(r), sum(r.rating),
+                sum(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END),
+                sum(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END),
+                sum(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END),
+                sum(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END),
+                sum(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END),
+                r.date)
+            FROM Review r
+            WHERE r.product.userId = :userId AND r.product.productId = :productId
+            GROUP BY r.date
+            """)
+    List<ReviewAggregate> aggregateDailyByProductId(Long userId, String productId);
+
     @Modifying
     @Transactional
-    @Query("DELETE FROM Review r WHERE r.product.productId = :productId")
-    void deleteByProductId(String productId);
+    @Query("DELETE FROM Review r WHERE r.product.userId = :userId AND r.product.productId = :productId")
+    void deleteByProductId(Long userId, String productId);
 }
@@ -0,0 +1,55 @@
+package com.jin12.reviews_api.repository;
+
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ReviewStatsBucket;
+import com.jin12.reviews_api.model.ReviewStatsBucket.Granularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface ReviewStatsBucketRepository extends JpaRepository<ReviewStatsBucket, Long> {
+
+    /**
+     * Lägger till (eller med negativa värden drar bort) recensioner i en hink atomärt.
+     *
+     * @return antal uppdaterade rader (0 om hinken saknas)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ReviewStatsBucket b SET b.reviewCount = b.reviewCount + :count, b.ratingSum = b.ratingSum + :ratingSum, " +
+            "b.stars1 = b.stars1 + :stars1, b.stars2 = b.stars2 + :stars2, b.stars3 = b.stars3 + :stars3, " +
+            "b.stars4 = b.stars4 + :stars4, b.stars5 = b.stars5 + :stars5 " +
+            "WHERE b.userId = :userId AND b.productId = :productId " +
+            "AND b.granularity = :granularity AND b.bucketStart = :bucketStart")
+    int add(Long userId, String productId, Granularity granularity, LocalDate bucketStart, long count, long ratingSum,
+            long stars1, long stars2, long stars3, long stars4, long stars5);
+
+    // Alla hinkar som börjar från och med ett datum, för fönsterstatistik
+    List<ReviewStatsBucket> findByUserIdAndProductIdAndBucketStartGreaterThanEqual(Long userId, String productId,
+                                                                                  LocalDate from);
+
+    // Samma sak för flera av en användares produkter i en fråga
+    List<ReviewStatsBucket> findByUserIdAndProductIdInAndBucketStartGreaterThanEqual(Long userId,
+                                                                                    Collection<String> productIds,
+                                                                                    LocalDate from);
+
+    List<ReviewStatsBucket> findByUserIdAndProductId(Long userId, String productId);
+
+    // Dagshinkar som är äldre än gränsen och ska rullas ihop till månader
+    List<ReviewStatsBucket> findByUserIdAndProductIdAndGranularityAndBucketStartBefore(Long userId, String productId,
+                                                                                      Granularity granularity,
+                                                                                      LocalDate before);
+
+    @Query("SELECT DISTINCT new com.jin12.reviews_api.model.ProductKey(b.userId, b.productId) " +
+            "FROM ReviewStatsBucket b WHERE b.granularity = :granularity AND b.bucketStart < :before")
+    List<ProductKey> findProductKeysWithBucketsBefore(Granularity granularity, LocalDate before);
+
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("DELETE FROM ReviewStatsBucket b WHERE b.userId = :userId AND b.productId = :productId")
+    void deleteByProductId(Long userId, String productId);
+}
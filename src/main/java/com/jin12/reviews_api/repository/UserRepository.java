@@ -1,12 +1,27 @@
 package com.jin12.reviews_api.repository;
 
+import com.jin12.reviews_api.dto.ContentVersion;
 import com.jin12.reviews_api.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByUsername(String username);
 
+    // Räknar upp versionen av användarens produktlista atomärt
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("UPDATE User u SET u.productsVersion = u.productsVersion + 1, u.productsUpdatedAt = :updatedAt " +
+            "WHERE u.id = :userId")
+    int bumpProductsVersion(Long userId, Instant updatedAt);
+
+    @Query("SELECT new com.jin12.reviews_api.dto.ContentVersion(u.productsVersion, u.productsUpdatedAt) FROM User u " +
+            "WHERE u.id = :userId")
+    Optional<ContentVersion> findProductsVersion(Long userId);
 }
@@ -0,0 +1,121 @@
+package com.jin12.reviews_api.resilience;
+
+import com.jin12.reviews_api.exception.CapacityExceededException;
+import com.jin12.reviews_api.exception.CircuitOpenException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Guards the calls to one external dependency with a circuit breaker, a bulkhead and a token-bucket rate limiter.
+ * The breaker is asked first, so nothing is spent on a dependency that is known to be down.
+ * The bulkhead caps how many calls are in flight at once and the bucket caps how many start per second.
+ * A call that gets no permit is rejected at once with CapacityExceededException instead of queueing,
+ * so a traffic spike cannot pile up blocked threads or turn into a 429 storm at the provider.
+ * <p>
+ * Publishes resilience.calls{name, outcome} and resilience.bulkhead.available{name}.
+ */
+public class CallGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(CallGuard.class);
+
+    private final String name;
+    private final CircuitBreaker circuitBreaker;
+    private final TokenBucket rateLimiter;
+    private final Semaphore bulkhead;
+    private final long maxWaitMs;
+
+    private final Counter permitted;
+    private final Counter rateLimited;
+    private final Counter bulkheadFull;
+    private final Counter circuitOpen;
+
+    /**
+     * @param name          dependency name, used in log lines and metric tags
+     * @param circuitBreaker breaker that records the outcome of every call that is started
+     * @param rateLimiter   bucket limiting how many calls start per second
+     * @param maxConcurrent maximum number of calls in flight at once
+     * @param maxWaitMs     how long a call may wait for a free bulkhead slot; 0 rejects at once
+     * @param registry      meter registry for the call metrics
+     */
+    public CallGuard(String name, CircuitBreaker circuitBreaker, TokenBucket rateLimiter, int maxConcurrent, long maxWaitMs, MeterRegistry registry) {
+        this.name = name;
+        this.circuitBreaker = circuitBreaker;
+        this.rateLimiter = rateLimiter;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.maxWaitMs = maxWaitMs;
+        this.permitted = counter(registry, "permitted");
+        this.rateLimited = counter(registry, "rate_limited");
+        this.bulkheadFull = counter(registry, "bulkhead_full");
+        this.circuitOpen = counter(registry, "circuit_open");
+        Gauge.builder("resilience.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .tag("name", name)
+                .register(registry);
+    }
+
+    private Counter counter(MeterRegistry registry, String outcome) {
+        return Counter.builder("resilience.calls")
+                .tag("name", name)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Runs the call if the breaker is closed (or has a free probe) and both a bulkhead slot
+     * and a rate-limit token are available.
+     *
+     * @param call the call to the external dependency
+     * @return the call's result
+     * @throws CircuitOpenException      if the circuit breaker is open; the call was not started
+     * @throws CapacityExceededException if the call was rejected by the bulkhead or rate limit; it was not started
+     */
+    public <T> T call(Supplier<T> call) {
+        CircuitBreaker.Permit permit = circuitBreaker.tryAcquirePermission().orElse(null);
+        if (permit == null) {
+            circuitOpen.increment();
+            log.debug("call – {}: circuit open, call rejected", name);
+            throw new CircuitOpenException(name + ": circuit breaker is open");
+        }
+        if (!acquireBulkhead()) {
+            circuitBreaker.releasePermission(permit);
+            bulkheadFull.increment();
+            log.warn("call – {}: bulkhead full, call rejected", name);
+            throw new CapacityExceededException(name + ": too many concurrent calls");
+        }
+        try {
+            // Take the token last, so a call rejected by the bulkhead does not use up the rate
+            if (!rateLimiter.tryAcquire()) {
+                circuitBreaker.releasePermission(permit);
+                rateLimited.increment();
+                log.warn("call – {}: rate limit reached, call rejected", name);
+                throw new CapacityExceededException(name + ": rate limit reached");
+            }
+            permitted.increment();
+            return circuitBreaker.callPermitted(permit, call);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private boolean acquireBulkhead() {
+        if (maxWaitMs <= 0) {
+            return bulkhead.tryAcquire();
+        }
+        try {
+            return bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,263 @@
+package com.jin12.reviews_api.resilience;
+
+import com.jin12.reviews_api.exception.CircuitOpenException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker for one external dependency.
+ * <ul>
+ *   <li>CLOSED: calls go through and their outcomes are kept in a sliding window of the last windowSize calls.
+ *       When at least minimumCalls are recorded and the failure rate reaches failureRateThreshold percent,
+ *       the breaker opens. Calls slower than slowCallThreshold count as failures even if they succeed.</li>
+ *   <li>OPEN: calls are rejected at once with CircuitOpenException until openDuration has passed.</li>
+ *   <li>HALF_OPEN: up to halfOpenCalls probe calls are let through. If all succeed the breaker closes
+ *       with an empty window; a single failure opens it again.</li>
+ * </ul>
+ * Every permission remembers the half-open round it was granted in, so a call that started before the
+ * current round, while closed or in an earlier round, never takes up or frees a probe slot.
+ * Publishes resilience.circuitbreaker.state{name} (0 closed, 1 open, 2 half-open)
+ * and resilience.circuitbreaker.calls{name, outcome}.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Permission to start one call, from tryAcquirePermission.
+     */
+    public static final class Permit {
+
+        // The half-open round the permission is a probe of, 0 when granted while closed
+        private final long probeRound;
+
+        private Permit(long probeRound) {
+            this.probeRound = probeRound;
+        }
+    }
+
+    private static final Permit CLOSED_PERMIT = new Permit(0);
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+
+    // Sliding window of the latest outcomes, true = failure
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    // Incremented on every transition to HALF_OPEN
+    private long probeRound;
+    private int halfOpenInFlight;
+    private int halfOpenSuccesses;
+
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter rejected;
+
+    /**
+     * @param name                 dependency name, used in log lines and metric tags
+     * @param failureRateThreshold failure rate in percent that opens the breaker
+     * @param windowSize           number of recent calls the failure rate is computed over
+     * @param minimumCalls         calls needed in the window before the breaker may open
+     * @param slowCallThreshold    calls taking longer count as failures; zero disables
+     * @param openDuration         how long the breaker stays open before probing
+     * @param halfOpenCalls        number of probe calls in the half-open state
+     * @param registry             meter registry for the breaker metrics
+     */
+    public CircuitBreaker(String name, int failureRateThreshold, int windowSize, int minimumCalls,
+                          Duration slowCallThreshold, Duration openDuration, int halfOpenCalls,
+                          MeterRegistry registry) {
+        this(name, failureRateThreshold, windowSize, minimumCalls, slowCallThreshold, openDuration, halfOpenCalls,
+                registry, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureRateThreshold, int windowSize, int minimumCalls,
+                   Duration slowCallThreshold, Duration openDuration, int halfOpenCalls,
+                   MeterRegistry registry, LongSupplier nanoClock) {
+        if (windowSize <= 0 || halfOpenCalls <= 0) {
+            throw new IllegalArgumentException("windowSize and halfOpenCalls must be positive");
+        }
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.min(Math.max(minimumCalls, 1), windowSize);
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoClock = nanoClock;
+        this.window = new boolean[windowSize];
+
+        this.successes = counter(registry, "success");
+        this.failures = counter(registry, "failure");
+        this.rejected = counter(registry, "rejected");
+        Gauge.builder("resilience.circuitbreaker.state", this, b -> b.getState().ordinal())
+                .tag("name", name)
+                .register(registry);
+    }
+
+    private Counter counter(MeterRegistry registry, String outcome) {
+        return Counter.builder("resilience.circuitbreaker.calls")
+                .tag("name", name)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Runs the call through the breaker and records its outcome.
+     *
+     * @param call the call to the external dependency
+     * @return the call's result
+     * @throws CircuitOpenException if the breaker is open; the call was not started
+     */
+    public <T> T call(Supplier<T> call) {
+        Permit permit = tryAcquirePermission()
+                .orElseThrow(() -> new CircuitOpenException(name + ": circuit breaker is open"));
+        return callPermitted(permit, call);
+    }
+
+    /**
+     * Runs a call that already holds a permission from tryAcquirePermission and records its outcome.
+     */
+    <T> T callPermitted(Permit permit, Supplier<T> call) {
+        long start = nanoClock.getAsLong();
+        try {
+            T result = call.get();
+            onResult(permit, slowCallNanos > 0 && nanoClock.getAsLong() - start > slowCallNanos);
+            return result;
+        } catch (RuntimeException | Error e) {
+            onResult(permit, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Asks whether a call may start now. A caller that gets a permit must either run the call
+     * with callPermitted or give the permit back with releasePermission.
+     *
+     * @return the permit, or empty if the breaker is open, or half-open with all probes already in flight
+     */
+    public synchronized Optional<Permit> tryAcquirePermission() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        Permit permit = switch (state) {
+            case CLOSED -> CLOSED_PERMIT;
+            case OPEN -> null;
+            case HALF_OPEN -> {
+                if (halfOpenInFlight < halfOpenCalls) {
+                    halfOpenInFlight++;
+                    yield new Permit(probeRound);
+                }
+                yield null;
+            }
+        };
+        if (permit == null) {
+            rejected.increment();
+        }
+        return Optional.ofNullable(permit);
+    }
+
+    /**
+     * Gives back a permit for a call that was never started.
+     *
+     * @param permit the permit from tryAcquirePermission
+     */
+    public synchronized void releasePermission(Permit permit) {
+        if (isCurrentProbe(permit)) {
+            halfOpenInFlight--;
+        }
+    }
+
+    // Whether the permit holds one of the probe slots of the current half-open round
+    private boolean isCurrentProbe(Permit permit) {
+        return state == State.HALF_OPEN && permit.probeRound == probeRound;
+    }
+
+    private synchronized void onResult(Permit permit, boolean failed) {
+        (failed ? failures : successes).increment();
+        switch (state) {
+            case CLOSED -> {
+                record(failed);
+                if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+                    log.warn("circuit breaker {} – failure rate {}% over {} calls, opening",
+                            name, windowFailures * 100 / windowCount, windowCount);
+                    transitionTo(State.OPEN);
+                }
+            }
+            case HALF_OPEN -> {
+                if (!isCurrentProbe(permit)) {
+                    // Started before this round's probes; its outcome says nothing about them
+                    return;
+                }
+                halfOpenInFlight--;
+                if (failed) {
+                    transitionTo(State.OPEN);
+                } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                    transitionTo(State.CLOSED);
+                }
+            }
+            case OPEN -> {
+                // A call that started before the breaker opened; nothing to decide
+            }
+        }
+    }
+
+    private void record(boolean failed) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State next) {
+        log.info("circuit breaker {} – {} -> {}", name, state, next);
+        state = next;
+        switch (next) {
+            case OPEN -> openedAt = nanoClock.getAsLong();
+            case HALF_OPEN -> {
+                probeRound++;
+                halfOpenInFlight = 0;
+                halfOpenSuccesses = 0;
+            }
+            case CLOSED -> {
+                windowIndex = 0;
+                windowCount = 0;
+                windowFailures = 0;
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,65 @@
+package com.jin12.reviews_api.resilience;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token-bucket rate limiter. The bucket holds up to capacity tokens and refills at a fixed rate;
+ * each call takes one token, so short bursts up to capacity are allowed while the long-run rate
+ * stays at permitsPerSecond.
+ */
+public class TokenBucket {
+
+    private final long capacity;
+    private final double tokensPerNano;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param permitsPerSecond long-run number of calls allowed per second
+     * @param capacity         maximum burst size; the bucket starts full
+     */
+    public TokenBucket(double permitsPerSecond, long capacity) {
+        this(permitsPerSecond, capacity, System::nanoTime);
+    }
+
+    TokenBucket(double permitsPerSecond, long capacity, LongSupplier nanoClock) {
+        if (permitsPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond and capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = permitsPerSecond / 1_000_000_000d;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes one token if one is available. Never blocks.
+     *
+     * @return true if the call may proceed
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of whole tokens currently in the bucket
+     */
+    public synchronized long availableTokens() {
+        refill();
+        return (long) tokens;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,28 @@
+package com.jin12.reviews_api.security;
+
+import com.jin12.reviews_api.model.User;
+
+import java.security.Principal;
+
+/**
+ * Principal of a JWT-authenticated request, built from the token's claims without a database lookup.
+ * Endpoints that need more of the user than its id and username load the User entity themselves.
+ *
+ * @param id       the user's database id
+ * @param username the user's username
+ */
+public record AuthenticatedUser(Long id, String username) implements Principal {
+
+    /**
+     * @param user a loaded user
+     * @return the principal for that user
+     */
+    public static AuthenticatedUser of(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername());
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
@@ -1,7 +1,9 @@
 package com.jin12.reviews_api.security;
 
+import com.jin12.reviews_api.model.User;
 import com.jin12.reviews_api.service.JwtService;
 import com.jin12.reviews_api.service.UserService;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,11 +13,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Filter that intercepts each HTTP request to validate a JWT token.
@@ -36,8 +40,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     /**
      * Filters incoming requests to check the Authorization header for a Bearer JWT.
      * - Skips token validation for /auth/register and /auth/login paths.
-     * - Extracts the username from the JWT and validates the token.
-     * - If valid, sets the Authentication in the SecurityContextHolder.
+     * - Verifies the JWT once and reads the user id and username from its claims.
+     * - If valid, sets an {@link AuthenticatedUser} as the principal in the SecurityContextHolder,
+     *   without loading the user from the database.
      *
      * @param request     the incoming HttpServletRequest
      * @param response    the HttpServletResponse
@@ -71,31 +76,44 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        // Extract token and username
-        final String jwt = authHeader.substring(7);
-        final String username = jwtService.extractUsername(jwt);
-        log.debug("doFilterInternal – extracted username={} from JWT", username);
-
-        // If username is present and no authentication is yet set, validate token
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            var userDetails = userService.loadUserByUsername(username);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
-                log.info("doFilterInternal – JWT is valid, setting authentication for username={}", username);
-                var authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities()
-                );
+        // Verify the token once and build the principal from its claims, without loading the user
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            AuthenticatedUser principal = authenticate(authHeader.substring(7));
+            if (principal != null) {
+                log.debug("doFilterInternal – JWT is valid, setting authentication for userId={}", principal.id());
+                var authToken = new UsernamePasswordAuthenticationToken(principal, null, List.of());
                 authToken.setDetails(
                         new WebAuthenticationDetailsSource().buildDetails(request)
                 );
                 SecurityContextHolder.getContext().setAuthentication(authToken);
-            } else {
-                log.warn("doFilterInternal – JWT is invalid for username={}", username);
             }
         }
 
         // Continue the filter chain after processing
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * @param jwt the bearer token
+     * @return the authenticated user, or null if the token is invalid or expired
+     */
+    private AuthenticatedUser authenticate(String jwt) {
+        AuthenticatedUser principal;
+        try {
+            principal = jwtService.parseToken(jwt);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.warn("authenticate – JWT is invalid: {}", e.getMessage());
+            return null;
+        }
+        if (principal.id() != null) {
+            return principal;
+        }
+        // Token issued before the user id was embedded in it
+        try {
+            return AuthenticatedUser.of((User) userService.loadUserByUsername(principal.username()));
+        } catch (UsernameNotFoundException e) {
+            log.warn("authenticate – JWT user no longer exists username={}", principal.username());
+            return null;
+        }
+    }
+}
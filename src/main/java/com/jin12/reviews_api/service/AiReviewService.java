@@ -1,60 +1,80 @@
 package com.jin12.reviews_api.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jin12.reviews_api.exception.CapacityExceededException;
+import com.jin12.reviews_api.exception.ExternalServiceException;
 import com.jin12.reviews_api.model.Product;
 import com.jin12.reviews_api.model.Review;
-import io.swagger.v3.core.util.Json;
+import com.jin12.reviews_api.resilience.CallGuard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * Service responsible for generating reviews using AI or mock data.
+ * ReviewGenerator that generates reviews with the 1minAI chat endpoint.
  * It builds a prompt based on product details and weather, then parses AI responses.
+ * This is the default generator; it is active unless reviews.generator selects another one.
  */
 @Service
-public class AiReviewService {
+@ConditionalOnProperty(name = "reviews.generator", havingValue = "ai", matchIfMissing = true)
+public class AiReviewService implements ReviewGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(AiReviewService.class);
+
     /**
-     * Template for generating a prompt to request a product review from the AI.
-     * Inserts product name, category, tags, and weather into the JSON prompt.
+     * Template for generating a prompt to request one or more product reviews from the AI.
+     * Inserts product name, category, tags, number of reviews and weather into the prompt.
      */
     private static final String PROMPT_TEMPLATE = """
-            Du är en kund som recenserar produkten:
-            - Namn: %s
-            - Kategori: %s
-            - Taggar: %s
+            Du är %5$d olika kunder som recenserar produkten:
+            - Namn: %1$s
+            - Kategori: %2$s
+            - Taggar: %3$s
             
-            Skriv och svara endast med en recension som ett komplett JSON-objekt:
-            {
-              "name": "…",
-              "rating": 1–5,
-              "text": "…"
-            }
+            Skriv och svara endast med en JSON-array med exakt %5$d recensioner:
+            [
+              {
+                "name": "…",
+                "rating": 1–5,
+                "text": "…"
+              }
+            ]
             
-            "name" är ett påhittat namn på en person.
+            "name" är ett påhittat namn på en person, olika för varje recension.
+            Recensionerna ska skilja sig åt i innehåll och betyg.
             
-            Använd detta väder för att påverka recensionens humör, finare väder ger bättre recension:
-            %s
+            Använd detta väder för att påverka recensionernas humör, finare väder ger bättre recension:
+            %4$s
             """;
 
     /**
-     * If true, the service returns a mock review without calling the AI API.
-     * Set to false to enable real AI API calls.
+     * Tokens reserved per requested review, and the cap for a whole batch.
      */
-    private static boolean USE_MOCK = false;
+    private static final int MAX_TOKENS_PER_REVIEW = 100;
+    private static final int MAX_TOKENS_PER_REQUEST = 1000;
 
     private final ObjectMapper objectMapper;
     private final WeatherService weatherService;
+    private final RestTemplate aiRestTemplate;
+    private final CallGuard aiCallGuard;
     private final String oneMinAiApiKey;
     private final String oneMinAiApiUrl;
 
@@ -62,101 +82,161 @@ public class AiReviewService {
      * Constructs the AiReviewService with dependencies and configuration values.
      *
      * @param weatherService   service used to retrieve current weather data
+     * @param aiRestTemplate   shared, pooled HTTP client configured for the AI endpoint
+     * @param aiCallGuard      rate limiter and bulkhead wrapping every AI request
      * @param objectMapper     JSON object mapper for parsing AI responses
      * @param oneMinAiApiKey   API key for the one-minute AI service
      * @param oneMinAiApiUrl   URL endpoint for the one-minute AI service
      */
     public AiReviewService(
             WeatherService weatherService,
+            @Qualifier("aiRestTemplate") RestTemplate aiRestTemplate,
+            @Qualifier("aiCallGuard") CallGuard aiCallGuard,
             ObjectMapper objectMapper,
             @Value("${ONEMINAI_API_KEY}") String oneMinAiApiKey,
             @Value("${ONEMINAI_API_URL}") String oneMinAiApiUrl
     ) {
         this.weatherService = weatherService;
+        this.aiRestTemplate = aiRestTemplate;
+        this.aiCallGuard = aiCallGuard;
         this.objectMapper = objectMapper;
         this.oneMinAiApiKey = oneMinAiApiKey;
         this.oneMinAiApiUrl = oneMinAiApiUrl;
     }
 
     /**
-     * Generates a Review entity for the given product.
-     * If USE_MOCK is true, returns a hardcoded review. Otherwise, builds a prompt and calls the AI API.
-     * Extracts JSON content from the AI response, converts it to a ReviewDto, then to a Review entity.
+     * Generates a single Review entity for the given product.
      *
      * @param product the product for which to generate a review
      * @return the generated Review entity, with a random date within the last two months
-     * @throws IOException          if JSON parsing fails
-     * @throws InterruptedException if the HTTP request to the AI service is interrupted
+     * @throws IOException                if the AI response contains no review
+     * @throws ExternalServiceException   if the HTTP request to the AI service fails
+     * @throws CapacityExceededException  if the AI rate limit or bulkhead rejected the call
+     */
+    public Review generateReview(Product product) throws IOException {
+        List<Review> reviews = generateReviews(product, 1);
+        if (reviews.isEmpty()) {
+            throw new IOException("AI response contained no review");
+        }
+        return reviews.get(0);
+    }
+
+    /**
+     * Generates up to n Review entities for the given product with a single AI call.
+     * Builds a prompt asking for a JSON array of n reviews and streams the reviews out of the response.
+     * If the answer is cut off, the complete reviews before the cut are still returned,
+     * so the result may hold fewer than n reviews.
+     *
+     * @param product the product for which to generate reviews
+     * @param n       the number of reviews to ask for
+     * @return the generated Review entities, each with a random date within the last two months
+     * @throws IOException                if JSON parsing fails
+     * @throws ExternalServiceException   if the HTTP request to the AI service fails
+     * @throws CapacityExceededException  if the AI rate limit or bulkhead rejected the call
      */
-    public Review generateReview(Product product) throws IOException, InterruptedException {
+    @Override
+    public List<Review> generateReviews(Product product, int n) throws IOException {
+        if (n <= 0) {
+            return List.of();
+        }
+
+        // Build the prompt outside the guard, so only the HTTP call holds a bulkhead slot and is timed by the breaker
+        String prompt = buildPrompt(product, n);
+        int maxTokens = Math.min(MAX_TOKENS_PER_REVIEW * n, MAX_TOKENS_PER_REQUEST);
+        String jsonResponse = aiCallGuard.call(() -> requestAiReview(prompt, maxTokens));
+
+        // Convert each ReviewDto to a Review entity
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Review> reviews = new ArrayList<>(n);
+        for (ReviewDto dto : parseReviews(jsonResponse, n)) {
+            Review review = new Review(dto.name(), dto.text(), dto.rating(), true);
+            review.setDate(ReviewGenerator.randomRecentDate(random));
+            review.setProduct(product);
+            reviews.add(review);
+        }
+        return reviews;
+    }
 
-        // Build the prompt string
-        String prompt = String.format(
+    private String buildPrompt(Product product, int n) {
+        return String.format(
                 PROMPT_TEMPLATE,
                 product.getProductName(),
                 product.getCategory(),
                 product.getTags(),
-                weatherService.getWeather()
+                weatherService.getWeather(),
+                n
         );
+    }
 
-        // Retrieve JSON response (mock or real)
-        String jsonResponse;
-        if (USE_MOCK) {
-            jsonResponse = """
-                    {
-                      "name": "TestUser",
-                      "rating": 5,
-                      "text": "Detta är en mockad recension."
-                    }
-                    """;
-        } else {
-            jsonResponse = requestAiReview(prompt);
+    /**
+     * Streams review objects out of an AI response.
+     * Text before the first JSON bracket is skipped, and both a single object and an array of objects
+     * are accepted. Parsing stops after max reviews, at the end of the array, or where the response is truncated.
+     * Reviews without a rating from 1 to 5 are left out, so they never reach the rating totals.
+     *
+     * @param response the raw AI response
+     * @param max      the maximum number of reviews to read
+     * @return the parsed reviews, in response order
+     * @throws IOException if the response contains no JSON or is malformed before the first review
+     */
+    List<ReviewDto> parseReviews(String response, int max) throws IOException {
+        int start = indexOfJsonStart(response);
+        if (start < 0) {
+            throw new IOException("AI response contained no JSON");
         }
 
-        // If AI response contains extra text, strip everything before and after JSON brackets
-        if (!(jsonResponse.startsWith("{") && jsonResponse.endsWith("}"))) {
-            int i = jsonResponse.indexOf("{");
-            int j = jsonResponse.indexOf("}");
-            jsonResponse = jsonResponse.substring(i, j + 1);
+        List<ReviewDto> reviews = new ArrayList<>(max);
+        try (JsonParser parser = objectMapper.createParser(response.substring(start))) {
+            JsonToken first = parser.nextToken();
+            if (first == JsonToken.START_OBJECT) {
+                addIfValid(reviews, objectMapper.readValue(parser, ReviewDto.class));
+                return reviews;
+            }
+            while (reviews.size() < max && parser.nextToken() == JsonToken.START_OBJECT) {
+                addIfValid(reviews, objectMapper.readValue(parser, ReviewDto.class));
+            }
+        } catch (JsonEOFException e) {
+            // Response was cut off (e.g. by max_tokens); keep the reviews that were complete
+            if (reviews.isEmpty()) {
+                throw e;
+            }
         }
-
-        // Convert JSON to ReviewDto
-        ReviewDto dto = objectMapper.readValue(jsonResponse, ReviewDto.class);
-
-        // Convert ReviewDto to Review entity
-        Review review = new Review(dto.name(), dto.text(), dto.rating(), true);
-        review.setDate(getRandomDate());
-        review.setProduct(product);
-
-        return review;
+        return reviews;
     }
 
-    /**
-     * Generates a random date within the last two months from today.
-     *
-     * @return a random LocalDate between two months ago and today
-     */
-    private LocalDate getRandomDate() {
-        Random rand = new Random();
-        LocalDate today = LocalDate.now();
-        LocalDate twoMonthsAgo = LocalDate.now().minusMonths(2);
+    private static void addIfValid(List<ReviewDto> reviews, ReviewDto dto) {
+        if (dto.rating() == null || dto.rating() < 1 || dto.rating() > 5) {
+            log.warn("parseReviews – AI-recension med ogiltigt betyg {} hoppas över", dto.rating());
+            return;
+        }
+        reviews.add(dto);
+    }
 
-        long randomDate = rand.nextLong(twoMonthsAgo.toEpochDay(), today.toEpochDay());
-        return LocalDate.ofEpochDay(randomDate);
+    private static int indexOfJsonStart(String response) {
+        int array = response.indexOf('[');
+        int object = response.indexOf('{');
+        if (array < 0) {
+            return object;
+        }
+        if (object < 0) {
+            return array;
+        }
+        return Math.min(array, object);
     }
 
     /**
      * Sends a POST request to the AI service with the given prompt and returns the raw JSON response.
+     * Uses the shared aiRestTemplate, so the connection to the AI endpoint is reused between calls.
      *
-     * @param prompt the prompt string to send to the AI API
+     * @param prompt    the prompt string to send to the AI API
+     * @param maxTokens the maximum number of tokens the AI may answer with
      * @return the raw response body as a JSON string
-     * @throws IOException          if sending or receiving the HTTP request fails
-     * @throws InterruptedException if the HTTP request is interrupted
+     * @throws ExternalServiceException if sending or receiving the HTTP request fails
      */
-    private String requestAiReview(String prompt) throws IOException, InterruptedException {
+    private String requestAiReview(String prompt, int maxTokens) {
         HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(oneMinAiApiKey);
         headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("API-KEY", oneMinAiApiKey);
 
         Map<String, Object> body = Map.of(
                 "type", "CHAT_WITH_AI",
@@ -164,22 +244,17 @@ public class AiReviewService {
                 "promptObject", Map.of(
                         "prompt", prompt,
                         "temperature", 0.7,
-                        "max_tokens", 100,
+                        "max_tokens", maxTokens,
                         "top_p", 0.9
                 )
         );
 
         // Send POST request and retrieve raw JSON string
-        try (HttpClient client = HttpClient.newHttpClient()) {
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(oneMinAiApiUrl))
-                    .header("Content-Type", "application/json")
-                    .header("API-KEY", oneMinAiApiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(Json.pretty(body)))
-                    .build();
-
-            HttpResponse<String> response = client.send(req, HttpResponse.BodyHandlers.ofString());
-            return response.body();
+        try {
+            String response = aiRestTemplate.postForObject(oneMinAiApiUrl, new HttpEntity<>(body, headers), String.class);
+            return response == null ? "" : response;
+        } catch (RestClientException e) {
+            throw new ExternalServiceException("Error calling AI service", e);
         }
     }
 
@@ -187,12 +262,12 @@ public class AiReviewService {
      * Internal DTO class used for parsing AI JSON responses into Java objects.
      *
      * @param name   the name of the reviewer
-     * @param rating the rating given by the reviewer (1-5)
+     * @param rating the rating given by the reviewer (1-5), null if the AI left it out
      * @param text   the review text content
      */
-    private static record ReviewDto(
+    static record ReviewDto(
             String name,
-            int rating,
+            Integer rating,
             String text
     ) {
     }
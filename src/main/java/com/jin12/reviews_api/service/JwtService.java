@@ -1,6 +1,14 @@
 package com.jin12.reviews_api.service;
 
+import com.jin12.reviews_api.model.User;
+import com.jin12.reviews_api.security.AuthenticatedUser;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,76 +17,132 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class JwtService {
 
     private static final Logger log = LoggerFactory.getLogger(JwtService.class);
 
-    private final String secret;
+    // Claim holding the user's database id
+    static final String USER_ID_CLAIM = "uid";
+
     private final long expiration;
+    // New tokens are signed with this key and carry its id in the kid header
+    private final SecretKey signingKey;
+    private final String signingKeyId;
+    // Keys accepted when verifying, by key id: the signing key and the previous ones still valid during a rotation
+    private final Map<String, SecretKey> verificationKeys;
+    // Immutable and thread-safe, shared by all requests
+    private final JwtParser parser;
 
+    /**
+     * @param secret          Base64-encoded key that signs new tokens
+     * @param previousSecrets Base64-encoded keys of earlier secrets whose tokens are still accepted
+     * @param expiration      token lifetime in milliseconds
+     */
     public JwtService(@Value("${JWT_SECRET}") String secret,
+                      @Value("${JWT_PREVIOUS_SECRETS:}") List<String> previousSecrets,
                       @Value("${JWT_EXPIRATION}") long expiration) {
-        this.secret = secret;
         this.expiration = expiration;
-        log.info("JwtService initialized with expiration={}ms", expiration);
+        this.signingKey = decodeKey(secret);
+        this.signingKeyId = keyId(signingKey);
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+        keys.put(signingKeyId, signingKey);
+        for (String previous : previousSecrets) {
+            if (!previous.isBlank()) {
+                SecretKey key = decodeKey(previous.trim());
+                keys.putIfAbsent(keyId(key), key);
+            }
+        }
+        this.verificationKeys = Map.copyOf(keys);
+        this.parser = Jwts.parser().keyLocator(this::locateKey).build();
+        log.info("JwtService initialized with expiration={}ms, signing kid={}, {} verification key(s)",
+                expiration, signingKeyId, verificationKeys.size());
     }
 
-    public String generateToken(UserDetails userDetails) {
-        log.debug("generateToken – start for username={}", userDetails.getUsername());
-        SecretKey key = getSigningKey();
+    /**
+     * Issues a signed token carrying the user's username as subject and id as the uid claim,
+     * so requests can be authenticated from the token alone.
+     *
+     * @param user the user to issue the token to
+     * @return a compact signed JWT
+     */
+    public String generateToken(User user) {
+        log.debug("generateToken – start for username={}", user.getUsername());
+        Date expiresAt = new Date(System.currentTimeMillis() + expiration);
         String token = Jwts.builder()
-                .subject(userDetails.getUsername())
+                .header().keyId(signingKeyId).and()
+                .subject(user.getUsername())
+                .claim(USER_ID_CLAIM, user.getId())
                 .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(key)
+                .expiration(expiresAt)
+                .signWith(signingKey)
                 .compact();
-        log.info("generateToken – token generated for username={}, expiresAt={}", userDetails.getUsername(),
-                new Date(System.currentTimeMillis() + expiration));
+        log.info("generateToken – token generated for username={}, expiresAt={}", user.getUsername(), expiresAt);
         return token;
     }
 
+    /**
+     * Verifies the token's signature and expiry, once, and reads the user it was issued to.
+     *
+     * @param token a compact signed JWT
+     * @return the user from the token's claims; the id is null in tokens issued before it was embedded
+     * @throws JwtException             if the token is malformed, wrongly signed or expired
+     * @throws IllegalArgumentException if the token is empty
+     */
+    public AuthenticatedUser parseToken(String token) {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        log.debug("parseToken – username={}, userId={}", claims.getSubject(), userId);
+        return new AuthenticatedUser(userId != null ? userId.longValue() : null, claims.getSubject());
+    }
+
     public boolean isTokenValid(String token, UserDetails userDetails) {
         log.debug("isTokenValid – validating token for username={}", userDetails.getUsername());
-        final String username = extractUsername(token);
-        boolean valid = (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        // Expired tokens are rejected while parsing
+        boolean valid = parseToken(token).username().equals(userDetails.getUsername());
         log.debug("isTokenValid – validation result for username={}: {}", userDetails.getUsername(), valid);
         return valid;
     }
 
     public String extractUsername(String token) {
-        log.debug("extractUsername – extracting username from token");
-        String username = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
-        log.debug("extractUsername – extracted username={}", username);
-        return username;
+        return parseToken(token).username();
     }
 
-    private boolean isTokenExpired(String token) {
-        log.debug("isTokenExpired – checking expiration for token");
-        Date exp = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getExpiration();
-        boolean expired = exp.before(new Date());
-        log.debug("isTokenExpired – token expired={}", expired);
-        return expired;
+    // Picks the verification key named by the token's kid header
+    private Key locateKey(Header header) {
+        String keyId = header instanceof ProtectedHeader protectedHeader ? protectedHeader.getKeyId() : null;
+        if (keyId == null) {
+            // Tokens issued before key ids were added are signed with the current secret
+            return signingKey;
+        }
+        SecretKey key = verificationKeys.get(keyId);
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown signing key id " + keyId);
+        }
+        return key;
     }
 
-    private SecretKey getSigningKey() {
-        log.trace("getSigningKey – decoding secret and generating key");
-        byte[] keyBytes = Base64.getDecoder().decode(secret);
-        SecretKey key = Keys.hmacShaKeyFor(keyBytes);
-        log.trace("getSigningKey – key generated");
-        return key;
+    private static SecretKey decodeKey(String secret) {
+        return Keys.hmacShaKeyFor(Base64.getDecoder().decode(secret));
+    }
+
+    // Short id derived from the key itself, so rotating a secret needs no separate key id setting
+    static String keyId(SecretKey key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 6));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
-}
\ No newline at end of file
+}
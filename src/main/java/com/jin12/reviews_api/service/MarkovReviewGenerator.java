@@ -0,0 +1,154 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.dto.ReviewSample;
+import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.Review;
+import com.jin12.reviews_api.repository.ReviewRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-process ReviewGenerator that writes new review texts with a word-level Markov chain.
+ * Each product owner gets a model of its own, trained only on the most recent reviews people wrote on
+ * that owner's products, so no text crosses between users and generated reviews never train the model.
+ * Ratings are drawn from the same reviews; reviewer names are made up, never copied.
+ * A model is rebuilt when it is older than the refresh interval. Until an owner has stored reviews
+ * to learn from, a short template text is used instead.
+ * Enabled with reviews.generator=markov.
+ */
+@Service
+@ConditionalOnProperty(name = "reviews.generator", havingValue = "markov")
+public class MarkovReviewGenerator implements ReviewGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(MarkovReviewGenerator.class);
+
+    private static final String START = "\u0002";
+    private static final String END = "\u0003";
+    private static final int MAX_WORDS = 40;
+
+    private final ReviewRepository reviewRepository;
+    private final int corpusSize;
+    private final long refreshMs;
+    // Models keyed by the id of the user owning the products, least recently used dropped past maxOwners
+    private final Map<Long, Model> models;
+
+    /**
+     * @param corpusSize how many of an owner's newest reviews a model is trained on
+     * @param refreshMs  how long a model is used before it is rebuilt
+     * @param maxOwners  how many owners' models are kept at once
+     */
+    public MarkovReviewGenerator(ReviewRepository reviewRepository,
+                                 @Value("${reviews.generator.markov.corpus-size:500}") int corpusSize,
+                                 @Value("${reviews.generator.markov.refresh-ms:600000}") long refreshMs,
+                                 @Value("${reviews.generator.markov.max-owners:1000}") int maxOwners) {
+        this.reviewRepository = reviewRepository;
+        this.corpusSize = corpusSize;
+        this.refreshMs = refreshMs;
+        this.models = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Model> eldest) {
+                return size() > maxOwners;
+            }
+        };
+    }
+
+    /**
+     * Generates n reviews for the product from the current Markov model.
+     *
+     * @param product the product to generate reviews for
+     * @param n       the number of reviews to generate
+     * @return n generated reviews
+     */
+    @Override
+    public List<Review> generateReviews(Product product, int n) {
+        Model current = currentModel(product.getUserId());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        List<Review> reviews = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String text;
+            int rating;
+            if (current.samples.isEmpty()) {
+                rating = random.nextInt(3, 6);
+                text = product.getProductName() + " i kategorin " + product.getCategory() + " fungerar som utlovat.";
+            } else {
+                rating = current.samples.get(random.nextInt(current.samples.size())).rating();
+                text = current.walk(random);
+            }
+
+            Review review = new Review("Kund " + (random.nextInt(900) + 100), text, rating, true);
+            review.setDate(ReviewGenerator.randomRecentDate(random));
+            review.setProduct(product);
+            reviews.add(review);
+        }
+        return reviews;
+    }
+
+    private Model currentModel(Long userId) {
+        synchronized (models) {
+            Model current = models.get(userId);
+            if (current == null || System.currentTimeMillis() - current.builtAt > refreshMs) {
+                current = Model.build(reviewRepository.findHumanSamplesByUserId(userId, Limit.of(corpusSize)));
+                models.put(userId, current);
+                log.info("currentModel – Markov model for userId={} rebuilt from {} review(s), {} word(s)",
+                        userId, current.samples.size(), current.transitions.size());
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Immutable word-transition table built from a set of review texts.
+     */
+    private record Model(List<ReviewSample> samples, Map<String, List<String>> transitions, long builtAt) {
+
+        static Model build(List<ReviewSample> samples) {
+            Map<String, List<String>> transitions = new HashMap<>();
+            List<ReviewSample> usable = new ArrayList<>();
+            for (ReviewSample sample : samples) {
+                if (sample.reviewText() == null || sample.reviewText().isBlank()) {
+                    continue;
+                }
+                usable.add(sample);
+                String previous = START;
+                for (String word : sample.reviewText().trim().split("\\s+")) {
+                    transitions.computeIfAbsent(previous, k -> new ArrayList<>()).add(word);
+                    previous = word;
+                }
+                transitions.computeIfAbsent(previous, k -> new ArrayList<>()).add(END);
+            }
+            return new Model(List.copyOf(usable), transitions, System.currentTimeMillis());
+        }
+
+        String walk(ThreadLocalRandom random) {
+            StringBuilder text = new StringBuilder();
+            String word = START;
+            for (int i = 0; i < MAX_WORDS; i++) {
+                List<String> next = transitions.get(word);
+                if (next == null) {
+                    break;
+                }
+                word = next.get(random.nextInt(next.size()));
+                if (END.equals(word)) {
+                    break;
+                }
+                if (!text.isEmpty()) {
+                    text.append(' ');
+                }
+                text.append(word);
+            }
+            return text.toString();
+        }
+    }
+}
@@ -1,82 +1,156 @@
 package com.jin12.reviews_api.service;
 
+import com.jin12.reviews_api.cache.BoundedCache;
+import com.jin12.reviews_api.cache.DayKey;
+import com.jin12.reviews_api.cache.SerializedResponse;
+import com.jin12.reviews_api.dto.ContentVersion;
+import com.jin12.reviews_api.dto.ProductCursor;
+import com.jin12.reviews_api.dto.ProductPage;
+import com.jin12.reviews_api.dto.ProductRespons;
+import com.jin12.reviews_api.dto.ProductSort;
+import com.jin12.reviews_api.dto.ReviewsRespons;
 import com.jin12.reviews_api.exception.ProductAlreadyExistsException;
 import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductKey;
 import com.jin12.reviews_api.repository.ProductRepository;
+import com.jin12.reviews_api.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * ProductService handles core product operations such as adding, deleting,
- * and fetching products. Ensures no duplicate productId and retrieves products by user.
+ * and fetching products. Ensures no user has two products with the same productId and retrieves products by user,
+ * in full or one keyset-paginated page at a time.
+ * Every add and delete bumps the owner's product list version, used for conditional GETs of the list.
  */
 @Service
 public class ProductService {
     private static final Logger log = LoggerFactory.getLogger(ProductService.class);
     private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final ReviewGenerationJobService reviewGenerationJobService;
+    private final ReviewStatsService reviewStatsService;
+    private final BoundedCache<DayKey<ProductKey>, SerializedResponse<ReviewsRespons>> reviewsCache;
 
     /**
-     * Constructor for dependency injection of ProductRepository.
+     * Constructor for dependency injection.
      *
-     * @param productRepository repository used to interact with product data
+     * @param productRepository          repository used to interact with product data
+     * @param userRepository             repository holding each user's product list version
+     * @param reviewGenerationJobService outbox for background AI review generation
+     * @param reviewStatsService         per-product rating totals
+     * @param reviewsCache               cached review responses, dropped when a product is deleted
      */
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, UserRepository userRepository,
+                          ReviewGenerationJobService reviewGenerationJobService,
+                          ReviewStatsService reviewStatsService,
+                          BoundedCache<DayKey<ProductKey>, SerializedResponse<ReviewsRespons>> reviewsCache) {
         this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.reviewGenerationJobService = reviewGenerationJobService;
+        this.reviewStatsService = reviewStatsService;
+        this.reviewsCache = reviewsCache;
     }
 
     /**
-     * Adds a new product to the database. Throws an exception if a product
-     * with the same productId already exists.
+     * Adds a new product to the database. Throws an exception if the user already has a product
+     * with the same productId.
+     * Creates the product's empty stats row and enqueues a background job that fills the product
+     * with AI reviews, both in the same transaction.
      *
-     * @param product the product entity to save
+     * @param product the product entity to save, with userId set
      * @return the saved Product entity
      * @throws ProductAlreadyExistsException if productId is already taken
      */
+    @Transactional
     public Product addProduct(Product product) {
         log.info("addProduct – försök spara produkt: productName={}, category={}",
                 product.getProductName(), product.getCategory());
         // Check if a product with this ID already exists
-        if (productRepository.findByProductId(product.getProductId()).isPresent()) {
+        if (productRepository.existsById(product.key())) {
             throw new ProductAlreadyExistsException("Produkt med ID " + product.getProductId() + " finns redan.");
         }
         // Save the new product
         Product saved = productRepository.save(product);
-        log.info("addProduct – sparad produkt med productId={}", saved.getProductId());
+        reviewStatsService.createFor(saved.key());
+        reviewGenerationJobService.enqueue(saved.key());
+        bumpProductListVersion(saved.getUserId());
+        log.info("addProduct – sparad produkt med productKey={}", saved.key());
         return saved;
     }
 
     /**
      * Deletes a product by its ID if it exists. Logs a warning if not found.
+     * The product, its jobs and stats and the list version bump are written in one transaction,
+     * and the product's cached reviews are dropped once it has committed.
      *
-     * @param productId the fullProductId of the product to delete
+     * @param key the key of the product to delete
      */
-    public void deleteProduct(String productId) {
-        log.info("deleteProduct – försök radera produktId={}", productId);
+    @Transactional
+    public void deleteProduct(ProductKey key) {
+        log.info("deleteProduct – försök radera productKey={}", key);
         // Only delete if the product actually exists
-        if (productRepository.existsById(productId)) {
-            productRepository.deleteById(productId);
-            log.info("deleteProduct – produkt raderad produktId={}", productId);
+        if (productRepository.existsById(key)) {
+            productRepository.deleteById(key);
+            reviewGenerationJobService.deleteJobsForProduct(key);
+            reviewStatsService.deleteFor(key);
+            bumpProductListVersion(key.userId());
+            invalidateAfterCommit(key);
+            log.info("deleteProduct – produkt raderad productKey={}", key);
         } else {
-            log.warn("deleteProduct – ingen produkt att radera för produktId={}", productId);
+            log.warn("deleteProduct – ingen produkt att radera för productKey={}", key);
+        }
+    }
+
+    /**
+     * Drops the product's cached reviews once the current transaction has committed, so a reader cannot
+     * cache them again between the invalidation and the commit. Without a transaction it drops them at once.
+     *
+     * @param key the product's key
+     */
+    private void invalidateAfterCommit(ProductKey key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reviewsCache.invalidate(DayKey.today(key));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reviewsCache.invalidate(DayKey.today(key));
+            }
+        });
+    }
+
+    // Produktlistan har ändrats för ägaren
+    private void bumpProductListVersion(Long userId) {
+        if (userId != null) {
+            userRepository.bumpProductsVersion(userId, Instant.now());
         }
     }
 
     /**
      * Retrieves a product by its ID. Throws RuntimeException if not found.
      *
-     * @param productId the fullProductId to find
+     * @param key the key of the product to find
      * @return the found Product entity
-     * @throws RuntimeException if no product is found for the given ID
+     * @throws RuntimeException if no product is found for the given key
      */
-    public Product getProductById(String productId) {
-        log.debug("getProductById – hämta produkt produktId={}", productId);
-        Product product = productRepository.findByProductId(productId)
+    public Product getProductById(ProductKey key) {
+        log.debug("getProductById – hämta produkt productKey={}", key);
+        Product product = productRepository.findById(key)
                 .orElseThrow(() -> {
-                    log.warn("getProductById – ingen produkt hittades för produktId={}", productId);
-                    return new RuntimeException("Produkt med ID " + productId + " finns inte.");
+                    log.warn("getProductById – ingen produkt hittades för productKey={}", key);
+                    return new RuntimeException("Produkt med ID " + key.productId() + " finns inte.");
                 });
         log.debug("getProductById – hittade produkt={}", product);
         return product;
@@ -106,4 +180,56 @@ public class ProductService {
         log.debug("getProductsByUser – antal produkter för userId={} = {}", userId, list.size());
         return list;
     }
+
+    /**
+     * Reads one page of a user's product list as lightweight rows, without loading Product entities,
+     * their reviews or their user. The page starts after the cursor, so a deep page costs the same as the first.
+     *
+     * @param userId the ID of the user
+     * @param sort   the sort order
+     * @param cursor position after the previous page, or null for the first page
+     * @param limit  max number of products on the page
+     * @return the products, with a cursor for the next page when there are more
+     * @throws IllegalArgumentException if the cursor belongs to another sort order
+     */
+    public ProductPage getProductPage(Long userId, ProductSort sort, ProductCursor cursor, int limit) {
+        if (cursor != null && cursor.sort() != sort) {
+            throw new IllegalArgumentException("Cursor belongs to sort order " + cursor.sort());
+        }
+        String afterValue = cursor != null ? cursor.value() : "";
+        String afterProductId = cursor != null ? cursor.productId() : "";
+        // One extra row tells whether there is a next page
+        Limit rows = Limit.of(limit + 1);
+        List<ProductRespons> products = switch (sort) {
+            case ID -> productRepository.findPageOrderById(userId, afterProductId, rows);
+            case NAME -> productRepository.findPageOrderByName(userId, afterValue, afterProductId, rows);
+            case CATEGORY -> productRepository.findPageOrderByCategory(userId, afterValue, afterProductId, rows);
+        };
+        String nextCursor = null;
+        if (products.size() > limit) {
+            products = products.subList(0, limit);
+            ProductRespons last = products.get(limit - 1);
+            String value = switch (sort) {
+                case ID -> "";
+                case NAME -> Objects.requireNonNullElse(last.getProductName(), "");
+                case CATEGORY -> Objects.requireNonNullElse(last.getCategory(), "");
+            };
+            nextCursor = new ProductCursor(sort, value, last.getProductId()).encode();
+        }
+        log.debug("getProductPage – userId={}, sort={}, rows={}, more={}", userId, sort, products.size(), nextCursor != null);
+        return ProductPage.builder()
+                .products(products)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Reads the version of a user's product list without loading any products.
+     *
+     * @param userId the ID of the user
+     * @return the version, or empty if the user does not exist
+     */
+    public Optional<ContentVersion> getProductListVersion(Long userId) {
+        return userRepository.findProductsVersion(userId);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ReviewGenerationJob;
+import com.jin12.reviews_api.model.ReviewGenerationJob.Status;
+import com.jin12.reviews_api.repository.ReviewGenerationJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * ReviewGenerationJobService manages the outbox of background AI review jobs.
+ * Key responsibilities:
+ * - Enqueue a job when a product is created, or when a read could not generate reviews right away
+ * - Claim due jobs for the worker, so each job runs once even with several instances
+ * - Record success, or schedule a retry with exponential backoff until maxAttempts is reached,
+ *   only while the job is still the claimed one, so deleted or re-claimed jobs are never written back
+ */
+@Service
+public class ReviewGenerationJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewGenerationJobService.class);
+
+    private final ReviewGenerationJobRepository jobRepository;
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+    private final Duration lockTimeout;
+
+    public ReviewGenerationJobService(ReviewGenerationJobRepository jobRepository,
+                                      @Value("${reviews.pregeneration.max-attempts:5}") int maxAttempts,
+                                      @Value("${reviews.pregeneration.backoff-ms:5000}") long baseBackoffMs,
+                                      @Value("${reviews.pregeneration.lock-timeout-ms:300000}") long lockTimeoutMs) {
+        this.jobRepository = jobRepository;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = Duration.ofMillis(baseBackoffMs);
+        this.lockTimeout = Duration.ofMillis(lockTimeoutMs);
+    }
+
+    /**
+     * Adds a pending job for the product. Joins the caller's transaction when there is one,
+     * so the job is stored together with the product.
+     *
+     * @param productKey the product's key
+     * @return the saved job
+     */
+    public ReviewGenerationJob enqueue(ProductKey productKey) {
+        ReviewGenerationJob job = jobRepository.save(new ReviewGenerationJob(productKey));
+        log.info("enqueue – review generation job id={} queued for productKey={}", job.getId(), productKey);
+        return job;
+    }
+
+    /**
+     * Adds a pending job for the product unless one is already pending or running,
+     * so repeated reads of the same product during a spike queue a single job.
+     *
+     * @param productKey the product's key
+     * @return true if a new job was queued
+     */
+    public boolean enqueueIfIdle(ProductKey productKey) {
+        if (jobRepository.existsByUserIdAndProductIdAndStatusIn(productKey.userId(), productKey.productId(),
+                EnumSet.of(Status.PENDING, Status.RUNNING))) {
+            return false;
+        }
+        enqueue(productKey);
+        return true;
+    }
+
+    /**
+     * Claims up to limit due jobs and marks them RUNNING.
+     * Jobs stuck in RUNNING longer than the lock timeout are released first.
+     *
+     * @param limit maximum number of jobs to claim
+     * @return the claimed jobs, in due order
+     */
+    public List<ReviewGenerationJob> claimDueJobs(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        // Stored with microsecond precision; lockedAt must compare equal when the job is finished
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        int released = jobRepository.releaseStale(now.minus(lockTimeout));
+        if (released > 0) {
+            log.warn("claimDueJobs – released {} stale job(s)", released);
+        }
+
+        List<ReviewGenerationJob> due = jobRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+                Status.PENDING, now, Limit.of(limit));
+        List<ReviewGenerationJob> claimed = new ArrayList<>(due.size());
+        for (ReviewGenerationJob job : due) {
+            // Another instance may have taken the job between the select and the update
+            if (jobRepository.claim(job.getId(), now) == 1) {
+                job.setStatus(Status.RUNNING);
+                job.setLockedAt(now);
+                job.setAttempts(job.getAttempts() + 1);
+                claimed.add(job);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Marks a job as finished, if it is still RUNNING under the claim that returned it.
+     * A job deleted with its product, or released as stale and claimed again, is left alone.
+     *
+     * @param job the claimed job
+     * @return true if the job was updated
+     */
+    public boolean markDone(ReviewGenerationJob job) {
+        LocalDateTime lockedAt = job.getLockedAt();
+        job.setStatus(Status.DONE);
+        job.setLockedAt(null);
+        job.setLastError(null);
+        if (jobRepository.finish(job.getId(), lockedAt) == 0) {
+            log.info("markDone – job id={} for productKey={} was deleted or claimed again, not updated",
+                    job.getId(), job.productKey());
+            return false;
+        }
+        log.debug("markDone – job id={} done for productKey={}", job.getId(), job.productKey());
+        return true;
+    }
+
+    /**
+     * Records a failed attempt. The job is retried after baseBackoff * 2^(attempts-1),
+     * or marked FAILED once maxAttempts is reached.
+     * Like markDone, only a job still RUNNING under the claim that returned it is updated.
+     *
+     * @param job   the claimed job
+     * @param error description of what went wrong
+     * @return true if the job was updated
+     */
+    public boolean markFailed(ReviewGenerationJob job, String error) {
+        LocalDateTime lockedAt = job.getLockedAt();
+        job.setLockedAt(null);
+        job.setLastError(error == null ? null : error.substring(0, Math.min(error.length(), 1000)));
+        Duration backoff = null;
+        if (job.getAttempts() >= maxAttempts) {
+            job.setStatus(Status.FAILED);
+        } else {
+            backoff = baseBackoff.multipliedBy(1L << Math.min(job.getAttempts() - 1, 16));
+            job.setStatus(Status.PENDING);
+            job.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+        }
+        if (jobRepository.fail(job.getId(), lockedAt, job.getStatus(), job.getNextAttemptAt(), job.getLastError()) == 0) {
+            log.info("markFailed – job id={} for productKey={} was deleted or claimed again, not updated",
+                    job.getId(), job.productKey());
+            return false;
+        }
+        if (backoff == null) {
+            log.error("markFailed – job id={} gave up after {} attempts for productKey={}: {}",
+                    job.getId(), job.getAttempts(), job.productKey(), error);
+        } else {
+            log.warn("markFailed – job id={} attempt {} failed for productKey={}, retry in {} ms: {}",
+                    job.getId(), job.getAttempts(), job.productKey(), backoff.toMillis(), error);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all jobs for a product, e.g. when the product is deleted.
+     *
+     * @param productKey the product's key
+     */
+    public void deleteJobsForProduct(ProductKey productKey) {
+        jobRepository.deleteByProductId(productKey.userId(), productKey.productId());
+    }
+}
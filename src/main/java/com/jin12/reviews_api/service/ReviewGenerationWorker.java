@@ -0,0 +1,84 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.exception.ProductNotFoundException;
+import com.jin12.reviews_api.model.ReviewGenerationJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Background worker that drains the review generation outbox.
+ * Polls for due jobs at a fixed delay and runs at most `workers` jobs at once on reviewJobExecutor,
+ * so new products are filled with AI reviews before the first shopper asks for them.
+ */
+@Component
+public class ReviewGenerationWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewGenerationWorker.class);
+
+    private final ReviewGenerationJobService jobService;
+    private final ReviewService reviewService;
+    private final ExecutorService reviewJobExecutor;
+    private final Semaphore freeWorkers;
+
+    public ReviewGenerationWorker(ReviewGenerationJobService jobService,
+                                  ReviewService reviewService,
+                                  @Qualifier("reviewJobExecutor") ExecutorService reviewJobExecutor,
+                                  @Value("${reviews.pregeneration.workers:2}") int workers) {
+        this.jobService = jobService;
+        this.reviewService = reviewService;
+        this.reviewJobExecutor = reviewJobExecutor;
+        this.freeWorkers = new Semaphore(workers);
+    }
+
+    /**
+     * Claims as many due jobs as there are free workers and hands them to the pool.
+     */
+    @Scheduled(fixedDelayString = "${reviews.pregeneration.poll-interval-ms:2000}")
+    public void poll() {
+        int free = freeWorkers.availablePermits();
+        if (free == 0) {
+            return;
+        }
+        for (ReviewGenerationJob job : jobService.claimDueJobs(free)) {
+            freeWorkers.acquireUninterruptibly();
+            reviewJobExecutor.execute(() -> {
+                try {
+                    run(job);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs one job and records the outcome. A product that is still short afterwards,
+     * e.g. because the AI answer was cut off, counts as a failed attempt and is retried.
+     *
+     * @param job the claimed job
+     */
+    void run(ReviewGenerationJob job) {
+        log.debug("run – job id={} attempt {} for productKey={}", job.getId(), job.getAttempts(), job.productKey());
+        try {
+            int stillMissing = reviewService.topUpReviews(job.productKey());
+            if (stillMissing > 0) {
+                jobService.markFailed(job, stillMissing + " review(s) still missing");
+            } else {
+                jobService.markDone(job);
+            }
+        } catch (ProductNotFoundException e) {
+            // Product was deleted before the job ran; nothing left to do
+            jobService.markDone(job);
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            jobService.markFailed(job, cause.toString());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.Review;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Source of generated reviews for products that have too few real ones.
+ * The implementation is chosen with the reviews.generator property:
+ * - ai (default): AiReviewService, calls the 1minAI endpoint
+ * - seeded: SeededReviewGenerator, deterministic and in-process, for tests and load tests
+ * - markov: MarkovReviewGenerator, builds new texts from the reviews already stored
+ */
+public interface ReviewGenerator {
+
+    /**
+     * Generates up to n reviews for the product. The reviews are not saved.
+     * Each review is marked as generatedByAI, linked to the product and dated within the last two months.
+     *
+     * @param product the product to generate reviews for
+     * @param n       the number of reviews to generate
+     * @return the generated reviews; may hold fewer than n
+     * @throws IOException if the generator's source cannot be read or parsed
+     */
+    List<Review> generateReviews(Product product, int n) throws IOException;
+
+    /**
+     * Picks a random date between two months ago and today.
+     *
+     * @param random the random source to use
+     * @return a date within the last two months
+     */
+    static LocalDate randomRecentDate(RandomGenerator random) {
+        LocalDate today = LocalDate.now();
+        LocalDate twoMonthsAgo = today.minusMonths(2);
+        return LocalDate.ofEpochDay(random.nextLong(twoMonthsAgo.toEpochDay(), today.toEpochDay()));
+    }
+}
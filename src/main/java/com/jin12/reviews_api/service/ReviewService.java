@@ -1,28 +1,71 @@
 package com.jin12.reviews_api.service;
 
+import com.jin12.reviews_api.cache.BoundedCache;
+import com.jin12.reviews_api.cache.DayKey;
+import com.jin12.reviews_api.cache.ResponseSerializer;
+import com.jin12.reviews_api.cache.SerializedResponse;
+import com.jin12.reviews_api.dto.ContentVersion;
+import com.jin12.reviews_api.dto.ProductStatsRow;
+import com.jin12.reviews_api.dto.ProductWithStats;
+import com.jin12.reviews_api.dto.ReviewAggregate;
+import com.jin12.reviews_api.dto.ReviewCursor;
+import com.jin12.reviews_api.dto.ReviewFilter;
+import com.jin12.reviews_api.dto.ReviewListItem;
+import com.jin12.reviews_api.dto.ReviewPage;
 import com.jin12.reviews_api.dto.ReviewRespons;
 import com.jin12.reviews_api.dto.ReviewStatsResponse;
 import com.jin12.reviews_api.dto.ReviewsRespons;
+import com.jin12.reviews_api.exception.CapacityExceededException;
 import com.jin12.reviews_api.exception.ProductNotFoundException;
 import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ProductReviewStats;
 import com.jin12.reviews_api.model.Review;
 import com.jin12.reviews_api.repository.ProductRepository;
 import com.jin12.reviews_api.repository.ReviewRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * ReviewService handles operations related to product reviews.
  * Key responsibilities:
  * - Add a review for a product
  * - Delete reviews
- * - Fetch recent reviews (with AI fallback if below threshold)
- * - Compute review statistics for a product
- * - Package reviews and stats into a single response
+ * - List all of a product's reviews page by page, with filters
+ * - Fetch recent reviews (with AI fallback if below threshold, or a background job when the AI is busy)
+ * - Keep the per-product rating totals in step with every review insert and delete
+ * - Read review statistics for a product over the recent months or a window of days, summed from its rating
+ *   buckets, with all-time figures from those totals, or for many products at once
+ * - Package reviews and stats into a single response, cached until the product's reviews change
+ * - Version that response, so clients can revalidate it without it being loaded
  */
 @Service
 public class ReviewService {
@@ -31,32 +74,76 @@ public class ReviewService {
 
     private final ReviewRepository reviewRepository;
     private final ProductRepository productRepository;
-    private final AiReviewService aiReviewService;
+    private final ReviewGenerator reviewGenerator;
+    private final ReviewGenerationJobService jobService;
+    private final ReviewStatsService statsService;
+    private final TransactionTemplate transactionTemplate;
+    private final BoundedCache<DayKey<ProductKey>, SerializedResponse<ReviewsRespons>> reviewsCache;
+    private final ResponseSerializer responseSerializer;
+    private final ExecutorService aiReviewExecutor;
+    private final long aiDeadlineMs;
+
+    // One in-flight AI generation per product
+    private final ConcurrentMap<ProductKey, CompletableFuture<List<Review>>> inFlightGenerations = new ConcurrentHashMap<>();
 
     private static final int MIN_REVIEWS = 5;
     private static final int MAX_REVIEWS = 10;
+    // Reviews dated within this many months are recent: they are listed, counted towards MIN_REVIEWS and make up the stats
+    private static final int RECENT_MONTHS = 2;
+
+    // Open ends of a review listing's date range
+    private static final LocalDate LIST_START_DATE = LocalDate.of(1, 1, 1);
+    private static final LocalDate LIST_END_DATE = LocalDate.of(9999, 12, 31);
 
-    public ReviewService(ReviewRepository reviewRepository, ProductRepository productRepository, AiReviewService aiReviewService) {
+    /**
+     * @param reviewGenerator     source of generated reviews (AI, seeded or Markov, see ReviewGenerator)
+     * @param jobService          background jobs that fill products the AI could not serve right away
+     * @param statsService        per-product rating totals, updated in the same transaction as the reviews
+     * @param transactionTemplate transaction for saving AI reviews together with their totals
+     * @param reviewsCache        serialized responses of getSerializedReviewsForProduct, keyed by product key and day
+     * @param responseSerializer  serializes responses for reviewsCache
+     * @param aiReviewExecutor    executor that runs AI generation tasks concurrently
+     * @param aiDeadlineMs        how long a read waits for AI reviews before returning what has finished
+     */
+    public ReviewService(ReviewRepository reviewRepository,
+                         ProductRepository productRepository,
+                         ReviewGenerator reviewGenerator,
+                         ReviewGenerationJobService jobService,
+                         ReviewStatsService statsService,
+                         TransactionTemplate transactionTemplate,
+                         BoundedCache<DayKey<ProductKey>, SerializedResponse<ReviewsRespons>> reviewsCache,
+                         ResponseSerializer responseSerializer,
+                         @Qualifier("aiReviewExecutor") ExecutorService aiReviewExecutor,
+                         @Value("${reviews.ai.deadline-ms:8000}") long aiDeadlineMs) {
         this.reviewRepository = reviewRepository;
         this.productRepository = productRepository;
-        this.aiReviewService = aiReviewService;
+        this.reviewGenerator = reviewGenerator;
+        this.jobService = jobService;
+        this.statsService = statsService;
+        this.transactionTemplate = transactionTemplate;
+        this.reviewsCache = reviewsCache;
+        this.responseSerializer = responseSerializer;
+        this.aiReviewExecutor = aiReviewExecutor;
+        this.aiDeadlineMs = aiDeadlineMs;
     }
 
     /**
-     * Adds a new review for the given productId.
-     * Fetches the Product entity, sets the review's product and date, then saves it.
+     * Adds a new review for the given product.
+     * Fetches the Product entity, sets the review's product and date, then saves it
+     * and adds it to the product's rating totals in the same transaction.
      *
-     * @param productId the full product ID (including user prefix)
-     * @param review    the Review entity to add
+     * @param productKey the product's key
+     * @param review     the Review entity to add
      * @return the saved Review entity
      * @throws RuntimeException if the product is not found
      */
-    public Review addReview(String productId, Review review) {
-        log.debug("addReview – start, productId={}, reviewer={}", productId, review.getName());
+    @Transactional
+    public Review addReview(ProductKey productKey, Review review) {
+        log.debug("addReview – start, productKey={}, reviewer={}", productKey, review.getName());
         // Fetch product by ID, throw if missing
-        Product product = productRepository.findById(productId)
+        Product product = productRepository.findById(productKey)
                 .orElseThrow(() -> {
-                    log.warn("addReview – produkt saknas productId={}", productId);
+                    log.warn("addReview – produkt saknas productKey={}", productKey);
                     return new RuntimeException("Produkt finns inte");
                 });
 
@@ -64,167 +151,526 @@ public class ReviewService {
         review.setProduct(product);
         review.setDate(LocalDate.now());
         Review saved = reviewRepository.save(review);
-        log.info("addReview – sparad recension id={} för productId={}", saved.getId(), productId);
+        statsService.recordAdded(productKey, List.of(saved));
+        invalidateAfterCommit(productKey);
+        log.info("addReview – sparad recension id={} för productKey={}", saved.getId(), productKey);
         return saved;
     }
 
     /**
-     * Deletes a single review by its ID.
+     * Deletes a single review by its ID and removes it from the product's rating totals in the same transaction.
      *
      * @param reviewId the ID of the review to delete
      */
+    @Transactional
     public void deleteReview(Long reviewId) {
         log.info("deleteReview – försök radera reviewId={}", reviewId);
-        reviewRepository.deleteById(reviewId);
-        log.info("deleteReview – recension raderad reviewId={}", reviewId);
+        reviewRepository.findById(reviewId).ifPresent(review -> {
+            reviewRepository.delete(review);
+            statsService.recordRemoved(review.getProduct().key(), List.of(review));
+            invalidateAfterCommit(review.getProduct().key());
+            log.info("deleteReview – recension raderad reviewId={}", reviewId);
+        });
     }
 
     /**
-     * Deletes all reviews associated with the given productId.
+     * Deletes all reviews associated with the given product and resets the product's rating totals.
      *
-     * @param productId the full product ID whose reviews should be deleted
+     * @param productKey the key of the product whose reviews should be deleted
      */
-    public void deleteReviewsByProductId(String productId) {
-        log.info("deleteReviewsByProductId – försök radera recensioner för productId={}", productId);
-        reviewRepository.deleteByProductId(productId);
-        log.info("deleteReviewsByProductId – raderade recensioner för productId={}", productId);
+    @Transactional
+    public void deleteReviewsByProductId(ProductKey productKey) {
+        log.info("deleteReviewsByProductId – försök radera recensioner för productKey={}", productKey);
+        reviewRepository.deleteByProductId(productKey.userId(), productKey.productId());
+        statsService.rebuild(productKey);
+        invalidateAfterCommit(productKey);
+        log.info("deleteReviewsByProductId – raderade recensioner för productKey={}", productKey);
     }
 
     /**
-     * Fetches recent reviews for a product. Considers reviews from the past two months.
+     * Fetches the latest reviews for a product, newest first. Considers reviews from the past two months.
      * If fewer than MIN_REVIEWS are found, generates additional AI reviews up to MIN_REVIEWS.
-     * Limits total reviews to MAX_REVIEWS before AI generation.
+     * The missing reviews are requested in one batch on the AI executor and the call waits at most
+     * aiDeadlineMs; reviews that finish later are still saved and show up on the next read.
+     * If the AI rate limit or bulkhead rejects the call, the stored reviews are returned right away
+     * and a background job fills the product later.
+     * At most MAX_REVIEWS reviews are returned.
      *
-     * @param productId the full product ID
-     * @return list of Review entities combining real and any AI-generated reviews
+     * @param productKey the product's key
+     * @return review DTOs combining real and any AI-generated reviews
      * @throws ProductNotFoundException if the product is not found
      */
-    public List<Review> getRecentReviews(String productId) throws IllegalArgumentException {
-        log.debug("getRecentReviews – start för productId={}", productId);
-        // Fetch product, or throw if missing
-        Product product = productRepository.findById(productId)
+    public List<ReviewRespons> getRecentReviews(ProductKey productKey) {
+        log.debug("getRecentReviews – start för productKey={}", productKey);
+        Product product = findProduct(productKey);
+        List<ReviewRespons> recentReviews = loadRecentReviews(product).reviews();
+        log.debug("getRecentReviews – totala recensioner returnerade={}", recentReviews.size());
+        return recentReviews;
+    }
+
+    private Product findProduct(ProductKey productKey) {
+        return productRepository.findById(productKey)
                 .orElseThrow(() -> {
-                    log.warn("getRecentReviews – produkt saknas productId={}", productId);
+                    log.warn("findProduct – produkt saknas productKey={}", productKey);
                     return new ProductNotFoundException("Product does not exist");
                 });
+    }
 
-        // Date threshold two months ago
-        LocalDate fromDate = LocalDate.now().minusMonths(2);
+    /**
+     * The newest reviews of a product, and the AI reviews among them that were generated during this read.
+     */
+    private record RecentReviews(List<ReviewRespons> reviews, List<Review> generated) {
+    }
 
-        // Fetch all reviews for this product since fromDate
-        List<Review> allRecentReviews = reviewRepository.findByProductAndDateAfter(product, fromDate);
-        log.debug("getRecentReviews – hittade {} recensioner", allRecentReviews.size());
+    /**
+     * Loads the MAX_REVIEWS newest reviews from the past two months with one query and tops them up
+     * with AI reviews when fewer than MIN_REVIEWS exist. Memory use does not grow with the number of
+     * reviews a product has.
+     *
+     * @param product the product
+     * @return the newest reviews, including any AI reviews generated before the deadline
+     */
+    private RecentReviews loadRecentReviews(Product product) {
+        List<ReviewRespons> reviews = new ArrayList<>(
+                reviewRepository.findRecentReviews(product, recentCutoff(), Limit.of(MAX_REVIEWS)));
+        log.debug("loadRecentReviews – hittade {} recensioner", reviews.size());
 
-        // Limit to MAX_REVIEWS if more found
-        if (allRecentReviews.size() > MAX_REVIEWS) {
-            allRecentReviews = allRecentReviews.subList(0, MAX_REVIEWS);
+        // If fewer than MIN_REVIEWS, generate missing reviews via AI
+        int missing = MIN_REVIEWS - reviews.size();
+        if (missing <= 0) {
+            return new RecentReviews(reviews, List.of());
+        }
+        log.info("loadRecentReviews – genererar {} AI-recension(er) för productKey={}", missing, product.key());
+        List<Review> generated = generateAiReviews(product, missing);
+        for (Review review : generated) {
+            reviews.add(new ReviewRespons(review.getDate(), review.getName(), review.getRating(), review.getReviewText()));
         }
+        reviews.sort(Comparator.comparing(ReviewRespons::getDate).reversed());
+        return new RecentReviews(reviews, generated);
+    }
 
-        // If fewer than MIN_REVIEWS, generate missing reviews via AI
-        int missing = MIN_REVIEWS - allRecentReviews.size();
-        if (missing > 0) {
-            log.info("getRecentReviews – genererar {} AI-recension(er) för productId={}", missing, productId);
+    /**
+     * Asks the AI for all missing reviews in one batch call and waits for it until the deadline.
+     * Only one generation runs per product at a time: concurrent callers for the same product
+     * wait on the batch that is already in flight instead of starting their own.
+     * The task saves the reviews itself, so a batch still running at the deadline is persisted
+     * in the background instead of being lost.
+     *
+     * @param product the product to generate reviews for
+     * @param count   number of reviews to generate
+     * @return the reviews that were generated and saved before the deadline; empty if the AI was busy
+     */
+    private List<Review> generateAiReviews(Product product, int count) {
+        try {
+            return startGeneration(product, count).get(aiDeadlineMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("generateAiReviews – deadline {} ms passerad för productKey={}, recensionerna sparas i bakgrunden",
+                    aiDeadlineMs, product.key());
+        } catch (ExecutionException e) {
+            // Already logged by the task
+            if (e.getCause() instanceof CapacityExceededException
+                    && jobService.enqueueIfIdle(product.key())) {
+                log.info("generateAiReviews – AI upptagen, bakgrundsjobb köat för productKey={}", product.key());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return List.of();
+    }
+
+    /**
+     * Fills a product up to MIN_REVIEWS recent reviews, waiting for the AI without a deadline.
+     * Used by the background pre-generation worker; joins a generation already in flight for the product.
+     *
+     * @param productKey the product's key
+     * @return how many reviews the product is still missing afterwards (0 when filled)
+     * @throws ProductNotFoundException if the product is not found
+     * @throws CompletionException      if the AI generation fails
+     */
+    public int topUpReviews(ProductKey productKey) {
+        Product product = productRepository.findById(productKey)
+                .orElseThrow(() -> new ProductNotFoundException("Product does not exist"));
+        LocalDate fromDate = recentCutoff();
+
+        int missing = (int) (MIN_REVIEWS - reviewRepository.countByProductAndDateAfter(product, fromDate));
+        if (missing <= 0) {
+            return 0;
+        }
+        log.info("topUpReviews – genererar {} AI-recension(er) i bakgrunden för productKey={}", missing, productKey);
+        startGeneration(product, missing).join();
+        return (int) Math.max(0, MIN_REVIEWS - reviewRepository.countByProductAndDateAfter(product, fromDate));
+    }
+
+    /**
+     * Returns the generation in flight for the product, or starts a new one on the AI executor.
+     *
+     * @param product the product to generate reviews for
+     * @param count   number of reviews to generate
+     * @return a future completing with the saved reviews
+     */
+    private CompletableFuture<List<Review>> startGeneration(Product product, int count) {
+        ProductKey productKey = product.key();
+        CompletableFuture<List<Review>> task = inFlightGenerations.computeIfAbsent(productKey, id -> {
+            log.debug("startGeneration – startar AI-generering för productKey={}", id);
+            return CompletableFuture
+                    .supplyAsync(() -> generateAndSave(product, count), aiReviewExecutor)
+                    .whenComplete((reviews, e) -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (cause instanceof CapacityExceededException) {
+                            log.warn("startGeneration – AI upptagen för productKey={}: {}", id, cause.getMessage());
+                        } else if (cause != null) {
+                            log.error("startGeneration – fel vid AI-generering för productKey={}", id, cause);
+                        } else {
+                            log.debug("startGeneration – {} AI-recension(er) sparade för productKey={}", reviews.size(), id);
+                        }
+                    });
+        });
+        // Let the next caller start a new generation once this one is done
+        task.whenComplete((reviews, e) -> inFlightGenerations.remove(productKey, task));
+        return task;
+    }
+
+    /**
+     * Generates a batch of AI reviews and saves them. Runs on the AI executor.
+     * Recounts the product's recent reviews first, so a caller that read the product just before
+     * an earlier batch was saved does not generate the same reviews again.
+     *
+     * @param product the product to generate reviews for
+     * @param count   maximum number of reviews to ask for
+     * @return the saved reviews
+     */
+    private List<Review> generateAndSave(Product product, int count) {
+        long recent = reviewRepository.countByProductAndDateAfter(product, recentCutoff());
+        int missing = (int) Math.min(count, MIN_REVIEWS - recent);
+        if (missing <= 0) {
+            return List.of();
         }
         try {
-            for (int i = 0; i < missing; i++) {
-                Review aiReview = aiReviewService.generateReview(product);
-                reviewRepository.save(aiReview);
-                allRecentReviews.add(aiReview);
-                log.debug("getRecentReviews – AI-recension genererad id={}", aiReview.getId());
+            List<Review> aiReviews = reviewGenerator.generateReviews(product, missing);
+            // The reviews and their totals are committed together
+            transactionTemplate.executeWithoutResult(status -> {
+                reviewRepository.saveAll(aiReviews);
+                statsService.recordAdded(product.key(), aiReviews);
+                invalidateAfterCommit(product.key());
+            });
+            return aiReviews;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Drops the product's cached response once the current transaction has committed, so a reader cannot
+     * cache the old data again between the invalidation and the commit. Without a transaction it drops it at once.
+     *
+     * @param productKey the product's key
+     */
+    private void invalidateAfterCommit(ProductKey productKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reviewsCache.invalidate(DayKey.today(productKey));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reviewsCache.invalidate(DayKey.today(productKey));
             }
-        } catch (Exception e) {
-            log.error("getRecentReviews – fel vid AI-generering för productId={}", productId, e);
-            e.printStackTrace();
+        });
+    }
+
+    /**
+     * Lists a product's reviews newest first, one page at a time, with keyset pagination on (date, id).
+     * Each page is one index range read starting right after the cursor, so deep pages cost the same as the first.
+     * Only stored reviews are listed; no AI reviews are generated.
+     *
+     * @param productKey the product's key
+     * @param filter     rating, AI/human and date range filters
+     * @param cursor     where the page starts, or null for the first page
+     * @param limit      maximum number of reviews on the page
+     * @return the page and the cursor of the next page, null when there are no more reviews
+     * @throws ProductNotFoundException if the product is not found
+     */
+    public ReviewPage getReviewPage(ProductKey productKey, ReviewFilter filter, ReviewCursor cursor, int limit) {
+        if (!productRepository.existsById(productKey)) {
+            log.warn("getReviewPage – produkt saknas productKey={}", productKey);
+            throw new ProductNotFoundException("Product does not exist");
+        }
+        // The page starts after the end of the date range, or after the cursor if that comes first
+        LocalDate beforeDate = filter.to() != null ? filter.to().plusDays(1) : LIST_END_DATE;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.date().isAfter(beforeDate)) {
+            beforeDate = cursor.date();
+            beforeId = cursor.id();
+        }
+        LocalDate fromDate = filter.from() != null ? filter.from() : LIST_START_DATE;
+
+        // One extra row tells whether there is a next page
+        List<ReviewListItem> rows = reviewRepository.findReviewPage(productKey.userId(), productKey.productId(),
+                fromDate, beforeDate, beforeId, filter.rating(), filter.generatedByAI(), Limit.of(limit + 1));
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            ReviewListItem last = rows.get(limit - 1);
+            nextCursor = new ReviewCursor(last.getDate(), last.getId()).encode();
         }
+        log.debug("getReviewPage – productKey={}, rows={}, more={}", productKey, rows.size(), nextCursor != null);
+        return ReviewPage.builder()
+                .productId(productKey.productId())
+                .reviews(rows)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Recent reviews are dated after this day.
+     *
+     * @return the day RECENT_MONTHS months ago
+     */
+    private static LocalDate recentCutoff() {
+        return LocalDate.now().minusMonths(RECENT_MONTHS);
+    }
+
+    /**
+     * Length of the default stats window in days: the days after recentCutoff() up to and including today,
+     * so the default stats cover the same reviews as the listing.
+     *
+     * @return the number of days in the last RECENT_MONTHS months
+     */
+    private static int defaultWindowDays() {
+        return (int) ChronoUnit.DAYS.between(recentCutoff(), LocalDate.now());
+    }
 
-        // Return combined list of reviews
-        log.debug("getRecentReviews – totala recensioner returnerade={}", allRecentReviews.size());
-        return allRecentReviews;
+    /**
+     * Reads the review statistics of a product: count, average rating and per-star histogram of the
+     * reviews from the past RECENT_MONTHS months, the date of the most recent review, and the all-time
+     * count and average. The product and its totals are loaded with one primary-key query and the recent
+     * reviews are summed from the product's rating buckets; no reviews are loaded.
+     *
+     * @param productKey the product's key
+     * @return a ReviewStatsResponse DTO containing statistics
+     * @throws RuntimeException if the product is not found
+     */
+    public ReviewStatsResponse getProductStats(ProductKey productKey) {
+        return getProductStats(productKey, null);
     }
 
     /**
-     * Computes review statistics for a product:
-     * - Fetches reviews from the last two months; if fewer than MIN_REVIEWS, fetches top 10 by date.
-     * - Calculates average rating and retrieves the date of the most recent review.
+     * Reads the review statistics of a product over the last windowDays days, or over the past
+     * RECENT_MONTHS months when null. The window is summed from the product's daily and monthly rating
+     * buckets, so the cost grows with the number of days, not with the number of reviews.
      *
-     * @param productId the full product ID
+     * @param productKey the product's key
+     * @param windowDays window length in days, or null for the past RECENT_MONTHS months
      * @return a ReviewStatsResponse DTO containing statistics
      * @throws RuntimeException if the product is not found
      */
-    public ReviewStatsResponse getProductStats(String productId) {
-        log.debug("getProductStats – start för productId={}", productId);
-        // Fetch product, or throw if missing
-        Product product = productRepository.findById(productId)
+    public ReviewStatsResponse getProductStats(ProductKey productKey, Integer windowDays) {
+        log.debug("getProductStats – start för productKey={}, window={}", productKey, windowDays);
+        // Fetch product and totals, or throw if missing
+        ProductWithStats loaded = statsService.findProductWithStats(productKey)
                 .orElseThrow(() -> {
-                    log.warn("getProductStats – produkt saknas productId={}", productId);
+                    log.warn("getProductStats – produkt saknas productKey={}", productKey);
                     return new RuntimeException("Produkt finns inte");
                 });
+        return buildStats(productKey, loaded.product().getProductName(), loaded.stats(), windowDays,
+                windowTotals(productKey, windowDays), List.of());
+    }
 
-        // Date threshold two months ago
-        LocalDate twoMonthsAgo = LocalDate.now().minusMonths(2);
-
-        // Fetch reviews from recent two months
-        List<Review> recentReviews = reviewRepository.findByProductAndDateAfter(product, twoMonthsAgo);
-        log.debug("getProductStats – hittade {} recensioner senaste två månaderna", recentReviews.size());
-
-        // If fewer than MIN_REVIEWS, fetch top 10 most recent reviews regardless of date
-        if (recentReviews.size() < MIN_REVIEWS) {
-            log.info("getProductStats – färre än {} recensioner, hämtar topp 10 senaste", MIN_REVIEWS);
-            recentReviews = reviewRepository.findTop10ByProductOrderByDateDesc(product);
+    /**
+     * Reads the review statistics of several of a user's products over the past RECENT_MONTHS months,
+     * with their all-time totals. The totals rows of all products are read with one query and their rating
+     * buckets with a second; no reviews are read and no AI generation is triggered.
+     *
+     * @param userId     the owner of the products
+     * @param productIds the product IDs
+     * @return statistics per product ID; products that do not exist are left out
+     */
+    public Map<String, ReviewStatsResponse> getProductStatsBatch(Long userId, Collection<String> productIds) {
+        Map<String, ReviewStatsResponse> result = new HashMap<>();
+        List<ProductStatsRow> rows = statsService.findStatsRows(userId, productIds);
+        Map<String, ReviewStatsService.WindowTotals> windows = statsService.windowTotals(userId,
+                rows.stream().map(ProductStatsRow::productId).toList(), defaultWindowDays());
+        for (ProductStatsRow row : rows) {
+            result.put(row.productId(), buildStats(new ProductKey(userId, row.productId()), row.productName(),
+                    row.stats(), null, windows.get(row.productId()), List.of()));
         }
+        log.debug("getProductStatsBatch – {} av {} produkter hittades", result.size(), productIds.size());
+        return result;
+    }
 
-        // Calculate average rating
-        double average = recentReviews.stream()
-                .mapToInt(Review::getRating)
-                .average()
-                .orElse(0.0);
+    /**
+     * Sums the product's rating buckets over the window, or over the default window when there is none.
+     *
+     * @param productKey the product's key
+     * @param windowDays window length in days, or null for the past RECENT_MONTHS months
+     * @return totals of the current and the previous window
+     */
+    private ReviewStatsService.WindowTotals windowTotals(ProductKey productKey, Integer windowDays) {
+        return statsService.windowTotals(productKey, windowDays == null ? defaultWindowDays() : windowDays);
+    }
 
-        // Get date of the latest review (first in list if sorted by date desc)
-        String lastReviewDate = recentReviews.isEmpty() ? null : recentReviews.get(0).getDate().toString();
+    /**
+     * Builds the statistics of the window from its bucket totals, and the all-time count and average
+     * from the product's totals row. Both must have been read before the current read generated any AI
+     * reviews; the generated reviews are then added on top, so each of them is counted exactly once.
+     *
+     * @param productKey  the product's key
+     * @param productName the product's name
+     * @param stats       the product's rating totals as loaded
+     * @param windowDays  window length in days, or null for the past RECENT_MONTHS months
+     * @param window      the window's bucket totals as loaded
+     * @param generated   AI reviews saved after stats and window were loaded
+     * @return a ReviewStatsResponse DTO containing statistics
+     */
+    private ReviewStatsResponse buildStats(ProductKey productKey, String productName, ProductReviewStats stats,
+                                           Integer windowDays, ReviewStatsService.WindowTotals window,
+                                           List<Review> generated) {
+        ReviewAggregate totals = window.current();
+        LocalDate from = LocalDate.now().minusDays((windowDays == null ? defaultWindowDays() : windowDays) - 1L);
+        long count = totals.count();
+        long ratingSum = totals.ratingSum();
+        long[] histogram = {totals.stars1(), totals.stars2(), totals.stars3(), totals.stars4(), totals.stars5()};
+        // Without a window the newest review is named even when it is older than the recent months,
+        // as it always has been
+        LocalDate lastReviewDate = windowDays == null ? stats.getLastReviewDate() : totals.lastReviewDate();
+        long allTimeCount = stats.getReviewCount() + generated.size();
+        long allTimeRatingSum = stats.getRatingSum();
+        for (Review review : generated) {
+            allTimeRatingSum += review.getRating();
+            if (review.getDate().isBefore(from)) {
+                continue;
+            }
+            count++;
+            ratingSum += review.getRating();
+            if (review.getRating() >= 1 && review.getRating() <= 5) {
+                histogram[review.getRating() - 1]++;
+            }
+            if (lastReviewDate == null || review.getDate().isAfter(lastReviewDate)) {
+                lastReviewDate = review.getDate();
+            }
+        }
+        Map<Integer, Long> ratingHistogram = new LinkedHashMap<>();
+        for (int star = 1; star <= histogram.length; star++) {
+            ratingHistogram.put(star, histogram[star - 1]);
+        }
 
         // Build and return DTO
         ReviewStatsResponse response = new ReviewStatsResponse();
-        response.setProductId(product.getProductId());
-        response.setProductName(product.getProductName());
-        response.setCurrentAverage(average);
-        response.setTotalReviews(recentReviews.size());
-        response.setLastReviewDate(lastReviewDate);
-
-        log.debug("getProductStats – färdigt för productId={}, totalReviews={}, average={}",
-                productId, response.getTotalReviews(), response.getCurrentAverage());
+        response.setProductId(productKey.productId());
+        response.setProductName(productName);
+        response.setCurrentAverage(count == 0 ? 0.0 : (double) ratingSum / count);
+        response.setTotalReviews((int) count);
+        response.setLastReviewDate(lastReviewDate == null ? null : lastReviewDate.toString());
+        response.setRatingHistogram(ratingHistogram);
+        response.setAllTimeAverage(allTimeCount == 0 ? 0.0 : (double) allTimeRatingSum / allTimeCount);
+        response.setAllTimeReviews((int) allTimeCount);
+        if (windowDays != null) {
+            ReviewAggregate previous = window.previous();
+            response.setWindow(windowDays + "d");
+            response.setPreviousAverage(previous.count() == 0 ? null : (double) previous.ratingSum() / previous.count());
+        }
+
+        log.debug("buildStats – färdigt för productKey={}, totalReviews={}, average={}",
+                productKey, response.getTotalReviews(), response.getCurrentAverage());
         return response;
     }
 
+    /**
+     * Retrieves both reviews and statistics of the past RECENT_MONTHS months for a product.
+     *
+     * @param productKey the product's key
+     * @return a ReviewsRespons DTO containing both stats and review list
+     * @throws ProductNotFoundException if the product is not found
+     */
+    public ReviewsRespons getReviewsForProduct(ProductKey productKey) {
+        return getReviewsForProduct(productKey, null);
+    }
+
     /**
      * Retrieves both reviews and statistics for a product.
-     * Uses getRecentReviews() and getProductStats() to populate a combined DTO.
+     * Responses without a window come from getSerializedReviewsForProduct and its cache.
      *
-     * @param productId the full product ID
+     * @param productKey the product's key
+     * @param windowDays stats window length in days, or null for the past RECENT_MONTHS months
      * @return a ReviewsRespons DTO containing both stats and review list
+     * @throws ProductNotFoundException if the product is not found
+     */
+    public ReviewsRespons getReviewsForProduct(ProductKey productKey, Integer windowDays) {
+        if (windowDays != null) {
+            return loadReviewsForProduct(productKey, windowDays).response();
+        }
+        return getSerializedReviewsForProduct(productKey).body();
+    }
+
+    /**
+     * Reads the version the product's review responses are built from. It changes whenever the product's
+     * reviews or the product itself change; the responses also depend on the current day.
+     * Costs one primary-key query and loads no reviews.
+     *
+     * @param productKey the product's key
+     * @return the version, or empty if it is not known yet
+     */
+    public Optional<ContentVersion> getReviewsVersion(ProductKey productKey) {
+        return statsService.findVersion(productKey);
+    }
+
+    /**
+     * Retrieves reviews and statistics of the past RECENT_MONTHS months for a product, serialized to JSON.
+     * Complete responses are served from reviewsCache until the product's reviews change, the day ends or the
+     * TTL passes, so a hit costs neither queries nor serialization. Responses with pending reviews are serialized but
+     * not cached, since the missing reviews arrive shortly.
+     * The entity tag and Last-Modified describe the version and day the response was built from.
+     *
+     * @param productKey the product's key
+     * @return the response with its JSON bytes, optional gzip copy, entity tag and Last-Modified
+     * @throws ProductNotFoundException if the product is not found
+     */
+    public SerializedResponse<ReviewsRespons> getSerializedReviewsForProduct(ProductKey productKey) {
+        return reviewsCache.get(DayKey.today(productKey), key -> {
+            LoadedReviews loaded = loadReviewsForProduct(key.key(), null);
+            return responseSerializer.serialize(loaded.response(),
+                    loaded.version().etag(key.day()), loaded.version().lastModified(key.day()));
+        }, serialized -> serialized.body().getPendingReviews() == 0);
+    }
+
+    /**
+     * Builds the reviews and statistics response of a product.
+     * The product and its rating totals come from one primary-key query, the window's totals from the
+     * product's rating buckets and the newest recent reviews from one more query, so the common path
+     * loads at most MAX_REVIEWS reviews regardless of how many reviews exist.
+     * pendingReviews tells how many reviews are still being generated when the AI could not
+     * deliver all of them in time. The returned version is the one of the loaded totals.
      */
-    public ReviewsRespons getReviewsForProduct(String productId) {
-        log.debug("getReviewsForProduct – start för productId={}", productId);
-        // Fetch recent reviews
-        List<Review> entities = getRecentReviews(productId);
-        // Map Review entities to DTOs
-        List<ReviewRespons> dtos = entities.stream()
-                .map(r -> ReviewRespons.builder()
-                        .date(r.getDate())
-                        .name(r.getName())
-                        .rating(r.getRating())
-                        .text(r.getReviewText())
-                        .build())
-                .toList();
-        // Fetch review statistics
-        ReviewStatsResponse stats = getProductStats(productId);
+    private LoadedReviews loadReviewsForProduct(ProductKey productKey, Integer windowDays) {
+        log.debug("loadReviewsForProduct – start för productKey={}, window={}", productKey, windowDays);
+        ProductWithStats loaded = statsService.findProductWithStats(productKey)
+                .orElseThrow(() -> {
+                    log.warn("loadReviewsForProduct – produkt saknas productKey={}", productKey);
+                    return new ProductNotFoundException("Product does not exist");
+                });
+        // Read the window before generating, since generated reviews are added to the buckets as they are saved
+        ReviewStatsService.WindowTotals window = windowTotals(productKey, windowDays);
+        RecentReviews recent = loadRecentReviews(loaded.product());
+        List<ReviewRespons> dtos = recent.reviews();
+        ReviewStatsResponse stats = buildStats(productKey, loaded.product().getProductName(), loaded.stats(),
+                windowDays, window, recent.generated());
+
         // Package into a combined response DTO
         ReviewsRespons result = ReviewsRespons.builder()
-                .productId(productId)
+                .productId(productKey.productId())
                 .stats(stats)
                 .reviews(dtos)
+                .pendingReviews(Math.max(0, MIN_REVIEWS - dtos.size()))
                 .build();
-        log.info("getReviewsForProduct – returnerar ReviewsRespons för productId={}, reviewsCount={}",
-                productId, dtos.size());
-        return result;
+        log.info("loadReviewsForProduct – returnerar ReviewsRespons för productKey={}, reviewsCount={}",
+                productKey, dtos.size());
+        ProductReviewStats loadedStats = loaded.stats();
+        return new LoadedReviews(result, new ContentVersion(loadedStats.getVersion(), loadedStats.getUpdatedAt()));
+    }
+
+    /**
+     * A built response and the version of the rating totals it was built from.
+     */
+    private record LoadedReviews(ReviewsRespons response, ContentVersion version) {
     }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.repository.ProductRepository;
+import com.jin12.reviews_api.repository.ProductReviewStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Keeps product_review_stats and review_stats_buckets in line with the reviews table.
+ * At startup it creates the rows missing for products added before the tables existed.
+ * Every night it rolls old daily buckets into monthly ones, then rebuilds all rows,
+ * which repairs any drift from writes that bypassed ReviewService.
+ */
+@Component
+public class ReviewStatsRepairJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewStatsRepairJob.class);
+
+    private final ReviewStatsService statsService;
+    private final ProductRepository productRepository;
+    private final ProductReviewStatsRepository statsRepository;
+
+    public ReviewStatsRepairJob(ReviewStatsService statsService,
+                                ProductRepository productRepository,
+                                ProductReviewStatsRepository statsRepository) {
+        this.statsService = statsService;
+        this.productRepository = productRepository;
+        this.statsRepository = statsRepository;
+    }
+
+    /**
+     * Builds the stats rows of products that have none.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        rebuildAll(statsRepository.findProductKeysWithoutStats(), "backfill");
+    }
+
+    /**
+     * Rolls daily buckets older than the daily retention into monthly buckets, one product per transaction.
+     */
+    @Scheduled(cron = "${reviews.stats.compaction-cron:0 15 3 * * *}")
+    public void compact() {
+        List<ProductKey> productKeys = statsService.findProductKeysToCompact();
+        if (productKeys.isEmpty()) {
+            return;
+        }
+        long rolledUp = 0;
+        for (ProductKey productKey : productKeys) {
+            try {
+                rolledUp += statsService.compact(productKey);
+            } catch (RuntimeException e) {
+                log.warn("compact – could not compact buckets for productKey={}: {}", productKey, e.getMessage());
+            }
+        }
+        log.info("compact – rolled {} daily bucket(s) into months for {} product(s)", rolledUp, productKeys.size());
+    }
+
+    /**
+     * Rebuilds the stats of every product, one product per transaction.
+     */
+    @Scheduled(cron = "${reviews.stats.repair-cron:0 30 3 * * *}")
+    public void repair() {
+        rebuildAll(productRepository.findAllProductKeys(), "repair");
+    }
+
+    private void rebuildAll(List<ProductKey> productKeys, String reason) {
+        if (productKeys.isEmpty()) {
+            return;
+        }
+        int failed = 0;
+        for (ProductKey productKey : productKeys) {
+            try {
+                statsService.rebuild(productKey);
+            } catch (RuntimeException e) {
+                failed++;
+                log.warn("{} – could not rebuild stats for productKey={}: {}", reason, productKey, e.getMessage());
+            }
+        }
+        log.info("{} – checked stats for {} product(s), {} failed", reason, productKeys.size(), failed);
+    }
+}
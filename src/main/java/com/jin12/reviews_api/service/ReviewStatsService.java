@@ -0,0 +1,505 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.dto.ContentVersion;
+import com.jin12.reviews_api.dto.ProductStatsRow;
+import com.jin12.reviews_api.dto.ProductWithStats;
+import com.jin12.reviews_api.dto.ReviewAggregate;
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ProductReviewStats;
+import com.jin12.reviews_api.model.Review;
+import com.jin12.reviews_api.model.ReviewStatsBucket;
+import com.jin12.reviews_api.model.ReviewStatsBucket.Granularity;
+import com.jin12.reviews_api.repository.ProductReviewStatsRepository;
+import com.jin12.reviews_api.repository.ReviewRepository;
+import com.jin12.reviews_api.repository.ReviewStatsBucketRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * ReviewStatsService maintains the per-product rating totals in product_review_stats and the
+ * per-day and per-month totals in review_stats_buckets.
+ * Key responsibilities:
+ * - Apply review inserts and deletes to the totals in the caller's transaction, with atomic updates
+ * - Rebuild a product's totals from the reviews table when they are missing or have drifted
+ * - Roll daily buckets older than the daily retention into monthly buckets
+ * - Load a product together with its totals, and sum the buckets of a rating window
+ * - Version each product's totals, so review responses can be revalidated without loading them
+ * <p>
+ * Writers update the product_review_stats row first. Its row lock serializes writers of the same product
+ * until commit, so a missing bucket can be inserted without racing another writer.
+ */
+@Service
+public class ReviewStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewStatsService.class);
+
+    private final ProductReviewStatsRepository statsRepository;
+    private final ReviewStatsBucketRepository bucketRepository;
+    private final ReviewRepository reviewRepository;
+    private final int dailyRetentionDays;
+
+    /**
+     * @param dailyRetentionDays how many days are kept as daily buckets before they are rolled into months
+     */
+    public ReviewStatsService(ProductReviewStatsRepository statsRepository,
+                              ReviewStatsBucketRepository bucketRepository,
+                              ReviewRepository reviewRepository,
+                              @Value("${reviews.stats.daily-retention-days:90}") int dailyRetentionDays) {
+        this.statsRepository = statsRepository;
+        this.bucketRepository = bucketRepository;
+        this.reviewRepository = reviewRepository;
+        this.dailyRetentionDays = dailyRetentionDays;
+    }
+
+    /**
+     * Totals of a rating window and of the window of the same length just before it.
+     */
+    public record WindowTotals(ReviewAggregate current, ReviewAggregate previous) {
+    }
+
+    /**
+     * Loads a product and its totals with one query. Totals missing for an older product are computed from
+     * its reviews but not stored; ReviewStatsRepairJob creates the missing rows, so reads never write.
+     *
+     * @param productKey the product's key
+     * @return the product with non-null stats, or empty if the product does not exist
+     */
+    @Transactional(readOnly = true)
+    public Optional<ProductWithStats> findProductWithStats(ProductKey productKey) {
+        return statsRepository.findProductWithStats(productKey.userId(), productKey.productId())
+                .map(loaded -> loaded.stats() != null
+                        ? loaded
+                        : new ProductWithStats(loaded.product(), computeStats(productKey)));
+    }
+
+    /**
+     * Loads the id, name and totals of several of a user's products with one query. Totals missing for older
+     * products are computed from their reviews but not stored, as in findProductWithStats.
+     *
+     * @param userId     the owner of the products
+     * @param productIds the product IDs
+     * @return one row with non-null stats per existing product, in no particular order
+     */
+    @Transactional(readOnly = true)
+    public List<ProductStatsRow> findStatsRows(Long userId, Collection<String> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        return statsRepository.findStatsRows(userId, productIds).stream()
+                .map(row -> row.stats() != null
+                        ? row
+                        : new ProductStatsRow(row.productId(), row.productName(),
+                        computeStats(new ProductKey(userId, row.productId()))))
+                .toList();
+    }
+
+    /**
+     * Reads the version of a product's totals, which changes with every review insert and delete and
+     * whenever the product is created or rebuilt. One primary-key query; nothing else is loaded.
+     *
+     * @param productKey the product's key
+     * @return the version, or empty if the product or its totals row does not exist
+     */
+    public Optional<ContentVersion> findVersion(ProductKey productKey) {
+        return statsRepository.findVersion(productKey.userId(), productKey.productId());
+    }
+
+    /**
+     * Sums the buckets of the last `days` days (today included) and of the `days` days before them.
+     * Reads at most about 2 * days daily buckets plus a few monthly ones, however many reviews exist.
+     * Windows reaching past the daily retention are month-accurate: a monthly bucket counts towards
+     * the window its first day falls in.
+     *
+     * @param productKey the product's key
+     * @param days       window length in days
+     * @return totals of the current and the previous window; lastReviewDate is the latest bucket start
+     */
+    public WindowTotals windowTotals(ProductKey productKey, int days) {
+        LocalDate from = LocalDate.now().minusDays(days - 1L);
+        return windowTotals(from, bucketRepository.findByUserIdAndProductIdAndBucketStartGreaterThanEqual(
+                productKey.userId(), productKey.productId(), from.minusDays(days)));
+    }
+
+    /**
+     * Sums the window buckets of several of a user's products, like windowTotals(ProductKey, int),
+     * with one query for all of them.
+     *
+     * @param userId     the owner of the products
+     * @param productIds the product IDs
+     * @param days       window length in days
+     * @return totals per product ID; products without buckets in either window get empty totals
+     */
+    public Map<String, WindowTotals> windowTotals(Long userId, Collection<String> productIds, int days) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        LocalDate from = LocalDate.now().minusDays(days - 1L);
+        Map<String, List<ReviewStatsBucket>> byProduct = new HashMap<>();
+        for (String productId : productIds) {
+            byProduct.put(productId, new ArrayList<>());
+        }
+        for (ReviewStatsBucket bucket : bucketRepository.findByUserIdAndProductIdInAndBucketStartGreaterThanEqual(
+                userId, productIds, from.minusDays(days))) {
+            byProduct.get(bucket.getProductId()).add(bucket);
+        }
+        Map<String, WindowTotals> result = new HashMap<>();
+        byProduct.forEach((productId, buckets) -> result.put(productId, windowTotals(from, buckets)));
+        return result;
+    }
+
+    private static WindowTotals windowTotals(LocalDate from, List<ReviewStatsBucket> buckets) {
+        List<ReviewStatsBucket> current = new ArrayList<>();
+        List<ReviewStatsBucket> previous = new ArrayList<>();
+        for (ReviewStatsBucket bucket : buckets) {
+            (bucket.getBucketStart().isBefore(from) ? previous : current).add(bucket);
+        }
+        return new WindowTotals(sum(current), sum(previous));
+    }
+
+    /**
+     * Stores an empty stats row for a new product. Joins the caller's transaction,
+     * so the row is stored together with the product.
+     *
+     * @param productKey the product's key
+     */
+    public void createFor(ProductKey productKey) {
+        statsRepository.save(new ProductReviewStats(productKey));
+    }
+
+    /**
+     * Adds saved reviews to the product's totals and buckets. Must run in the transaction that saved the reviews.
+     *
+     * @param productKey the product's key
+     * @param reviews    the saved reviews
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAdded(ProductKey productKey, Collection<Review> reviews) {
+        if (reviews.isEmpty()) {
+            return;
+        }
+        Delta delta = Delta.of(reviews);
+        int updated = statsRepository.increment(productKey.userId(), productKey.productId(), delta.count(),
+                delta.ratingSum(), delta.stars()[0], delta.stars()[1], delta.stars()[2], delta.stars()[3],
+                delta.stars()[4], delta.lastReviewDate(), Instant.now());
+        if (updated == 0) {
+            // No row yet: the rebuild counts the reviews that were just saved
+            rebuild(productKey);
+            return;
+        }
+        LocalDate cutoff = dailyCutoff();
+        Map<BucketKey, List<Review>> byBucket = new LinkedHashMap<>();
+        for (Review review : reviews) {
+            byBucket.computeIfAbsent(BucketKey.of(review.getDate(), cutoff), key -> new ArrayList<>()).add(review);
+        }
+        byBucket.forEach((key, bucketReviews) -> addToBucket(productKey, key, Delta.of(bucketReviews), 1));
+    }
+
+    /**
+     * Removes deleted reviews from the product's totals and buckets. Must run in the transaction that deleted them.
+     *
+     * @param productKey the product's key
+     * @param reviews    the deleted reviews
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRemoved(ProductKey productKey, Collection<Review> reviews) {
+        if (reviews.isEmpty()) {
+            return;
+        }
+        Delta delta = Delta.of(reviews);
+        int updated = statsRepository.decrement(productKey.userId(), productKey.productId(), delta.count(),
+                delta.ratingSum(), delta.stars()[0], delta.stars()[1], delta.stars()[2], delta.stars()[3],
+                delta.stars()[4], Instant.now());
+        if (updated == 0) {
+            rebuild(productKey);
+            return;
+        }
+        Map<LocalDate, List<Review>> byDate = new LinkedHashMap<>();
+        for (Review review : reviews) {
+            byDate.computeIfAbsent(review.getDate(), date -> new ArrayList<>()).add(review);
+        }
+        byDate.forEach((date, dateReviews) -> {
+            Delta dateDelta = Delta.of(dateReviews);
+            // The day may already have been rolled into its month
+            if (!addToBucket(productKey, new BucketKey(Granularity.DAY, date), dateDelta, -1)) {
+                addToBucket(productKey, new BucketKey(Granularity.MONTH, date.withDayOfMonth(1)), dateDelta, -1);
+            }
+        });
+    }
+
+    /**
+     * Recomputes a product's totals and buckets from the reviews table and overwrites them,
+     * creating the stats row if missing. The row is locked meanwhile, so concurrent increments wait for the rebuild.
+     *
+     * @param productKey the product's key
+     * @return the rebuilt stats
+     */
+    @Transactional
+    public ProductReviewStats rebuild(ProductKey productKey) {
+        Optional<ProductReviewStats> existing =
+                statsRepository.lockByProductId(productKey.userId(), productKey.productId());
+        rebuildBuckets(productKey);
+        ReviewAggregate aggregate = reviewRepository.aggregateByProductId(productKey.userId(), productKey.productId());
+        if (existing.isPresent() && matches(existing.get(), aggregate)) {
+            return existing.get();
+        }
+        ProductReviewStats stats = existing.orElseGet(() -> new ProductReviewStats(productKey));
+        log.info("rebuild – stats for productKey={} rebuilt: {} review(s), was {}",
+                productKey, aggregate.count(), stats.getReviewCount());
+        apply(stats, aggregate);
+        stats.setVersion(stats.getVersion() + 1);
+        stats.setUpdatedAt(Instant.now());
+        return statsRepository.save(stats);
+    }
+
+    /**
+     * Rolls the product's daily buckets older than the daily retention into monthly buckets.
+     * Only whole months are rolled up, so a month is never split between the two granularities.
+     *
+     * @param productKey the product's key
+     * @return the number of daily buckets rolled up
+     */
+    @Transactional
+    public int compact(ProductKey productKey) {
+        // Serialize with writers of the same product
+        statsRepository.lockByProductId(productKey.userId(), productKey.productId());
+        List<ReviewStatsBucket> days = bucketRepository.findByUserIdAndProductIdAndGranularityAndBucketStartBefore(
+                productKey.userId(), productKey.productId(), Granularity.DAY, dailyCutoff());
+        if (days.isEmpty()) {
+            return 0;
+        }
+        Map<LocalDate, List<ReviewStatsBucket>> byMonth = new LinkedHashMap<>();
+        for (ReviewStatsBucket day : days) {
+            byMonth.computeIfAbsent(day.getBucketStart().withDayOfMonth(1), month -> new ArrayList<>()).add(day);
+        }
+        bucketRepository.deleteAll(days);
+        byMonth.forEach((month, monthDays) ->
+                addToBucket(productKey, new BucketKey(Granularity.MONTH, month), Delta.ofBuckets(monthDays), 1));
+        log.debug("compact – rolled {} daily bucket(s) into {} month(s) for productKey={}",
+                days.size(), byMonth.size(), productKey);
+        return days.size();
+    }
+
+    /**
+     * @return the products that have daily buckets older than the daily retention
+     */
+    public List<ProductKey> findProductKeysToCompact() {
+        return bucketRepository.findProductKeysWithBucketsBefore(Granularity.DAY, dailyCutoff());
+    }
+
+    /**
+     * Deletes the stats row and buckets of a product.
+     *
+     * @param productKey the product's key
+     */
+    public void deleteFor(ProductKey productKey) {
+        statsRepository.deleteByProductId(productKey.userId(), productKey.productId());
+        bucketRepository.deleteByProductId(productKey.userId(), productKey.productId());
+    }
+
+    /**
+     * Days before this date are kept in monthly buckets. Always the first day of a month.
+     */
+    private LocalDate dailyCutoff() {
+        return LocalDate.now().minusDays(dailyRetentionDays).withDayOfMonth(1);
+    }
+
+    /**
+     * Adds sign * delta to a bucket, inserting the bucket if it does not exist yet and sign is positive.
+     *
+     * @return false if the bucket does not exist and nothing was changed
+     */
+    private boolean addToBucket(ProductKey productKey, BucketKey key, Delta delta, int sign) {
+        long[] stars = delta.stars();
+        int updated = bucketRepository.add(productKey.userId(), productKey.productId(), key.granularity(), key.start(),
+                sign * delta.count(), sign * delta.ratingSum(),
+                sign * stars[0], sign * stars[1], sign * stars[2], sign * stars[3], sign * stars[4]);
+        if (updated > 0) {
+            return true;
+        }
+        if (sign < 0) {
+            return false;
+        }
+        ReviewStatsBucket bucket = new ReviewStatsBucket(productKey, key.granularity(), key.start());
+        apply(bucket, delta);
+        bucketRepository.save(bucket);
+        return true;
+    }
+
+    /**
+     * Computes a product's totals from the reviews table without storing them. The result is a detached row
+     * at version 0 that nothing persists.
+     */
+    private ProductReviewStats computeStats(ProductKey productKey) {
+        log.debug("computeStats – no stats row for productKey={}, summing its reviews", productKey);
+        ProductReviewStats stats = new ProductReviewStats(productKey);
+        apply(stats, reviewRepository.aggregateByProductId(productKey.userId(), productKey.productId()));
+        return stats;
+    }
+
+    /**
+     * Replaces the product's buckets with ones computed from the reviews table, unless they already match.
+     */
+    private void rebuildBuckets(ProductKey productKey) {
+        LocalDate cutoff = dailyCutoff();
+        Map<BucketKey, Delta> expected = new HashMap<>();
+        for (ReviewAggregate day
+                : reviewRepository.aggregateDailyByProductId(productKey.userId(), productKey.productId())) {
+            expected.merge(BucketKey.of(day.lastReviewDate(), cutoff), Delta.of(day), Delta::plus);
+        }
+        Map<BucketKey, Delta> actual = new HashMap<>();
+        for (ReviewStatsBucket bucket
+                : bucketRepository.findByUserIdAndProductId(productKey.userId(), productKey.productId())) {
+            // Buckets emptied by deletes are left behind; they do not count as drift
+            if (bucket.getReviewCount() != 0 || bucket.getRatingSum() != 0) {
+                actual.put(new BucketKey(bucket.getGranularity(), bucket.getBucketStart()), Delta.of(bucket));
+            }
+        }
+        if (expected.equals(actual)) {
+            return;
+        }
+        log.info("rebuildBuckets – buckets for productKey={} rebuilt: {} bucket(s), was {}",
+                productKey, expected.size(), actual.size());
+        bucketRepository.deleteByProductId(productKey.userId(), productKey.productId());
+        List<ReviewStatsBucket> buckets = new ArrayList<>();
+        expected.forEach((key, delta) -> {
+            ReviewStatsBucket bucket = new ReviewStatsBucket(productKey, key.granularity(), key.start());
+            apply(bucket, delta);
+            buckets.add(bucket);
+        });
+        bucketRepository.saveAll(buckets);
+    }
+
+    private static void apply(ProductReviewStats stats, ReviewAggregate aggregate) {
+        stats.setReviewCount(aggregate.count());
+        stats.setRatingSum(aggregate.ratingSum());
+        stats.setStars1(aggregate.stars1());
+        stats.setStars2(aggregate.stars2());
+        stats.setStars3(aggregate.stars3());
+        stats.setStars4(aggregate.stars4());
+        stats.setStars5(aggregate.stars5());
+        stats.setLastReviewDate(aggregate.lastReviewDate());
+    }
+
+    private static void apply(ReviewStatsBucket bucket, Delta delta) {
+        bucket.setReviewCount(delta.count());
+        bucket.setRatingSum(delta.ratingSum());
+        bucket.setStars1(delta.stars()[0]);
+        bucket.setStars2(delta.stars()[1]);
+        bucket.setStars3(delta.stars()[2]);
+        bucket.setStars4(delta.stars()[3]);
+        bucket.setStars5(delta.stars()[4]);
+    }
+
+    private static ReviewAggregate sum(List<ReviewStatsBucket> buckets) {
+        Delta total = Delta.ofBuckets(buckets);
+        LocalDate latest = null;
+        for (ReviewStatsBucket bucket : buckets) {
+            if (bucket.getReviewCount() > 0 && (latest == null || bucket.getBucketStart().isAfter(latest))) {
+                latest = bucket.getBucketStart();
+            }
+        }
+        long[] stars = total.stars();
+        return new ReviewAggregate(total.count(), total.ratingSum(), stars[0], stars[1], stars[2], stars[3], stars[4],
+                latest);
+    }
+
+    private static boolean matches(ProductReviewStats stats, ReviewAggregate aggregate) {
+        return stats.getReviewCount() == aggregate.count()
+                && stats.getRatingSum() == aggregate.ratingSum()
+                && stats.getStars1() == aggregate.stars1()
+                && stats.getStars2() == aggregate.stars2()
+                && stats.getStars3() == aggregate.stars3()
+                && stats.getStars4() == aggregate.stars4()
+                && stats.getStars5() == aggregate.stars5()
+                && Objects.equals(stats.getLastReviewDate(), aggregate.lastReviewDate());
+    }
+
+    /**
+     * Identifies a bucket of a product: a day, or a month by its first day.
+     */
+    private record BucketKey(Granularity granularity, LocalDate start) {
+
+        static BucketKey of(LocalDate date, LocalDate dailyCutoff) {
+            return date.isBefore(dailyCutoff)
+                    ? new BucketKey(Granularity.MONTH, date.withDayOfMonth(1))
+                    : new BucketKey(Granularity.DAY, date);
+        }
+    }
+
+    /**
+     * Totals of a batch of reviews or buckets. Ratings outside 1-5 count towards the sum but not the histogram,
+     * the same way the rebuild queries count them.
+     */
+    private record Delta(long count, long ratingSum, long[] stars, LocalDate lastReviewDate) {
+
+        static Delta of(Collection<Review> reviews) {
+            long[] stars = new long[5];
+            long ratingSum = 0;
+            LocalDate lastReviewDate = null;
+            for (Review review : reviews) {
+                int rating = review.getRating();
+                if (rating >= 1 && rating <= 5) {
+                    stars[rating - 1]++;
+                }
+                ratingSum += rating;
+                if (lastReviewDate == null || review.getDate().isAfter(lastReviewDate)) {
+                    lastReviewDate = review.getDate();
+                }
+            }
+            return new Delta(reviews.size(), ratingSum, stars, lastReviewDate);
+        }
+
+        static Delta of(ReviewAggregate aggregate) {
+            return new Delta(aggregate.count(), aggregate.ratingSum(), new long[]{aggregate.stars1(),
+                    aggregate.stars2(), aggregate.stars3(), aggregate.stars4(), aggregate.stars5()}, null);
+        }
+
+        static Delta of(ReviewStatsBucket bucket) {
+            return new Delta(bucket.getReviewCount(), bucket.getRatingSum(), bucket.histogram(), null);
+        }
+
+        static Delta ofBuckets(Collection<ReviewStatsBucket> buckets) {
+            Delta total = new Delta(0, 0, new long[5], null);
+            for (ReviewStatsBucket bucket : buckets) {
+                total = total.plus(of(bucket));
+            }
+            return total;
+        }
+
+        Delta plus(Delta other) {
+            long[] sum = stars.clone();
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += other.stars[i];
+            }
+            return new Delta(count + other.count, ratingSum + other.ratingSum, sum, null);
+        }
+
+        // Records compare array components by reference, so compare the histogram by value
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Delta d && count == d.count && ratingSum == d.ratingSum
+                    && Arrays.equals(stars, d.stars) && Objects.equals(lastReviewDate, d.lastReviewDate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(count, ratingSum, Arrays.hashCode(stars), lastReviewDate);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.Review;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process ReviewGenerator that builds reviews from fixed name and sentence lists.
+ * The output only depends on the seed, the product and the number of earlier calls, so a run is repeatable,
+ * while asking again for the same product gives new reviews instead of storing the same texts twice.
+ * Makes no external calls, which makes it suitable for tests and load tests.
+ * Enabled with reviews.generator=seeded.
+ */
+@Service
+@ConditionalOnProperty(name = "reviews.generator", havingValue = "seeded")
+public class SeededReviewGenerator implements ReviewGenerator {
+
+    private static final String[] NAMES = {
+            "Anna Svensson", "Erik Johansson", "Maria Karlsson", "Lars Nilsson", "Karin Eriksson",
+            "Johan Larsson", "Sara Olsson", "Per Persson", "Emma Gustafsson", "Nils Pettersson"
+    };
+
+    private static final String[] OPENINGS = {
+            "%s motsvarade mina förväntningar.",
+            "Jag köpte %s för ett tag sedan.",
+            "Har använt %s nästan varje dag.",
+            "Fick %s i present.",
+            "Beställde %s efter att ha läst recensionerna."
+    };
+
+    // Skewed towards positive ratings, like most shop reviews
+    private static final int[] RATINGS = {1, 2, 3, 3, 4, 4, 4, 5, 5, 5};
+
+    // Indexed by rating - 1
+    private static final String[][] VERDICTS = {
+            {"Tyvärr gick den sönder direkt.", "Skulle inte köpa igen."},
+            {"Kvaliteten var sämre än väntat.", "Inte värd priset."},
+            {"Helt okej för priset.", "Fungerar, men inget speciellt."},
+            {"Bra kvalitet och snabb leverans.", "Nöjd med köpet i %s-kategorin."},
+            {"Fantastisk, rekommenderas varmt!", "Bästa köpet i %s-kategorin på länge."}
+    };
+
+    private final long seed;
+    // Counts calls, so repeated requests for one product do not repeat its reviews
+    private final AtomicLong calls = new AtomicLong();
+
+    public SeededReviewGenerator(@Value("${reviews.generator.seed:42}") long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Generates n reviews for the product. Generators with the same seed give the same reviews for the same
+     * sequence of calls.
+     *
+     * @param product the product to generate reviews for
+     * @param n       the number of reviews to generate
+     * @return n generated reviews
+     */
+    @Override
+    public List<Review> generateReviews(Product product, int n) {
+        long call = calls.getAndIncrement();
+        SplittableRandom random = new SplittableRandom((seed * 31 + Objects.hashCode(product.key())) * 31 + call);
+        List<Review> reviews = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int rating = RATINGS[random.nextInt(RATINGS.length)];
+            String text = String.format(OPENINGS[random.nextInt(OPENINGS.length)], product.getProductName())
+                    + " "
+                    + String.format(VERDICTS[rating - 1][random.nextInt(2)], product.getCategory());
+
+            Review review = new Review(NAMES[random.nextInt(NAMES.length)], text, rating, true);
+            review.setDate(ReviewGenerator.randomRecentDate(random));
+            review.setProduct(product);
+            reviews.add(review);
+        }
+        return reviews;
+    }
+}
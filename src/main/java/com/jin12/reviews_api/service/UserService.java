@@ -1,6 +1,7 @@
 package com.jin12.reviews_api.service;
 
 import com.jin12.reviews_api.Utils.CryptoUtils;
+import com.jin12.reviews_api.cache.BoundedCache;
 import com.jin12.reviews_api.exception.ApiKeyUpdateException;
 import com.jin12.reviews_api.model.User;
 import com.jin12.reviews_api.repository.UserRepository;
@@ -21,21 +22,47 @@ public class UserService implements UserDetailsService {
     private String masterKey;
 
     private final UserRepository userRepository;
+    private final BoundedCache<String, User> userCache;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, BoundedCache<String, User> userCache) {
         this.userRepository = userRepository;
+        this.userCache = userCache;
     }
 
+    /**
+     * Loads a user for authentication, from the user cache when possible. Unknown usernames are not cached.
+     *
+     * @param username the username
+     * @return the user
+     * @throws UsernameNotFoundException if no user has the username
+     */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        log.info("loadUserByUsername – attempt for username={}", username);
-        UserDetails user = userRepository.findByUsername(username)
+        log.debug("loadUserByUsername – attempt for username={}", username);
+        User user = userCache.get(username, name -> userRepository.findByUsername(name).orElse(null), found -> true);
+        if (user == null) {
+            log.warn("loadUserByUsername – user not found username={}", username);
+            throw new UsernameNotFoundException("User not found");
+        }
+        log.debug("loadUserByUsername – found user username={}", username);
+        return user;
+    }
+
+    /**
+     * Loads the full User entity. Authenticated requests only carry the user's id and username,
+     * so endpoints that need more of the user load it here.
+     *
+     * @param userId the ID of the user
+     * @return the user
+     * @throws UsernameNotFoundException if the user no longer exists
+     */
+    public User getUserById(Long userId) {
+        log.debug("getUserById – load userId={}", userId);
+        return userRepository.findById(userId)
                 .orElseThrow(() -> {
-                    log.warn("loadUserByUsername – user not found username={}", username);
+                    log.warn("getUserById – user not found userId={}", userId);
                     return new UsernameNotFoundException("User not found");
                 });
-        log.debug("loadUserByUsername – found user username={}", username);
-        return user;
     }
 
     public void updateUserApiKey(Long userId, String apiKey) {
@@ -50,6 +77,7 @@ public class UserService implements UserDetailsService {
             String encryptedKey = CryptoUtils.encrypt(masterKey, apiKey);
             user.setEncryptedApiKey(encryptedKey);
             userRepository.save(user);
+            userCache.invalidate(user.getUsername());
             log.info("updateUserApiKey – updated encrypted API key for userId={}", userId);
         } catch (Exception e) {
             throw new ApiKeyUpdateException("Failed to encrypt or save API key for user " + userId, e);
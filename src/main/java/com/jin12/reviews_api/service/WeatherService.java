@@ -1,65 +1,132 @@
 package com.jin12.reviews_api.service;
 
 import com.jin12.reviews_api.dto.weatherService.WeatherResponse;
+import com.jin12.reviews_api.resilience.CircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.Random;
-
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * WeatherService supplies a weather description used to flavour AI review prompts.
+ * <p>
+ * Prompts only need "some weather", so a scheduled prefetch fetches the weather at a random place
+ * every prefetch interval and keeps the latest snapshots in a ring buffer. getWeather() is a lock-free
+ * random pick from that buffer and never calls the weather API.
+ * <p>
+ * Fetches run on the single weather refresh thread, at most one at a time.
+ */
 @Service
 public class WeatherService {
 
-    private RestTemplate restTemplate;
+    private static final Logger log = LoggerFactory.getLogger(WeatherService.class);
+
+    // Returned until the first weather has been fetched
+    static final String UNKNOWN_WEATHER = "Unknown weather";
+
+    private final RestTemplate restTemplate;
+    private final CircuitBreaker circuitBreaker;
+    private final Executor refreshExecutor;
 
     @Value("${WEATHER_API_URL}")
     private String WEATHER_API_URL;
 
     @Value("${WEATHER_API_KEY}")
     private String WEATHER_API_KEY;
-    private static final int SECONDS_BETWEEN_REQUESTS = 3;
-
-    private static final Random random = new Random();
-
-    private static String latestWeather;
-    private static long latestWeatherTimestamp = 0;
 
-    public WeatherService() {
-        restTemplate = new RestTemplate();
-    }
-     public WeatherService(RestTemplate restTemplate) {
+    private final AtomicBoolean fetching = new AtomicBoolean();
+    private volatile String latestWeather;
+
+    // Ring buffer of the latest fetched weathers; written counts every snapshot ever stored
+    private final AtomicReferenceArray<String> snapshots;
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * @param restTemplate    HTTP client configured for the weather API
+     * @param circuitBreaker  breaker for the weather API
+     * @param refreshExecutor executor that fetches weather in the background
+     * @param snapshotCount   number of weather snapshots kept for getWeather()
+     */
+    public WeatherService(@Qualifier("weatherRestTemplate") RestTemplate restTemplate,
+                          @Qualifier("weatherCircuitBreaker") CircuitBreaker circuitBreaker,
+                          @Qualifier("weatherRefreshExecutor") Executor refreshExecutor,
+                          @Value("${weather.prefetch.snapshots:16}") int snapshotCount) {
         this.restTemplate = restTemplate;
-     }
+        this.circuitBreaker = circuitBreaker;
+        this.refreshExecutor = refreshExecutor;
+        this.snapshots = new AtomicReferenceArray<>(snapshotCount);
+    }
 
+    /**
+     * Returns one of the prefetched weather snapshots, picked at random. Never calls the weather API.
+     *
+     * @return a weather description; the latest weather or a placeholder before the first prefetch
+     */
     public String getWeather() {
-        //Limit amount of calls to API
-        if (latestWeatherTimestamp + SECONDS_BETWEEN_REQUESTS > currentTimeSeconds() ) {
-            return latestWeather;
-        }
-
-        String url = WEATHER_API_URL + "?lat=" + getLat() + "&lon=" + getLon() + "&appid=" + WEATHER_API_KEY;
-
-
-        WeatherResponse weatherResponse = restTemplate.getForObject(url, WeatherResponse.class);
-        if (weatherResponse == null) {
-            return latestWeather;
+        long count = written.get();
+        if (count > 0) {
+            int index = ThreadLocalRandom.current().nextInt((int) Math.min(count, snapshots.length()));
+            String snapshot = snapshots.get(index);
+            if (snapshot != null) {
+                return snapshot;
+            }
         }
-        latestWeather = weatherResponse.toString();
-
-        latestWeatherTimestamp = currentTimeSeconds();
-
-        return latestWeather;
+        String latest = latestWeather;
+        return latest != null ? latest : UNKNOWN_WEATHER;
     }
 
-    private double getLat() {
-        return random.nextDouble(-90, 90);
-    }
-
-    private double getLon() {
-        return random.nextDouble(-180, 180);
+    /**
+     * Fetches the weather at a random place in the background and adds it to the snapshots.
+     * Places are drawn uniformly over the earth's surface, so the snapshots are not biased towards the poles.
+     * Runs at a fixed rate; the interval keeps the weather API well within its quota.
+     */
+    @Scheduled(fixedRateString = "${weather.prefetch.interval-ms:60000}")
+    public void prefetch() {
+        // A fetch still running from the last interval is not piled on
+        if (!fetching.compareAndSet(false, true)) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double lat = Math.toDegrees(Math.asin(random.nextDouble(-1, 1)));
+        double lon = random.nextDouble(-180, 180);
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    fetch(lat, lon);
+                } finally {
+                    fetching.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            fetching.set(false);
+            log.warn("prefetch – could not schedule weather fetch: {}", e.getMessage());
+        }
     }
 
-    private long currentTimeSeconds() {
-        return System.currentTimeMillis() / 1000;
+    private void fetch(double lat, double lon) {
+        String url = WEATHER_API_URL + "?lat=" + lat + "&lon=" + lon + "&appid=" + WEATHER_API_KEY;
+        try {
+            WeatherResponse weatherResponse =
+                    circuitBreaker.call(() -> restTemplate.getForObject(url, WeatherResponse.class));
+            if (weatherResponse == null) {
+                return;
+            }
+            String description = weatherResponse.toString();
+            latestWeather = description;
+            snapshots.set((int) (written.getAndIncrement() % snapshots.length()), description);
+        } catch (RuntimeException e) {
+            // Weather only flavours the prompt, so the snapshots already taken keep being used
+            log.warn("fetch – weather unavailable at lat={}, lon={}, keeping earlier snapshots: {}",
+                    lat, lon, e.getMessage());
+        }
     }
 }
@@ -0,0 +1,43 @@
+-- Schema as generated by Hibernate before migrations took over the DDL.
+-- Databases created that way are baselined at this version and start from V2. Tables and columns
+-- added since then get their own migration, so a baselined database receives them too.
+
+CREATE TABLE users (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    username          VARCHAR(255) NOT NULL UNIQUE,
+    password          VARCHAR(255) NOT NULL,
+    encrypted_api_key VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE api_key (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    key_hash   VARCHAR(255) NOT NULL UNIQUE,
+    created_at TIMESTAMP(6) NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL,
+    user_id    BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_api_key_user FOREIGN KEY (user_id) REFERENCES users
+);
+
+CREATE TABLE products (
+    product_id   VARCHAR(255) NOT NULL,
+    product_name VARCHAR(255),
+    category     VARCHAR(255),
+    tags         VARCHAR(255),
+    user_id      BIGINT NOT NULL,
+    PRIMARY KEY (product_id),
+    CONSTRAINT fk_products_user FOREIGN KEY (user_id) REFERENCES users
+);
+
+CREATE TABLE reviews (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    product_id     VARCHAR(255) NOT NULL,
+    date           DATE NOT NULL,
+    name           VARCHAR(255) NOT NULL,
+    rating         INTEGER NOT NULL,
+    review_text    CLOB,
+    generated_byai BOOLEAN NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_reviews_product FOREIGN KEY (product_id) REFERENCES products
+);
@@ -0,0 +1,13 @@
+-- Background jobs that fill products with AI reviews. IF NOT EXISTS because a database baselined
+-- at V1 may already have the table from Hibernate.
+CREATE TABLE IF NOT EXISTS review_generation_jobs (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    product_id      VARCHAR(255) NOT NULL,
+    status          ENUM ('DONE', 'FAILED', 'PENDING', 'RUNNING') NOT NULL,
+    attempts        INTEGER NOT NULL,
+    created_at      TIMESTAMP(6) NOT NULL,
+    next_attempt_at TIMESTAMP(6) NOT NULL,
+    locked_at       TIMESTAMP(6),
+    last_error      VARCHAR(1000),
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,16 @@
+-- Per-product rating totals. IF NOT EXISTS because a database baselined at V1 may already have
+-- the table from Hibernate. Missing rows are rebuilt from the reviews when first read.
+CREATE TABLE IF NOT EXISTS product_review_stats (
+    product_id       VARCHAR(255) NOT NULL,
+    review_count     BIGINT NOT NULL,
+    rating_sum       BIGINT NOT NULL,
+    stars1           BIGINT NOT NULL,
+    stars2           BIGINT NOT NULL,
+    stars3           BIGINT NOT NULL,
+    stars4           BIGINT NOT NULL,
+    stars5           BIGINT NOT NULL,
+    last_review_date DATE,
+    version          BIGINT NOT NULL,
+    updated_at       TIMESTAMP(6) WITH TIME ZONE,
+    PRIMARY KEY (product_id)
+);
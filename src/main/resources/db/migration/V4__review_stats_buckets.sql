@@ -0,0 +1,18 @@
+-- Daily and monthly rating buckets for windowed stats. IF NOT EXISTS because a database baselined
+-- at V1 may already have the table from Hibernate. Buckets are filled as reviews are added; the
+-- stats repair job rebuilds them for existing reviews.
+CREATE TABLE IF NOT EXISTS review_stats_buckets (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    product_id   VARCHAR(255) NOT NULL,
+    granularity  ENUM ('DAY', 'MONTH') NOT NULL,
+    bucket_start DATE NOT NULL,
+    review_count BIGINT NOT NULL,
+    rating_sum   BIGINT NOT NULL,
+    stars1       BIGINT NOT NULL,
+    stars2       BIGINT NOT NULL,
+    stars3       BIGINT NOT NULL,
+    stars4       BIGINT NOT NULL,
+    stars5       BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (product_id, granularity, bucket_start)
+);
@@ -0,0 +1,3 @@
+-- Version of a user's product list, for conditional GETs on /product/all
+ALTER TABLE users ADD COLUMN IF NOT EXISTS products_version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS products_updated_at TIMESTAMP(6) WITH TIME ZONE;
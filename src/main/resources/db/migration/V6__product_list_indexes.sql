@@ -0,0 +1,4 @@
+-- Product list pages sorted by name or category. IF NOT EXISTS because a database baselined at V1
+-- may already have them from Hibernate.
+CREATE INDEX IF NOT EXISTS idx_products_user_name ON products (user_id, product_name, product_id);
+CREATE INDEX IF NOT EXISTS idx_products_user_category ON products (user_id, category, product_id);
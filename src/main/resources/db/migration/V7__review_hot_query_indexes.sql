@@ -0,0 +1,13 @@
+-- Indexes for the hot read paths. IF [NOT] EXISTS because baselined databases may or may not
+-- have some of them, depending on how Hibernate last updated them.
+
+-- Newest reviews of a product (findTop10ByProductOrderByDateDesc, findByProductAndDateAfter) and
+-- keyset pages ordered by date DESC, id DESC are read in index order, without a sort
+DROP INDEX IF EXISTS idx_reviews_product_date_id;
+CREATE INDEX IF NOT EXISTS idx_reviews_product_date_desc_id ON reviews (product_id, date DESC, id DESC);
+
+-- A user's products; user_id leads, so it also serves plain user_id lookups
+CREATE INDEX IF NOT EXISTS idx_products_user_id ON products (user_id, product_id);
+
+-- Expired API keys
+CREATE INDEX IF NOT EXISTS idx_api_key_expires_at ON api_key (expires_at);
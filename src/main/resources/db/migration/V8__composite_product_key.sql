@@ -0,0 +1,80 @@
+-- Products are keyed by (user_id, product_id), where product_id is the ID the client chose.
+-- Until now product_id held the owner's id and the client's ID concatenated, e.g. user 1 + "T1" = "1T1",
+-- which is ambiguous (user 1 + "23" and user 12 + "3" are both "123") and spreads a user's products
+-- over the whole key index. The owner's id is stripped from the front of every product_id, and the
+-- tables that refer to products get a user_id column.
+
+-- The foreign key is named fk_reviews_product when V1 created it. In databases that were baselined it
+-- has the name Hibernate generated for it, FKPL51CEJPW4GY5SWFAR8BR9NGI: a hash of the table and column
+-- names, so it is the same in every database Hibernate created
+ALTER TABLE reviews DROP CONSTRAINT IF EXISTS fk_reviews_product;
+ALTER TABLE reviews DROP CONSTRAINT IF EXISTS FKpl51cejpw4gy5swfar8br9ngi;
+ALTER TABLE products DROP PRIMARY KEY;
+ALTER TABLE product_review_stats DROP PRIMARY KEY;
+DROP INDEX IF EXISTS idx_reviews_product_date_desc_id;
+-- Covered by the new primary key
+DROP INDEX IF EXISTS idx_products_user_id;
+
+-- Owner of each row, looked up while product_id still matches the products table
+ALTER TABLE reviews ADD COLUMN user_id BIGINT;
+UPDATE reviews r SET user_id = (SELECT p.user_id FROM products p WHERE p.product_id = r.product_id);
+
+ALTER TABLE product_review_stats ADD COLUMN user_id BIGINT;
+UPDATE product_review_stats s SET user_id = (SELECT p.user_id FROM products p WHERE p.product_id = s.product_id);
+DELETE FROM product_review_stats WHERE user_id IS NULL;
+
+ALTER TABLE review_generation_jobs ADD COLUMN user_id BIGINT;
+UPDATE review_generation_jobs j SET user_id = (SELECT p.user_id FROM products p WHERE p.product_id = j.product_id);
+DELETE FROM review_generation_jobs WHERE user_id IS NULL;
+
+-- The buckets' unique constraint has a generated name, so the table is rebuilt instead of altered.
+-- Nothing refers to bucket ids.
+CREATE TABLE review_stats_buckets_v8 (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    user_id      BIGINT NOT NULL,
+    product_id   VARCHAR(255) NOT NULL,
+    granularity  ENUM ('DAY', 'MONTH') NOT NULL,
+    bucket_start DATE NOT NULL,
+    review_count BIGINT NOT NULL,
+    rating_sum   BIGINT NOT NULL,
+    stars1       BIGINT NOT NULL,
+    stars2       BIGINT NOT NULL,
+    stars3       BIGINT NOT NULL,
+    stars4       BIGINT NOT NULL,
+    stars5       BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (user_id, product_id, granularity, bucket_start)
+);
+INSERT INTO review_stats_buckets_v8 (user_id, product_id, granularity, bucket_start, review_count, rating_sum,
+                                     stars1, stars2, stars3, stars4, stars5)
+SELECT p.user_id, b.product_id, b.granularity, b.bucket_start, b.review_count, b.rating_sum,
+       b.stars1, b.stars2, b.stars3, b.stars4, b.stars5
+FROM review_stats_buckets b
+JOIN products p ON p.product_id = b.product_id;
+DROP TABLE review_stats_buckets;
+ALTER TABLE review_stats_buckets_v8 RENAME TO review_stats_buckets;
+
+-- Strip the owner's id from the front of product_id
+UPDATE products SET product_id = SUBSTRING(product_id, CHAR_LENGTH(CAST(user_id AS VARCHAR)) + 1)
+WHERE LEFT(product_id, CHAR_LENGTH(CAST(user_id AS VARCHAR))) = CAST(user_id AS VARCHAR);
+UPDATE reviews SET product_id = SUBSTRING(product_id, CHAR_LENGTH(CAST(user_id AS VARCHAR)) + 1)
+WHERE LEFT(product_id, CHAR_LENGTH(CAST(user_id AS VARCHAR))) = CAST(user_id AS VARCHAR);
+UPDATE product_review_stats SET product_id = SUBSTRING(product_id, CHAR_LENGTH(CAST(user_id AS VARCHAR)) + 1)
+WHERE LEFT(product_id, CHAR_LENGTH(CAST(user_id AS VARCHAR))) = CAST(user_id AS VARCHAR);
+UPDATE review_stats_buckets SET product_id = SUBSTRING(product_id, CHAR_LENGTH(CAST(user_id AS VARCHAR)) + 1)
+WHERE LEFT(product_id, CHAR_LENGTH(CAST(user_id AS VARCHAR))) = CAST(user_id AS VARCHAR);
+UPDATE review_generation_jobs SET product_id = SUBSTRING(product_id, CHAR_LENGTH(CAST(user_id AS VARCHAR)) + 1)
+WHERE LEFT(product_id, CHAR_LENGTH(CAST(user_id AS VARCHAR))) = CAST(user_id AS VARCHAR);
+
+ALTER TABLE reviews ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE product_review_stats ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE review_generation_jobs ALTER COLUMN user_id SET NOT NULL;
+
+-- A user's products are one contiguous range of the primary key
+ALTER TABLE products ADD CONSTRAINT pk_products PRIMARY KEY (user_id, product_id);
+ALTER TABLE product_review_stats ADD CONSTRAINT pk_product_review_stats PRIMARY KEY (user_id, product_id);
+
+-- Newest reviews of a product, now within its owner's part of the index
+CREATE INDEX idx_reviews_product_date_desc_id ON reviews (user_id, product_id, date DESC, id DESC);
+ALTER TABLE reviews ADD CONSTRAINT fk_reviews_product
+    FOREIGN KEY (user_id, product_id) REFERENCES products (user_id, product_id);
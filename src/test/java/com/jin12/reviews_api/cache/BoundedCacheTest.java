@@ -0,0 +1,127 @@
+package com.jin12.reviews_api.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private BoundedCache<String, String> cache(int maxSize, long ttlMs) {
+        return new BoundedCache<>("test", maxSize, Duration.ofMillis(ttlMs), registry, nanos::get);
+    }
+
+    private String load(String key) {
+        loads.incrementAndGet();
+        return key + "-" + loads.get();
+    }
+
+    private double count(String name, String tag, String value) {
+        return registry.get(name).tag(tag, value).counter().count();
+    }
+
+    @Test
+    void testLoadsOnceAndServesHitsUntilInvalidated() {
+        BoundedCache<String, String> cache = cache(10, 1000);
+
+        assertEquals("a-1", cache.get("a", this::load, v -> true));
+        assertEquals("a-1", cache.get("a", this::load, v -> true));
+        cache.invalidate("a");
+        assertEquals("a-2", cache.get("a", this::load, v -> true));
+
+        assertEquals(1, count("cache.gets", "result", "hit"));
+        assertEquals(2, count("cache.gets", "result", "miss"));
+        assertEquals(1, count("cache.evictions", "cause", "invalidated"));
+    }
+
+    @Test
+    void testExpiresEntriesAfterTtl() {
+        BoundedCache<String, String> cache = cache(10, 1000);
+        cache.get("a", this::load, v -> true);
+
+        nanos.addAndGet(999_000_000L);
+        assertEquals("a-1", cache.get("a", this::load, v -> true));
+        nanos.addAndGet(1_000_000L);
+        assertEquals("a-2", cache.get("a", this::load, v -> true));
+        assertEquals(1, count("cache.evictions", "cause", "expired"));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedWhenFull() {
+        BoundedCache<String, String> cache = cache(2, 1000);
+        cache.get("a", this::load, v -> true);
+        cache.get("b", this::load, v -> true);
+        cache.get("a", this::load, v -> true); // a is now the most recently used
+        cache.get("c", this::load, v -> true);
+
+        assertEquals(2, cache.size());
+        assertEquals("a-1", cache.get("a", this::load, v -> true));
+        assertEquals("b-4", cache.get("b", this::load, v -> true));
+        assertEquals(2, count("cache.evictions", "cause", "size"));
+    }
+
+    @Test
+    void testDoesNotStoreRejectedValues() {
+        BoundedCache<String, String> cache = cache(10, 1000);
+
+        cache.get("a", this::load, v -> false);
+
+        assertEquals(0, cache.size());
+        assertEquals("a-2", cache.get("a", this::load, v -> true));
+    }
+
+    @Test
+    void testDropsValueLoadedWhileInvalidated() {
+        BoundedCache<String, String> cache = cache(10, 1000);
+
+        // A write commits and invalidates while the value is being loaded
+        String value = cache.get("a", key -> {
+            cache.invalidate(key);
+            return "stale";
+        }, v -> true);
+
+        assertEquals("stale", value);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testInvalidatingOtherKeyDoesNotDropLoadedValue() {
+        BoundedCache<String, String> cache = cache(10, 1000);
+
+        // Another product is written while this one is being loaded
+        String value = cache.get("a", key -> {
+            cache.invalidate("b");
+            return "fresh";
+        }, v -> true);
+
+        assertEquals("fresh", value);
+        assertEquals("fresh", cache.get("a", this::load, v -> true));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void testFailedLoadDoesNotBlockLaterLoads() {
+        BoundedCache<String, String> cache = cache(10, 1000);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("a", key -> {
+            throw new IllegalStateException("db down");
+        }, v -> true));
+
+        assertEquals("a-1", cache.get("a", this::load, v -> true));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> cache(0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> cache(10, 0));
+    }
+}
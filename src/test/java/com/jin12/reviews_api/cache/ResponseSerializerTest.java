@@ -0,0 +1,55 @@
+package com.jin12.reviews_api.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseSerializerTest {
+
+    private static final String ETAG = "W/\"1\"";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static Map<String, Object> body(int items) {
+        return Map.of("items", Collections.nCopies(items, "review text"));
+    }
+
+    @Test
+    void testSerializesJsonWithValidators() {
+        Instant lastModified = Instant.parse("2025-03-01T10:15:30Z");
+        SerializedResponse<Map<String, List<Integer>>> serialized =
+                new ResponseSerializer(objectMapper, 1024).serialize(Map.of("a", List.of(1, 2)), "W/\"3\"", lastModified);
+
+        assertEquals("{\"a\":[1,2]}", new String(serialized.json(), StandardCharsets.UTF_8));
+        assertEquals("W/\"3\"", serialized.etag());
+        assertEquals(lastModified, serialized.lastModified());
+    }
+
+    @Test
+    void testGzipsOnlyBodiesAboveThreshold() throws IOException {
+        ResponseSerializer serializer = new ResponseSerializer(objectMapper, 200);
+
+        assertNull(serializer.serialize(body(1), ETAG, null).gzip());
+        SerializedResponse<Map<String, Object>> large = serializer.serialize(body(100), ETAG, null);
+        assertNotNull(large.gzip());
+        assertTrue(large.gzip().length < large.json().length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(large.gzip()))) {
+            assertArrayEquals(large.json(), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void testNegativeThresholdDisablesGzip() {
+        assertNull(new ResponseSerializer(objectMapper, -1).serialize(body(100), ETAG, null).gzip());
+    }
+}
@@ -0,0 +1,40 @@
+package com.jin12.reviews_api.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(SchemaIndexCheck.class)
+class SchemaIndexCheckTest {
+
+    @Autowired
+    private SchemaIndexCheck schemaIndexCheck;
+
+    @Test
+    @DisplayName("Should find every required index in the migrated schema")
+    void testMigrationsCreateRequiredIndexes() throws Exception {
+        assertThat(schemaIndexCheck.findMissingIndexes(SchemaIndexCheck.REQUIRED_INDEXES)).isEmpty();
+        assertThatNoException().isThrownBy(() -> schemaIndexCheck.run(null));
+    }
+
+    @Test
+    @DisplayName("Should report indexes that do not exist")
+    void testReportsMissingIndexes() throws Exception {
+        List<String> missing = schemaIndexCheck.findMissingIndexes(Map.of(
+                "reviews", List.of("idx_reviews_product_date_desc_id", "idx_no_such_index"),
+                "no_such_table", List.of("idx_other")));
+
+        assertThat(missing).containsExactlyInAnyOrder("reviews.idx_no_such_index", "no_such_table.idx_other");
+    }
+}
@@ -1,6 +1,6 @@
 package com.jin12.reviews_api.controller;
 
-import com.jin12.reviews_api.model.User;
+import com.jin12.reviews_api.security.AuthenticatedUser;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.ResponseEntity;
 
@@ -10,10 +10,7 @@ class AuthTestControllerTest {
     @Test
     void testAccess_returnsExpectedMessage() {
         AuthTestController controller = new AuthTestController();
-        User user = User.builder()
-                .username("alice")
-                .password("pw")
-                .build();
+        AuthenticatedUser user = new AuthenticatedUser(1L, "alice");
         ResponseEntity<String> resp = controller.testAccess(user);
         assertEquals("✅ Authenticated as: alice", resp.getBody());
     }
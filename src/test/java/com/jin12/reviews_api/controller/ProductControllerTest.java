@@ -0,0 +1,316 @@
+package com.jin12.reviews_api.controller;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.jin12.reviews_api.cache.ResponseSerializer;
+import com.jin12.reviews_api.cache.SerializedResponse;
+import com.jin12.reviews_api.dto.ContentVersion;
+import com.jin12.reviews_api.dto.ProductCursor;
+import com.jin12.reviews_api.dto.ProductPage;
+import com.jin12.reviews_api.dto.ProductRespons;
+import com.jin12.reviews_api.dto.ProductSort;
+import com.jin12.reviews_api.dto.ReviewCursor;
+import com.jin12.reviews_api.dto.ReviewFilter;
+import com.jin12.reviews_api.dto.ReviewPage;
+import com.jin12.reviews_api.dto.ReviewRespons;
+import com.jin12.reviews_api.dto.ReviewStatsResponse;
+import com.jin12.reviews_api.dto.ReviewsRespons;
+import com.jin12.reviews_api.dto.StatsBatchRequest;
+import com.jin12.reviews_api.exception.BadRequestException;
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.security.AuthenticatedUser;
+import com.jin12.reviews_api.service.ApiKeyService;
+import com.jin12.reviews_api.service.ProductService;
+import com.jin12.reviews_api.service.ReviewService;
+import com.jin12.reviews_api.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class ProductControllerTest {
+
+    private static final ProductKey P1 = new ProductKey(7L, "p1");
+    private static final ContentVersion VERSION = new ContentVersion(4, Instant.parse("2025-03-01T10:15:30Z"));
+
+    private MockMvc mvc;
+    private ReviewService reviewService;
+    private ProductService productService;
+    private SerializedResponse<ReviewsRespons> serialized;
+    private String etag;
+
+    @BeforeEach
+    void setUp() {
+        reviewService = mock(ReviewService.class);
+        productService = mock(ProductService.class);
+        ProductController controller = new ProductController(productService, reviewService,
+                mock(ApiKeyService.class), mock(UserService.class), mock(RestTemplate.class));
+        mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .build();
+
+        AuthenticatedUser user = new AuthenticatedUser(7L, "u1");
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, List.of()));
+
+        // Large enough for the gzip copy to be kept
+        List<ReviewRespons> reviews = Collections.nCopies(10,
+                new ReviewRespons(LocalDate.of(2025, 1, 1), "Anna", 5, "Snygg tröja, bra passform."));
+        ReviewsRespons body = ReviewsRespons.builder().productId("p1").reviews(reviews).build();
+        LocalDate today = LocalDate.now();
+        etag = VERSION.etag(today);
+        serialized = new ResponseSerializer(JsonMapper.builder().findAndAddModules().build(), 0)
+                .serialize(body, etag, VERSION.lastModified(today));
+        when(reviewService.getSerializedReviewsForProduct(P1)).thenReturn(serialized);
+        when(reviewService.getReviewsVersion(P1)).thenReturn(Optional.of(VERSION));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testGetReviewsWritesSerializedJsonWithEtag() throws Exception {
+        mvc.perform(get("/product/p1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().contentType("application/json"))
+                .andExpect(content().bytes(serialized.json()));
+        verify(reviewService, never()).getReviewsForProduct(any(), any());
+    }
+
+    @Test
+    void testGetReviewsWritesGzipWhenAccepted() throws Exception {
+        mvc.perform(get("/product/p1").header(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(serialized.gzip()));
+    }
+
+    @Test
+    void testGetReviewsAnswersMatchingIfNoneMatchWithoutLoading() throws Exception {
+        mvc.perform(get("/product/p1").header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(new byte[0]));
+        mvc.perform(get("/product/p1").param("window", "30d").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        verify(reviewService, never()).getSerializedReviewsForProduct(any());
+        verify(reviewService, never()).getReviewsForProduct(any(), any());
+    }
+
+    @Test
+    void testGetReviewsLoadsWhenVersionChanged() throws Exception {
+        String oldEtag = new ContentVersion(3, VERSION.updatedAt()).etag(LocalDate.now());
+
+        mvc.perform(get("/product/p1").header(HttpHeaders.IF_NONE_MATCH, oldEtag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+    }
+
+    @Test
+    void testGetReviewsHonoursIfModifiedSinceWithoutIfNoneMatch() throws Exception {
+        Instant lastModified = VERSION.lastModified(LocalDate.now());
+
+        mvc.perform(get("/product/p1").header(HttpHeaders.IF_MODIFIED_SINCE,
+                        DateTimeFormatter.RFC_1123_DATE_TIME.format(lastModified.atZone(ZoneOffset.UTC))))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/product/p1").header(HttpHeaders.IF_MODIFIED_SINCE,
+                        DateTimeFormatter.RFC_1123_DATE_TIME.format(lastModified.minusSeconds(5).atZone(ZoneOffset.UTC))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGetReviewsWithoutKnownVersionAlwaysLoads() throws Exception {
+        when(reviewService.getReviewsVersion(P1)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/product/p1").header(HttpHeaders.IF_NONE_MATCH, "*"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGetReviewsWithWindowIsNotServedFromSerializedCache() throws Exception {
+        when(reviewService.getReviewsForProduct(P1, 30))
+                .thenReturn(ReviewsRespons.builder().productId("p1").reviews(List.of()).build());
+
+        mvc.perform(get("/product/p1").param("window", "30d"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(jsonPath("$.productId").value("p1"));
+        verify(reviewService, never()).getSerializedReviewsForProduct(any());
+    }
+
+    @Test
+    void testGetAllProductsIsConditionalOnProductListVersion() throws Exception {
+        when(productService.getProductListVersion(7L)).thenReturn(Optional.of(VERSION));
+        when(productService.getProductPage(7L, ProductSort.ID, null, 100))
+                .thenReturn(ProductPage.builder().products(List.of(productRespons())).build());
+
+        mvc.perform(get("/product/all"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, VERSION.etag()))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK))
+                .andExpect(jsonPath("$[0].productId").value("p1"));
+        mvc.perform(get("/product/all").header(HttpHeaders.IF_NONE_MATCH, VERSION.etag()))
+                .andExpect(status().isNotModified());
+
+        verify(productService, times(1)).getProductPage(anyLong(), any(), any(), anyInt());
+    }
+
+    @Test
+    void testGetAllProductsLinksNextPageAndSelectsFields() throws Exception {
+        ProductCursor cursor = new ProductCursor(ProductSort.NAME, "Cap", "p0");
+        when(productService.getProductPage(7L, ProductSort.NAME, cursor, 1))
+                .thenReturn(ProductPage.builder().products(List.of(productRespons())).nextCursor("next").build());
+
+        mvc.perform(get("/product/all?sort=name&limit=1&cursor={cursor}&fields=productName,productId", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK,
+                        "<http://localhost/product/all?sort=name&limit=1&fields=productName,productId&cursor=next>; rel=\"next\""))
+                .andExpect(jsonPath("$[0].productId").value("p1"))
+                .andExpect(jsonPath("$[0].productName").value("Shirt"))
+                .andExpect(jsonPath("$[0].category").doesNotExist());
+    }
+
+    @Test
+    void testGetAllProductsRejectsCursorOfAnotherSort() throws Exception {
+        String cursor = new ProductCursor(ProductSort.NAME, "Cap", "p0").encode();
+
+        assertThrows(BadRequestException.class, () -> ProductController.parseProductCursor(cursor, ProductSort.ID));
+        assertEquals(ProductSort.CATEGORY, ProductController.parseSort("Category"));
+        assertThrows(BadRequestException.class, () -> ProductController.parseSort("price"));
+        assertEquals(List.of("productId", "tags"), List.copyOf(ProductController.parseFields("tags, productId")));
+        assertThrows(BadRequestException.class, () -> ProductController.parseFields("productId,user"));
+    }
+
+    private static ProductRespons productRespons() {
+        return ProductRespons.builder().productId("p1").productName("Shirt").category("Apparel").tags("a, b").build();
+    }
+
+    @Test
+    void testListReviewsPassesFiltersAndCursor() throws Exception {
+        ReviewCursor cursor = new ReviewCursor(LocalDate.of(2025, 3, 10), 42);
+        ReviewFilter filter = new ReviewFilter(5, true, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 3, 31));
+        when(reviewService.getReviewPage(P1, filter, cursor, 50))
+                .thenReturn(ReviewPage.builder().productId("p1").reviews(List.of()).nextCursor("next").build());
+
+        mvc.perform(get("/product/p1/reviews")
+                        .param("cursor", cursor.encode())
+                        .param("limit", "50")
+                        .param("rating", "5")
+                        .param("generatedByAI", "true")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-03-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void testListReviewsDefaultsToFirstPage() throws Exception {
+        when(reviewService.getReviewPage(P1, ReviewFilter.NONE, null, 20))
+                .thenReturn(ReviewPage.builder().productId("p1").reviews(List.of()).build());
+
+        mvc.perform(get("/product/p1/reviews"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productId").value("p1"));
+    }
+
+    @Test
+    void testParseListParameters() {
+        assertEquals(20, ProductController.parsePageSize(null, 20, 100));
+        assertEquals(100, ProductController.parsePageSize("100", 20, 100));
+        assertThrows(BadRequestException.class, () -> ProductController.parsePageSize("0", 20, 100));
+        assertThrows(BadRequestException.class, () -> ProductController.parsePageSize("101", 20, 100));
+        assertThrows(BadRequestException.class, () -> ProductController.parsePageSize("ten", 20, 100));
+        assertEquals(3, ProductController.parseRating("3"));
+        assertThrows(BadRequestException.class, () -> ProductController.parseRating("6"));
+        assertEquals(false, ProductController.parseGeneratedByAI("FALSE"));
+        assertThrows(BadRequestException.class, () -> ProductController.parseGeneratedByAI("yes"));
+        assertThrows(BadRequestException.class, () -> ProductController.parseDate("from", "2025-13-01"));
+        assertThrows(BadRequestException.class, () -> ProductController.parseCursor("not a cursor"));
+        assertNull(ProductController.parseCursor(null));
+    }
+
+    @Test
+    void testGetStatsBatchReturnsEntryPerProduct() throws Exception {
+        ReviewStatsResponse stats = ReviewStatsResponse.builder().productId("p1").totalReviews(3).build();
+        when(reviewService.getProductStatsBatch(7L, List.of("p1", "nope"))).thenReturn(Map.of("p1", stats));
+
+        mvc.perform(post("/product/stats:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productIds\":[\"p1\",\"nope\",\"p1\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.length()").value(2))
+                .andExpect(jsonPath("$.results[0].productId").value("p1"))
+                .andExpect(jsonPath("$.results[0].stats.totalReviews").value(3))
+                .andExpect(jsonPath("$.results[1].productId").value("nope"))
+                .andExpect(jsonPath("$.results[1].error").value("Product does not exist"));
+        verify(reviewService, never()).getReviewsForProduct(any(), any());
+        verify(reviewService, never()).getSerializedReviewsForProduct(any());
+    }
+
+    @Test
+    void testGetStatsBatchRejectsEmptyOrOversizedLists() {
+        AuthenticatedUser user = new AuthenticatedUser(7L, "u1");
+        ProductController controller = new ProductController(productService, reviewService,
+                mock(ApiKeyService.class), mock(UserService.class), mock(RestTemplate.class));
+        StatsBatchRequest empty = new StatsBatchRequest();
+        empty.setProductIds(List.of());
+        StatsBatchRequest tooMany = new StatsBatchRequest();
+        tooMany.setProductIds(Collections.nCopies(101, "p"));
+        StatsBatchRequest blank = new StatsBatchRequest();
+        blank.setProductIds(List.of("p1", " "));
+
+        assertThrows(BadRequestException.class, () -> controller.getStatsBatch(new StatsBatchRequest(), user));
+        assertThrows(BadRequestException.class, () -> controller.getStatsBatch(empty, user));
+        assertThrows(BadRequestException.class, () -> controller.getStatsBatch(tooMany, user));
+        assertThrows(BadRequestException.class, () -> controller.getStatsBatch(blank, user));
+        verifyNoInteractions(reviewService);
+    }
+
+    @Test
+    void testAcceptsGzip() {
+        assertTrue(ProductController.acceptsGzip("gzip"));
+        assertTrue(ProductController.acceptsGzip("br, GZIP;q=0.5"));
+        assertFalse(ProductController.acceptsGzip(null));
+        assertFalse(ProductController.acceptsGzip("deflate, br"));
+        assertFalse(ProductController.acceptsGzip("gzip;q=0"));
+        assertFalse(ProductController.acceptsGzip("gzip; q=0.000"));
+        assertFalse(ProductController.acceptsGzip("x-gzip"));
+    }
+
+    @Test
+    void testParseWindowDays() {
+        assertNull(ProductController.parseWindowDays(null));
+        assertEquals(30, ProductController.parseWindowDays("30d"));
+        assertThrows(BadRequestException.class, () -> ProductController.parseWindowDays("0d"));
+        assertThrows(BadRequestException.class, () -> ProductController.parseWindowDays("3661d"));
+    }
+}
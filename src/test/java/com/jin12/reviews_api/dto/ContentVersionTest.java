@@ -0,0 +1,39 @@
+package com.jin12.reviews_api.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentVersionTest {
+
+    private static final Instant UPDATED = Instant.parse("2025-03-01T10:15:30Z");
+
+    @Test
+    void testEtagsAreWeakAndChangeWithVersionTimeAndDay() {
+        ContentVersion version = new ContentVersion(4, UPDATED);
+        LocalDate day = LocalDate.of(2025, 3, 2);
+
+        assertThat(version.etag()).startsWith("W/\"").endsWith("\"");
+        assertThat(version.etag()).isNotEqualTo(new ContentVersion(5, UPDATED).etag());
+        // A recreated resource starts counting again, but at a later time
+        assertThat(version.etag()).isNotEqualTo(new ContentVersion(4, UPDATED.plusMillis(1)).etag());
+        assertThat(version.etag(day)).isNotEqualTo(version.etag(day.plusDays(1)));
+        assertThat(new ContentVersion(0, null).etag()).isEqualTo("W/\"0\"");
+    }
+
+    @Test
+    void testLastModifiedIsNeverBeforeStartOfDay() {
+        ContentVersion version = new ContentVersion(4, UPDATED);
+        LocalDate sameDay = UPDATED.atZone(ZoneId.systemDefault()).toLocalDate();
+        LocalDate later = sameDay.plusDays(3);
+
+        assertThat(version.lastModified(sameDay)).isEqualTo(UPDATED);
+        assertThat(version.lastModified(later)).isEqualTo(later.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        assertThat(new ContentVersion(0, null).lastModified(later))
+                .isEqualTo(later.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,29 @@
+package com.jin12.reviews_api.dto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCursorTest {
+
+    @Test
+    void testEncodeDecodeRoundTrip() {
+        ProductCursor cursor = new ProductCursor(ProductSort.NAME, "T-shirt: 80:s, svart", "42:x");
+
+        String encoded = cursor.encode();
+
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"));
+        assertEquals(cursor, ProductCursor.decode(encoded));
+        assertEquals(new ProductCursor(ProductSort.ID, "", "abc"),
+                ProductCursor.decode(new ProductCursor(ProductSort.ID, "", "abc").encode()));
+    }
+
+    @Test
+    void testDecodeRejectsInvalidCursors() {
+        assertThrows(IllegalArgumentException.class, () -> ProductCursor.decode("!!"));
+        // "NAME:9:abc" claims a longer value than it has
+        assertThrows(IllegalArgumentException.class, () -> ProductCursor.decode("TkFNRTo5OmFiYw"));
+        // "PRICE:0:abc" names no sort order
+        assertThrows(IllegalArgumentException.class, () -> ProductCursor.decode("UFJJQ0U6MDphYmM"));
+    }
+}
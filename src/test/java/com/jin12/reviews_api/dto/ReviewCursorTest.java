@@ -0,0 +1,28 @@
+package com.jin12.reviews_api.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewCursorTest {
+
+    @Test
+    void testEncodeDecodeRoundTrip() {
+        ReviewCursor cursor = new ReviewCursor(LocalDate.of(2025, 3, 10), 1234567L);
+
+        String encoded = cursor.encode();
+
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"));
+        assertEquals(cursor, ReviewCursor.decode(encoded));
+    }
+
+    @Test
+    void testDecodeRejectsInvalidCursors() {
+        assertThrows(IllegalArgumentException.class, () -> ReviewCursor.decode("!!"));
+        assertThrows(IllegalArgumentException.class,
+                () -> ReviewCursor.decode(new ReviewCursor(LocalDate.of(2025, 1, 1), 1).encode().substring(2)));
+        assertThrows(IllegalArgumentException.class, () -> ReviewCursor.decode("bm9zZXBhcmF0b3I"));
+    }
+}
@@ -12,6 +12,7 @@ class ProductTest {
     @Test
     void testNoArgsConstructorAndSetters() {
         Product product = new Product();
+        product.setUserId(1L);
         product.setProductId("123");
         product.setProductName("TestProduct");
         product.setCategory("Electronics");
@@ -28,6 +29,7 @@ class ProductTest {
         reviews.add(review);
         product.setReviews(reviews);
 
+        assertEquals(1L, product.getUserId());
         assertEquals("123", product.getProductId());
         assertEquals("TestProduct", product.getProductName());
         assertEquals("Electronics", product.getCategory());
@@ -42,8 +44,9 @@ class ProductTest {
         user.setId(2L);
 
         List<Review> reviews = new ArrayList<>();
-        Product product = new Product("456", "Phone", "Mobiles", "smartphone", reviews, user);
+        Product product = new Product(2L, "456", "Phone", "Mobiles", "smartphone", reviews, user);
 
+        assertEquals(2L, product.getUserId());
         assertEquals("456", product.getProductId());
         assertEquals("Phone", product.getProductName());
         assertEquals("Mobiles", product.getCategory());
@@ -90,4 +93,16 @@ class ProductTest {
         assertEquals(p1.hashCode(), p2.hashCode());
         assertTrue(p1.toString().contains("Item"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testKey() {
+        Product product = Product.builder()
+                .userId(12L)
+                .productId("3")
+                .build();
+
+        assertEquals(new ProductKey(12L, "3"), product.key());
+        // The same client ID under another user is another product
+        assertNotEquals(new ProductKey(1L, "23"), product.key());
+    }
+}
@@ -29,7 +29,7 @@ class UserTest {
     @Test
     void testAllArgsConstructor() {
         List<Product> productList = new ArrayList<>();
-        User user = new User(1L, "user1", "password1", null, productList);
+        User user = new User(1L, "user1", "password1", null, 0L, null, productList);
 
         assertThat(user.getId()).isEqualTo(1L);
         assertThat(user.getUsername()).isEqualTo("user1");
@@ -1,11 +1,14 @@
 package com.jin12.reviews_api.repository;
 
+import com.jin12.reviews_api.dto.ProductRespons;
 import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductKey;
 import com.jin12.reviews_api.model.User;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.List;
@@ -24,8 +27,8 @@ class ProductRepositoryTest {
     private UserRepository userRepository; // Krävs för att sätta relationen
 
     @Test
-    @DisplayName("Should find product by productId")
-    void testFindByProductId() {
+    @DisplayName("Should find product by user and productId")
+    void testFindById() {
         // Arrange
         User user = new User();
         user.setUsername("testuser");
@@ -33,6 +36,7 @@ class ProductRepositoryTest {
         user = userRepository.save(user);
 
         Product product = new Product();
+        product.setUserId(user.getId());
         product.setProductId("prod-123");
         product.setProductName("Test Product");
         product.setUser(user);
@@ -40,7 +44,7 @@ class ProductRepositoryTest {
         productRepository.save(product);
 
         // Act
-        Optional<Product> result = productRepository.findByProductId("prod-123");
+        Optional<Product> result = productRepository.findById(new ProductKey(user.getId(), "prod-123"));
 
         // Assert
         assertThat(result).isPresent();
@@ -58,14 +62,14 @@ class ProductRepositoryTest {
         user = userRepository.save(user);
 
         Product product1 = new Product();
+        product1.setUserId(user.getId());
         product1.setProductId("p1");
         product1.setProductName("First");
-        product1.setUser(user);
 
         Product product2 = new Product();
+        product2.setUserId(user.getId());
         product2.setProductId("p2");
         product2.setProductName("Second");
-        product2.setUser(user);
 
         productRepository.saveAll(List.of(product1, product2));
 
@@ -79,15 +83,77 @@ class ProductRepositoryTest {
 
     @Test
     @DisplayName("Should return empty when productId not found")
-    void testFindByProductIdNotFound() {
-        Optional<Product> result = productRepository.findByProductId("does-not-exist");
+    void testFindByIdNotFound() {
+        Optional<Product> result = productRepository.findById(new ProductKey(1L, "does-not-exist"));
         assertThat(result).isEmpty();
     }
 
+    @Test
+    @DisplayName("Should keep the same productId of different users apart")
+    void testSameProductIdForTwoUsers() {
+        User first = new User();
+        first.setUsername("first");
+        first.setPassword("secret");
+        first = userRepository.save(first);
+        User second = new User();
+        second.setUsername("second");
+        second.setPassword("secret");
+        second = userRepository.save(second);
+        saveProduct("23", "First", null, first);
+        saveProduct("23", "Second", null, second);
+
+        assertThat(productRepository.findById(new ProductKey(first.getId(), "23")))
+                .get().extracting(Product::getProductName).isEqualTo("First");
+        assertThat(productRepository.findById(new ProductKey(second.getId(), "23")))
+                .get().extracting(Product::getProductName).isEqualTo("Second");
+        assertThat(productRepository.findAllProductKeys())
+                .containsExactly(new ProductKey(first.getId(), "23"), new ProductKey(second.getId(), "23"));
+    }
+
     @Test
     @DisplayName("Should return empty list for unknown userId")
     void testFindByUserIdNotFound() {
         List<Product> result = productRepository.findByUserId(999L);
         assertThat(result).isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should page a user's products by seeking past the last id or sort value")
+    void testFindPage() {
+        User user = new User();
+        user.setUsername("pager");
+        user.setPassword("secret");
+        user = userRepository.save(user);
+        User other = new User();
+        other.setUsername("other");
+        other.setPassword("secret");
+        other = userRepository.save(other);
+        saveProduct("a", "Shirt", "Apparel", user);
+        saveProduct("b", null, "Mugs", user);
+        saveProduct("c", "Cap", null, user);
+        saveProduct("d", "Shirt", "Apparel", user);
+        saveProduct("b", "Other", "Other", other);
+
+        List<ProductRespons> byId = productRepository.findPageOrderById(user.getId(), "", Limit.of(2));
+        assertThat(byId).extracting(ProductRespons::getProductId).containsExactly("a", "b");
+        assertThat(productRepository.findPageOrderById(user.getId(), "b", Limit.of(10)))
+                .extracting(ProductRespons::getProductId).containsExactly("c", "d");
+
+        // A missing name sorts first
+        assertThat(productRepository.findPageOrderByName(user.getId(), "", "", Limit.of(10)))
+                .extracting(ProductRespons::getProductId).containsExactly("b", "c", "a", "d");
+        assertThat(productRepository.findPageOrderByName(user.getId(), "Shirt", "a", Limit.of(10)))
+                .extracting(ProductRespons::getProductId).containsExactly("d");
+        assertThat(productRepository.findPageOrderByCategory(user.getId(), "Apparel", "d", Limit.of(10)))
+                .extracting(ProductRespons::getProductId).containsExactly("b");
+    }
+
+    private void saveProduct(String productId, String name, String category, User user) {
+        Product product = new Product();
+        product.setUserId(user.getId());
+        product.setProductId(productId);
+        product.setProductName(name);
+        product.setCategory(category);
+        productRepository.save(product);
+    }
+}
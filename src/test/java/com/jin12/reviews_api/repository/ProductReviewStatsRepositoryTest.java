@@ -0,0 +1,139 @@
+package com.jin12.reviews_api.repository;
+
+import com.jin12.reviews_api.dto.ContentVersion;
+import com.jin12.reviews_api.dto.ProductStatsRow;
+import com.jin12.reviews_api.dto.ProductWithStats;
+import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductReviewStats;
+import com.jin12.reviews_api.model.Review;
+import com.jin12.reviews_api.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataJpaTest
+class ProductReviewStatsRepositoryTest {
+
+    @Autowired
+    private ProductReviewStatsRepository statsRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User owner;
+
+    @Test
+    @DisplayName("Should load a product together with its stats row, or null stats when the row is missing")
+    void testFindProductWithStats() {
+        Product withStats = saveProduct("with-stats");
+        Product withoutStats = saveProduct("without-stats");
+        statsRepository.save(new ProductReviewStats(withStats.key()));
+
+        ProductWithStats loaded = statsRepository.findProductWithStats(owner.getId(), "with-stats").orElseThrow();
+        ProductWithStats missing = statsRepository.findProductWithStats(owner.getId(), "without-stats").orElseThrow();
+
+        assertThat(loaded.product().getProductId()).isEqualTo(withStats.getProductId());
+        assertThat(loaded.stats()).isNotNull();
+        assertThat(missing.product().getProductId()).isEqualTo(withoutStats.getProductId());
+        assertThat(missing.stats()).isNull();
+        assertThat(statsRepository.findProductWithStats(owner.getId(), "no-such-product")).isEmpty();
+        assertThat(statsRepository.findProductWithStats(owner.getId() + 1, "with-stats")).isEmpty();
+        assertThat(statsRepository.findProductKeysWithoutStats()).containsExactly(withoutStats.key());
+    }
+
+    @Test
+    @DisplayName("Should load the stats rows of several products in one query, leaving out unknown ids")
+    void testFindStatsRows() {
+        Product product = saveProduct("batch-1");
+        saveProduct("batch-2");
+        statsRepository.save(new ProductReviewStats(product.key()));
+
+        List<ProductStatsRow> rows = statsRepository.findStatsRows(owner.getId(),
+                List.of("batch-1", "batch-2", "no-such-product"));
+
+        assertThat(rows).extracting(ProductStatsRow::productId).containsExactlyInAnyOrder("batch-1", "batch-2");
+        ProductStatsRow first = rows.stream().filter(r -> r.productId().equals("batch-1")).findFirst().orElseThrow();
+        ProductStatsRow second = rows.stream().filter(r -> r.productId().equals("batch-2")).findFirst().orElseThrow();
+        assertThat(first.productName()).isEqualTo("Product batch-1");
+        assertThat(first.stats()).isNotNull();
+        assertThat(second.stats()).isNull();
+        // Another user's products with the same ids are not read
+        assertThat(statsRepository.findStatsRows(owner.getId() + 1, List.of("batch-1", "batch-2"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should add and remove reviews atomically and keep the latest review date")
+    void testIncrementAndDecrement() {
+        Product product = saveProduct("counted");
+        Long userId = owner.getId();
+        statsRepository.save(new ProductReviewStats(product.key()));
+        LocalDate today = LocalDate.now();
+        Instant changed = Instant.parse("2025-03-01T10:15:30Z");
+
+        assertThat(statsRepository.increment(userId, "counted", 2, 9, 0, 0, 0, 1, 1, today.minusDays(3), changed))
+                .isEqualTo(1);
+        assertThat(statsRepository.increment(userId, "counted", 1, 2, 0, 1, 0, 0, 0, today.minusDays(5), changed))
+                .isEqualTo(1);
+        entityManager.clear();
+
+        ProductReviewStats stats = statsRepository.findById(product.key()).orElseThrow();
+        assertThat(stats.getReviewCount()).isEqualTo(3);
+        assertThat(stats.getRatingSum()).isEqualTo(11);
+        assertThat(stats.histogram()).containsExactly(0, 1, 0, 1, 1);
+        assertThat(stats.getLastReviewDate()).isEqualTo(today.minusDays(3));
+        assertThat(stats.getVersion()).isEqualTo(2);
+        assertThat(statsRepository.findVersion(userId, "counted")).contains(new ContentVersion(2, changed));
+
+        // The remaining review decides the latest date after a delete
+        Review remaining = new Review("Kept", "Text", 2, false);
+        remaining.setProduct(product);
+        remaining.setDate(today.minusDays(5));
+        reviewRepository.save(remaining);
+        statsRepository.decrement(userId, "counted", 2, 9, 0, 0, 0, 1, 1, changed.plusSeconds(60));
+        entityManager.clear();
+
+        stats = statsRepository.findById(product.key()).orElseThrow();
+        assertThat(stats.getReviewCount()).isEqualTo(1);
+        assertThat(stats.histogram()).containsExactly(0, 1, 0, 0, 0);
+        assertThat(stats.getLastReviewDate()).isEqualTo(today.minusDays(5));
+        assertThat(stats.getVersion()).isEqualTo(3);
+        assertThat(stats.getUpdatedAt()).isEqualTo(changed.plusSeconds(60));
+        assertThat(statsRepository.increment(userId, "no-such-product", 1, 5, 0, 0, 0, 0, 1, today, changed)).isZero();
+        assertThat(statsRepository.increment(userId + 1, "counted", 1, 5, 0, 0, 0, 0, 1, today, changed)).isZero();
+        assertThat(statsRepository.findVersion(userId, "no-such-product")).isEmpty();
+    }
+
+    private Product saveProduct(String productId) {
+        if (owner == null) {
+            User user = new User();
+            user.setUsername("owner");
+            user.setPassword("pass");
+            owner = userRepository.save(user);
+        }
+
+        Product product = new Product();
+        product.setUserId(owner.getId());
+        product.setProductId(productId);
+        product.setProductName("Product " + productId);
+        return productRepository.save(product);
+    }
+}
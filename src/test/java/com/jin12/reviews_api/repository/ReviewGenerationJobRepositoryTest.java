@@ -0,0 +1,90 @@
+package com.jin12.reviews_api.repository;
+
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ReviewGenerationJob;
+import com.jin12.reviews_api.model.ReviewGenerationJob.Status;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataJpaTest
+class ReviewGenerationJobRepositoryTest {
+
+    @Autowired
+    private ReviewGenerationJobRepository jobRepository;
+
+    @Test
+    @DisplayName("Should return only due pending jobs, oldest first")
+    void testFindDueJobs() {
+        ReviewGenerationJob later = new ReviewGenerationJob(new ProductKey(1L, "later"));
+        later.setNextAttemptAt(LocalDateTime.now().plusMinutes(5));
+        ReviewGenerationJob first = new ReviewGenerationJob(new ProductKey(1L, "first"));
+        first.setNextAttemptAt(LocalDateTime.now().minusMinutes(2));
+        ReviewGenerationJob second = new ReviewGenerationJob(new ProductKey(1L, "second"));
+        second.setNextAttemptAt(LocalDateTime.now().minusMinutes(1));
+        jobRepository.saveAll(List.of(later, second, first));
+
+        List<ReviewGenerationJob> due = jobRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+                Status.PENDING, LocalDateTime.now(), Limit.of(10));
+
+        assertThat(due).extracting(ReviewGenerationJob::getProductId).containsExactly("first", "second");
+    }
+
+    @Test
+    @DisplayName("Should claim a pending job only once and release it when stale")
+    void testClaimAndReleaseStale() {
+        ReviewGenerationJob job = jobRepository.save(new ReviewGenerationJob(new ProductKey(1L, "abc")));
+        LocalDateTime lockedAt = LocalDateTime.now().minusMinutes(10);
+
+        assertThat(jobRepository.claim(job.getId(), lockedAt)).isEqualTo(1);
+        assertThat(jobRepository.claim(job.getId(), lockedAt)).isZero();
+
+        assertThat(jobRepository.releaseStale(LocalDateTime.now().minusMinutes(5))).isEqualTo(1);
+        assertThat(jobRepository.claim(job.getId(), LocalDateTime.now())).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should finish a job only while it is running under the same claim")
+    void testFinishAndFailRequireTheClaim() {
+        ReviewGenerationJob job = jobRepository.save(new ReviewGenerationJob(new ProductKey(1L, "abc")));
+        LocalDateTime firstClaim = LocalDateTime.of(2025, 1, 1, 12, 0);
+        LocalDateTime secondClaim = firstClaim.plusMinutes(10);
+        jobRepository.claim(job.getId(), firstClaim);
+        jobRepository.releaseStale(firstClaim.plusMinutes(5));
+        jobRepository.claim(job.getId(), secondClaim);
+
+        // The first worker's claim was released and taken over
+        assertThat(jobRepository.finish(job.getId(), firstClaim)).isZero();
+        assertThat(jobRepository.fail(job.getId(), firstClaim, Status.PENDING, LocalDateTime.now(), "late")).isZero();
+        assertThat(jobRepository.finish(job.getId(), secondClaim)).isEqualTo(1);
+        assertThat(jobRepository.finish(job.getId(), secondClaim)).isZero();
+
+        // A job deleted with its product is not written back
+        jobRepository.deleteByProductId(1L, "abc");
+        assertThat(jobRepository.fail(job.getId(), secondClaim, Status.PENDING, LocalDateTime.now(), "gone")).isZero();
+        assertThat(jobRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should only report open jobs for a product")
+    void testExistsOpenJob() {
+        ReviewGenerationJob done = new ReviewGenerationJob(new ProductKey(1L, "done"));
+        done.setStatus(Status.DONE);
+        jobRepository.saveAll(List.of(done, new ReviewGenerationJob(new ProductKey(1L, "open"))));
+        EnumSet<Status> open = EnumSet.of(Status.PENDING, Status.RUNNING);
+
+        assertThat(jobRepository.existsByUserIdAndProductIdAndStatusIn(1L, "open", open)).isTrue();
+        assertThat(jobRepository.existsByUserIdAndProductIdAndStatusIn(1L, "done", open)).isFalse();
+        assertThat(jobRepository.existsByUserIdAndProductIdAndStatusIn(2L, "open", open)).isFalse();
+    }
+}
@@ -1,5 +1,9 @@
 package com.jin12.reviews_api.repository;
 
+import com.jin12.reviews_api.dto.ReviewAggregate;
+import com.jin12.reviews_api.dto.ReviewListItem;
+import com.jin12.reviews_api.dto.ReviewRespons;
+import com.jin12.reviews_api.dto.ReviewSample;
 import com.jin12.reviews_api.model.Product;
 import com.jin12.reviews_api.model.Review;
 import com.jin12.reviews_api.model.User;
@@ -7,6 +11,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDate;
@@ -36,9 +41,9 @@ class ReviewRepositoryTest {
         user = userRepository.save(user);
 
         Product product = new Product();
+        product.setUserId(user.getId());
         product.setProductId("prod-1");
         product.setProductName("Cool Widget");
-        product.setUser(user);
         product = productRepository.save(product);
 
         Review oldReview = new Review("Old Reviewer", "Old review", 4, false);
@@ -66,9 +71,9 @@ class ReviewRepositoryTest {
         user = userRepository.save(user);
 
         Product product = new Product();
+        product.setUserId(user.getId());
         product.setProductId("top-prod");
         product.setProductName("Fancy Product");
-        product.setUser(user);
         product = productRepository.save(product);
 
         for (int i = 1; i <= 15; i++) {
@@ -95,9 +100,9 @@ class ReviewRepositoryTest {
 
         // Skapa och spara produkt
         Product product = new Product();
+        product.setUserId(user.getId());
         product.setProductId("del-prod");
         product.setProductName("Delete Me");
-        product.setUser(user);
         product = productRepository.save(product);
 
         // Lägg till 3 recensioner
@@ -115,10 +120,157 @@ class ReviewRepositoryTest {
                 .hasSize(3);
 
         // Kör deleteByProductId
-        reviewRepository.deleteByProductId("del-prod");
+        reviewRepository.deleteByProductId(user.getId(), "del-prod");
 
         // Verifiera att recensionerna är borta
         assertThat(reviewRepository.findByProductAndDateAfter(product, LocalDate.now().minusDays(1)))
                 .isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should return the owner's latest human-written reviews as samples, newest first")
+    void testFindHumanSamplesByUserId() {
+        Product product = null;
+        Product otherProduct = null;
+        for (String name : List.of("sampler", "other-sampler")) {
+            User user = new User();
+            user.setUsername(name);
+            user.setPassword("pass");
+            user = userRepository.save(user);
+
+            Product saved = new Product();
+            saved.setUserId(user.getId());
+            saved.setProductId("sample-prod");
+            saved.setProductName("Sample");
+            saved = productRepository.save(saved);
+            if (product == null) {
+                product = saved;
+            } else {
+                otherProduct = saved;
+            }
+        }
+
+        for (int i = 1; i <= 3; i++) {
+            Review review = new Review("Reviewer " + i, "Text " + i, i, false);
+            review.setProduct(product);
+            review.setDate(LocalDate.now());
+            reviewRepository.save(review);
+        }
+        Review generated = new Review("AI", "Generated", 5, true);
+        generated.setProduct(product);
+        generated.setDate(LocalDate.now());
+        reviewRepository.save(generated);
+        Review foreign = new Review("Someone", "Other user's text", 4, false);
+        foreign.setProduct(otherProduct);
+        foreign.setDate(LocalDate.now());
+        reviewRepository.save(foreign);
+
+        List<ReviewSample> result = reviewRepository.findHumanSamplesByUserId(product.getUserId(), Limit.of(2));
+
+        assertThat(result).containsExactly(
+                new ReviewSample("Text 3", 3),
+                new ReviewSample("Text 2", 2));
+    }
+
+    @Test
+    @DisplayName("Should return the newest recent reviews as DTOs")
+    void testFindRecentReviews() {
+        Product product = saveProduct("recent", "recent-prod");
+
+        // 12 reviews in the window and one older review that must not be returned
+        for (int i = 0; i < 12; i++) {
+            saveReview(product, "Reviewer " + i, i % 5 + 1, LocalDate.now().minusDays(i));
+        }
+        saveReview(product, "Old", 1, LocalDate.now().minusMonths(3));
+
+        List<ReviewRespons> result =
+                reviewRepository.findRecentReviews(product, LocalDate.now().minusMonths(2), Limit.of(10));
+
+        assertThat(result).hasSize(10);
+        assertThat(result.get(0).getName()).isEqualTo("Reviewer 0");
+        assertThat(result.get(0).getText()).isEqualTo("Text");
+        assertThat(result.get(9).getName()).isEqualTo("Reviewer 9");
+    }
+
+    @Test
+    @DisplayName("Should aggregate count, rating sum, histogram and latest date for a product")
+    void testAggregateByProductId() {
+        Product product = saveProduct("aggregator", "agg-prod");
+        saveReview(product, "A", 5, LocalDate.now().minusDays(3));
+        saveReview(product, "B", 5, LocalDate.now().minusMonths(5));
+        saveReview(product, "C", 2, LocalDate.now().minusDays(1));
+
+        ReviewAggregate aggregate = reviewRepository.aggregateByProductId(product.getUserId(), "agg-prod");
+
+        assertThat(aggregate).isEqualTo(new ReviewAggregate(3, 12, 0, 1, 0, 0, 2, LocalDate.now().minusDays(1)));
+        assertThat(reviewRepository.aggregateByProductId(product.getUserId(), "no-such-prod"))
+                .isEqualTo(new ReviewAggregate(0, 0, 0, 0, 0, 0, 0, null));
+    }
+
+    @Test
+    @DisplayName("Should aggregate reviews per day")
+    void testAggregateDailyByProductId() {
+        Product product = saveProduct("daily", "daily-prod");
+        LocalDate day = LocalDate.now().minusDays(2);
+        saveReview(product, "A", 5, day);
+        saveReview(product, "B", 3, day);
+        saveReview(product, "C", 1, LocalDate.now());
+
+        List<ReviewAggregate> days = reviewRepository.aggregateDailyByProductId(product.getUserId(), "daily-prod");
+
+        assertThat(days).containsExactlyInAnyOrder(
+                new ReviewAggregate(2, 8, 0, 0, 1, 0, 1, day),
+                new ReviewAggregate(1, 1, 1, 0, 0, 0, 0, LocalDate.now()));
+    }
+
+    @Test
+    @DisplayName("Should page reviews newest first by seeking past (date, id) with filters")
+    void testFindReviewPage() {
+        Product product = saveProduct("pager", "page-prod");
+        LocalDate day = LocalDate.of(2025, 3, 10);
+        saveReview(product, "A", 5, day.minusDays(2));
+        saveReview(product, "B", 3, day);
+        saveReview(product, "C", 5, day);
+        saveReview(product, "D", 1, day.plusDays(1));
+        LocalDate end = LocalDate.of(9999, 12, 31);
+        LocalDate start = LocalDate.of(1, 1, 1);
+
+        Long userId = product.getUserId();
+        List<ReviewListItem> first = reviewRepository.findReviewPage(userId, "page-prod", start, end, Long.MAX_VALUE,
+                null, null, Limit.of(2));
+        assertThat(first).extracting(ReviewListItem::getName).containsExactly("D", "C");
+
+        ReviewListItem last = first.get(1);
+        List<ReviewListItem> second = reviewRepository.findReviewPage(userId, "page-prod", start, last.getDate(),
+                last.getId(), null, null, Limit.of(2));
+        assertThat(second).extracting(ReviewListItem::getName).containsExactly("B", "A");
+
+        assertThat(reviewRepository.findReviewPage(userId, "page-prod", day, end, Long.MAX_VALUE, 5, false,
+                Limit.of(10))).extracting(ReviewListItem::getName).containsExactly("C");
+        assertThat(reviewRepository.findReviewPage(userId, "page-prod", start, end, Long.MAX_VALUE, null, true,
+                Limit.of(10))).isEmpty();
+        // The same product ID under another user is another product
+        assertThat(reviewRepository.findReviewPage(userId + 1, "page-prod", start, end, Long.MAX_VALUE, null, null,
+                Limit.of(10))).isEmpty();
+    }
+
+    private Product saveProduct(String username, String productId) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("pass");
+        user = userRepository.save(user);
+
+        Product product = new Product();
+        product.setUserId(user.getId());
+        product.setProductId(productId);
+        product.setProductName("Product " + productId);
+        return productRepository.save(product);
+    }
+
+    private void saveReview(Product product, String name, int rating, LocalDate date) {
+        Review review = new Review(name, "Text", rating, false);
+        review.setProduct(product);
+        review.setDate(date);
+        reviewRepository.save(review);
+    }
+}
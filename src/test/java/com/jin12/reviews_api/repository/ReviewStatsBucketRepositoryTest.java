@@ -0,0 +1,72 @@
+package com.jin12.reviews_api.repository;
+
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ReviewStatsBucket;
+import com.jin12.reviews_api.model.ReviewStatsBucket.Granularity;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataJpaTest
+class ReviewStatsBucketRepositoryTest {
+
+    @Autowired
+    private ReviewStatsBucketRepository bucketRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private static final ProductKey PROD = new ProductKey(1L, "prod");
+    private static final ProductKey RECENT = new ProductKey(1L, "recent");
+    private static final ProductKey OLD = new ProductKey(1L, "old");
+
+    @Test
+    @DisplayName("Should add signed deltas to an existing bucket only")
+    void testAdd() {
+        LocalDate today = LocalDate.now();
+        bucketRepository.save(new ReviewStatsBucket(PROD, Granularity.DAY, today));
+
+        assertThat(bucketRepository.add(1L, "prod", Granularity.DAY, today, 2, 9, 0, 0, 0, 1, 1)).isEqualTo(1);
+        assertThat(bucketRepository.add(1L, "prod", Granularity.DAY, today, -1, -4, 0, 0, 0, -1, 0)).isEqualTo(1);
+        assertThat(bucketRepository.add(1L, "prod", Granularity.MONTH, today, 1, 5, 0, 0, 0, 0, 1)).isZero();
+        assertThat(bucketRepository.add(2L, "prod", Granularity.DAY, today, 1, 5, 0, 0, 0, 0, 1)).isZero();
+        entityManager.clear();
+
+        ReviewStatsBucket bucket = bucketRepository.findByUserIdAndProductId(1L, "prod").get(0);
+        assertThat(bucket.getReviewCount()).isEqualTo(1);
+        assertThat(bucket.getRatingSum()).isEqualTo(5);
+        assertThat(bucket.histogram()).containsExactly(0, 0, 0, 0, 1);
+    }
+
+    @Test
+    @DisplayName("Should find window buckets and products with daily buckets to compact")
+    void testWindowAndCompactionQueries() {
+        LocalDate today = LocalDate.now();
+        LocalDate oldMonth = today.minusYears(1).withDayOfMonth(1);
+        bucketRepository.saveAll(List.of(
+                new ReviewStatsBucket(RECENT, Granularity.DAY, today),
+                new ReviewStatsBucket(RECENT, Granularity.DAY, today.minusDays(40)),
+                new ReviewStatsBucket(OLD, Granularity.DAY, oldMonth),
+                new ReviewStatsBucket(OLD, Granularity.MONTH, oldMonth.minusMonths(1))));
+
+        assertThat(bucketRepository.findByUserIdAndProductIdAndBucketStartGreaterThanEqual(1L, "recent",
+                today.minusDays(29)))
+                .extracting(ReviewStatsBucket::getBucketStart).containsExactly(today);
+        assertThat(bucketRepository.findProductKeysWithBucketsBefore(Granularity.DAY, today.minusDays(90)))
+                .containsExactly(OLD);
+        assertThat(bucketRepository.findByUserIdAndProductIdAndGranularityAndBucketStartBefore(1L, "old",
+                Granularity.DAY, today.minusDays(90))).hasSize(1);
+
+        bucketRepository.deleteByProductId(1L, "old");
+        assertThat(bucketRepository.findByUserIdAndProductId(1L, "old")).isEmpty();
+    }
+}
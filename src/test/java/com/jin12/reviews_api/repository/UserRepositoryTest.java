@@ -1,12 +1,15 @@
 package com.jin12.reviews_api.repository;
 
+import com.jin12.reviews_api.dto.ContentVersion;
 import com.jin12.reviews_api.model.User;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.Instant;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -18,6 +21,9 @@ class UserRepositoryTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     @Test
     @DisplayName("Should find user by username")
     void testFindByUsername() {
@@ -41,4 +47,28 @@ class UserRepositoryTest {
         Optional<User> result = userRepository.findByUsername("nonexistent");
         assertThat(result).isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should bump the product list version, and not roll it back when a stale user is saved")
+    void testBumpProductsVersion() {
+        User user = new User();
+        user.setUsername("owner");
+        user.setPassword("pass");
+        user = userRepository.save(user);
+        Long userId = user.getId();
+        Instant changed = Instant.parse("2025-03-01T10:15:30Z");
+
+        assertThat(userRepository.findProductsVersion(userId)).contains(new ContentVersion(0, null));
+        assertThat(userRepository.bumpProductsVersion(userId, changed)).isEqualTo(1);
+        assertThat(userRepository.bumpProductsVersion(userId, changed.plusSeconds(1))).isEqualTo(1);
+        entityManager.clear();
+
+        // The User loaded before the bumps still holds version 0
+        user.setEncryptedApiKey("key");
+        userRepository.saveAndFlush(user);
+        entityManager.clear();
+
+        assertThat(userRepository.findProductsVersion(userId)).contains(new ContentVersion(2, changed.plusSeconds(1)));
+        assertThat(userRepository.findProductsVersion(-1L)).isEmpty();
+    }
+}
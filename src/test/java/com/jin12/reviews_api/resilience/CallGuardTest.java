@@ -0,0 +1,93 @@
+package com.jin12.reviews_api.resilience;
+
+import com.jin12.reviews_api.exception.CapacityExceededException;
+import com.jin12.reviews_api.exception.CircuitOpenException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallGuardTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private CircuitBreaker breaker() {
+        return new CircuitBreaker("ai", 50, 4, 2, Duration.ZERO, Duration.ofMinutes(1), 1, registry);
+    }
+
+    @Test
+    void testRunsCallWhenPermitsAreAvailable() {
+        CallGuard guard = new CallGuard("ai", breaker(), new TokenBucket(100, 10), 2, 0, registry);
+
+        assertEquals("svar", guard.call(() -> "svar"));
+        assertEquals(1.0, registry.get("resilience.calls").tag("outcome", "permitted").counter().count());
+        assertEquals(2.0, registry.get("resilience.bulkhead.available").gauge().value());
+    }
+
+    @Test
+    void testRejectsWhenRateLimitIsUsedUp() {
+        CallGuard guard = new CallGuard("ai", breaker(), new TokenBucket(0.001, 1), 2, 0, registry);
+        guard.call(() -> "first");
+
+        assertThrows(CapacityExceededException.class, () -> guard.call(() -> "second"));
+        assertEquals(1.0, registry.get("resilience.calls").tag("outcome", "rate_limited").counter().count());
+        // The rejected call gave its bulkhead slot back
+        assertEquals(2.0, registry.get("resilience.bulkhead.available").gauge().value());
+    }
+
+    @Test
+    void testRejectsWhenBulkheadIsFullWithoutTakingAToken() throws Exception {
+        TokenBucket bucket = new TokenBucket(0.001, 2);
+        CallGuard guard = new CallGuard("ai", breaker(), bucket, 1, 0, registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> guard.call(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow";
+        }));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        assertThrows(CapacityExceededException.class, () -> guard.call(() -> "rejected"));
+        assertEquals(1, bucket.availableTokens());
+
+        release.countDown();
+        assertEquals("slow", slow.get(1, TimeUnit.SECONDS));
+        assertEquals("next", guard.call(() -> "next"));
+    }
+
+    @Test
+    void testReleasesBulkheadSlotWhenCallFails() {
+        CallGuard guard = new CallGuard("ai", breaker(), new TokenBucket(100, 10), 1, 0, registry);
+
+        assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals("ok", guard.call(() -> "ok"));
+    }
+
+    @Test
+    void testRejectsWithoutTakingATokenOnceTheBreakerIsOpen() {
+        TokenBucket bucket = new TokenBucket(0.001, 5);
+        CallGuard guard = new CallGuard("ai", breaker(), bucket, 2, 0, registry);
+        for (int i = 0; i < 2; i++) {
+            assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+                throw new IllegalStateException("down");
+            }));
+        }
+
+        assertThrows(CircuitOpenException.class, () -> guard.call(() -> "never"));
+        assertEquals(3, bucket.availableTokens());
+        assertEquals(1.0, registry.get("resilience.calls").tag("outcome", "circuit_open").counter().count());
+    }
+}
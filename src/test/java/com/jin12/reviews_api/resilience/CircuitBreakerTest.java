@@ -0,0 +1,149 @@
+package com.jin12.reviews_api.resilience;
+
+import com.jin12.reviews_api.exception.CircuitOpenException;
+import com.jin12.reviews_api.resilience.CircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SimpleMeterRegistry registry;
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        // Opens at 50% failures over the last 4 calls (at least 4 recorded), probes twice after 10 s
+        breaker = new CircuitBreaker("weather", 50, 4, 4, Duration.ofSeconds(1), Duration.ofSeconds(10), 2,
+                registry, nanos::get);
+    }
+
+    private void failCall() {
+        assertThrows(IllegalStateException.class, () -> breaker.call(() -> {
+            throw new IllegalStateException("down");
+        }));
+    }
+
+    private void succeed() {
+        assertEquals("ok", breaker.call(() -> "ok"));
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            failCall();
+        }
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testStaysClosedBelowMinimumCallsAndThreshold() {
+        failCall();
+        failCall();
+        failCall();
+        assertEquals(State.CLOSED, breaker.getState());
+
+        // Window now holds 3 failures and 1 success: 75% >= 50%, opens
+        succeed();
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testOldOutcomesSlideOutOfTheWindow() {
+        failCall();
+        for (int i = 0; i < 10; i++) {
+            succeed();
+        }
+        failCall();
+
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testOpenBreakerRejectsWithoutCallingUntilOpenDurationPassed() {
+        open();
+
+        assertThrows(CircuitOpenException.class, () -> breaker.call(() -> Assertions.fail("must not be called")));
+        assertEquals(1.0, registry.get("resilience.circuitbreaker.calls").tag("outcome", "rejected").counter().count());
+        assertEquals(State.OPEN.ordinal(), registry.get("resilience.circuitbreaker.state").gauge().value());
+
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        succeed();
+        assertEquals(State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenClosesAfterSuccessfulProbes() {
+        open();
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        succeed();
+        succeed();
+
+        assertEquals(State.CLOSED, breaker.getState());
+        // The window was reset, so a single failure does not reopen it
+        failCall();
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenReopensOnFailedProbe() {
+        open();
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        failCall();
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, () -> breaker.call(() -> "ok"));
+    }
+
+    @Test
+    void testHalfOpenLimitsConcurrentProbes() {
+        open();
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        CircuitBreaker.Permit probe = breaker.tryAcquirePermission().orElseThrow();
+        assertTrue(breaker.tryAcquirePermission().isPresent());
+        assertTrue(breaker.tryAcquirePermission().isEmpty());
+
+        breaker.releasePermission(probe);
+        assertTrue(breaker.tryAcquirePermission().isPresent());
+    }
+
+    @Test
+    void testCallStartedWhileClosedIsNotCountedAsProbe() {
+        CircuitBreaker.Permit early = breaker.tryAcquirePermission().orElseThrow();
+        open();
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        CircuitBreaker.Permit probe = breaker.tryAcquirePermission().orElseThrow();
+        assertTrue(breaker.tryAcquirePermission().isPresent());
+
+        // Finishing or releasing the early call frees no probe slot and does not close the breaker
+        assertEquals("ok", breaker.callPermitted(early, () -> "ok"));
+        breaker.releasePermission(early);
+        assertTrue(breaker.tryAcquirePermission().isEmpty());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+
+        assertEquals("ok", breaker.callPermitted(probe, () -> "ok"));
+        assertEquals(State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void testSlowCallsCountAsFailures() {
+        for (int i = 0; i < 4; i++) {
+            assertEquals("slow", breaker.call(() -> {
+                nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+                return "slow";
+            }));
+        }
+
+        assertEquals(State.OPEN, breaker.getState());
+    }
+}
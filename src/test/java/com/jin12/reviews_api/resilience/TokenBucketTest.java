@@ -0,0 +1,51 @@
+package com.jin12.reviews_api.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void testAllowsBurstUpToCapacityThenRejects() {
+        TokenBucket bucket = new TokenBucket(1, 3, nanos::get);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void testRefillsAtConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(2, 2, nanos::get);
+        bucket.tryAcquire();
+        bucket.tryAcquire();
+
+        nanos.addAndGet(250_000_000L); // half a token
+        assertFalse(bucket.tryAcquire());
+
+        nanos.addAndGet(250_000_000L);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void testNeverHoldsMoreThanCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 2, nanos::get);
+
+        nanos.addAndGet(60_000_000_000L);
+
+        assertEquals(2, bucket.availableTokens());
+    }
+
+    @Test
+    void testRejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}
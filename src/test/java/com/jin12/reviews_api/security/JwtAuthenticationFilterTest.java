@@ -0,0 +1,103 @@
+package com.jin12.reviews_api.security;
+
+import com.jin12.reviews_api.model.User;
+import com.jin12.reviews_api.service.JwtService;
+import com.jin12.reviews_api.service.UserService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET =
+            Base64.getEncoder().encodeToString("supersecretkey12345678901234567890".getBytes());
+
+    private JwtService jwtService;
+    private UserService userService;
+    private JwtAuthenticationFilter filter;
+    private FilterChain chain;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService(SECRET, List.of(), 60_000);
+        userService = mock(UserService.class);
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtService", jwtService);
+        ReflectionTestUtils.setField(filter, "userService", userService);
+        chain = mock(FilterChain.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private Authentication filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/product/all");
+        request.setServletPath("/product/all");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        verify(chain).doFilter(request, response);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Test
+    void testValidTokenAuthenticatesFromClaimsWithoutUserLookup() throws Exception {
+        String token = jwtService.generateToken(User.builder().id(7L).username("u1").build());
+
+        Authentication authentication = filter(token);
+
+        assertEquals(new AuthenticatedUser(7L, "u1"), authentication.getPrincipal());
+        assertEquals("u1", authentication.getName());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void testInvalidTokenLeavesRequestUnauthenticated() throws Exception {
+        assertNull(filter("not.a.valid.token"));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void testTokenWithoutUserIdLooksUpUserOnce() throws Exception {
+        // Issued before the user id was embedded in tokens
+        String oldToken = Jwts.builder()
+                .subject("u1")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET)))
+                .compact();
+        when(userService.loadUserByUsername("u1")).thenReturn(User.builder().id(7L).username("u1").build());
+
+        assertEquals(new AuthenticatedUser(7L, "u1"), filter(oldToken).getPrincipal());
+        verify(userService, times(1)).loadUserByUsername("u1");
+    }
+
+    @Test
+    void testTokenOfDeletedUserWithoutUserIdIsRejected() throws Exception {
+        String oldToken = Jwts.builder()
+                .subject("gone")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET)))
+                .compact();
+        when(userService.loadUserByUsername("gone")).thenThrow(new UsernameNotFoundException("User not found"));
+
+        assertNull(filter(oldToken));
+    }
+}
@@ -1,14 +1,21 @@
 package com.jin12.reviews_api.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jin12.reviews_api.exception.CapacityExceededException;
 import com.jin12.reviews_api.model.Product;
 import com.jin12.reviews_api.model.Review;
+import com.jin12.reviews_api.resilience.CallGuard;
+import com.jin12.reviews_api.resilience.CircuitBreaker;
+import com.jin12.reviews_api.resilience.TokenBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,28 +34,40 @@ class AiReviewServiceTest {
         objectMapper = new ObjectMapper();
         aiReviewService = new AiReviewService(
                 weatherService,
-//                restTemplate,
+                restTemplate,
+                new CallGuard("ai", breaker(), new TokenBucket(100, 100), 10, 0, new SimpleMeterRegistry()),
                 objectMapper,
 //                "fake-api-key",
 //                "https://fake.api.url",
                 "fake-api-key",
                 "https://fake.api.url"
         );
+    }
+
+    private static CircuitBreaker breaker() {
+        return new CircuitBreaker("ai", 50, 10, 10, Duration.ZERO, Duration.ofMinutes(1), 1, new SimpleMeterRegistry());
+    }
 
-        // Aktivera mockläge så vi inte behöver OpenAI-anrop
-        try {
-            var field = AiReviewService.class.getDeclaredField("USE_MOCK");
-            field.setAccessible(true);
-            field.set(null, true);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    // Låter RestTemplate-mocken svara som AI-tjänsten, så vi inte behöver riktiga anrop
+    private void mockAiResponse(String response) {
+        when(restTemplate.postForObject(eq("https://fake.api.url"), any(HttpEntity.class), eq(String.class)))
+                .thenReturn(response);
+    }
+
+    private static String reviewsJson(int n) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < n; i++) {
+            sb.append(i > 0 ? "," : "")
+                    .append("{\"name\": \"TestUser\", \"rating\": 5, \"text\": \"Detta är en mockad recension.\"}");
         }
+        return sb.append("]").toString();
     }
 
     @Test
     void generateReview_returnsMockedReview() throws IOException, InterruptedException {
         // Arrange
         when(weatherService.getWeather()).thenReturn("Soligt");
+        mockAiResponse(reviewsJson(1));
 
         Product product = new Product();
         product.setProductName("Testprodukt");
@@ -66,4 +85,103 @@ class AiReviewServiceTest {
         assertTrue(review.isGeneratedByAI());
         assertEquals(product, review.getProduct());
     }
+
+    @Test
+    void generateReviews_returnsRequestedNumberOfReviews() throws IOException, InterruptedException {
+        when(weatherService.getWeather()).thenReturn("Soligt");
+        mockAiResponse("Här kommer recensionerna: " + reviewsJson(3));
+        Product product = new Product();
+        product.setProductName("Testprodukt");
+
+        List<Review> reviews = aiReviewService.generateReviews(product, 3);
+
+        assertEquals(3, reviews.size());
+        assertTrue(reviews.stream().allMatch(r -> r.isGeneratedByAI() && r.getProduct() == product));
+        verify(weatherService, times(1)).getWeather();
+        verify(restTemplate, times(1)).postForObject(anyString(), any(HttpEntity.class), eq(String.class));
+    }
+
+    @Test
+    void parseReviews_skipsSurroundingTextAndKeepsCompleteReviewsWhenTruncated() throws IOException {
+        String response = """
+                Här är recensionerna:
+                [
+                  {"name": "Anna", "rating": 4, "text": "Bra"},
+                  {"name": "Bo", "rating": 2, "text": "Sådär"},
+                  {"name": "Cecilia", "rating": 5, "te""";
+
+        List<AiReviewService.ReviewDto> reviews = aiReviewService.parseReviews(response, 3);
+
+        assertEquals(2, reviews.size());
+        assertEquals("Anna", reviews.get(0).name());
+        assertEquals(2, reviews.get(1).rating());
+    }
+
+    @Test
+    void parseReviews_acceptsSingleObject() throws IOException {
+        List<AiReviewService.ReviewDto> reviews =
+                aiReviewService.parseReviews("svar: {\"name\": \"Anna\", \"rating\": 4, \"text\": \"Bra\"} slut", 5);
+
+        assertEquals(1, reviews.size());
+        assertEquals("Bra", reviews.get(0).text());
+    }
+
+    @Test
+    void parseReviews_skipsReviewsWithoutRatingFromOneToFive() throws IOException {
+        String response = """
+                [
+                  {"name": "Anna", "rating": 0, "text": "Noll"},
+                  {"name": "Bo", "rating": 4, "text": "Bra"},
+                  {"name": "Cecilia", "rating": 7, "text": "Sju"},
+                  {"name": "David", "text": "Inget betyg"},
+                  {"name": "Eva", "rating": null, "text": "Null"}
+                ]""";
+
+        List<AiReviewService.ReviewDto> reviews = aiReviewService.parseReviews(response, 5);
+
+        assertEquals(1, reviews.size());
+        assertEquals("Bo", reviews.get(0).name());
+    }
+
+    @Test
+    void generateReviews_buildsPromptOutsideTheGuard() {
+        CircuitBreaker breaker = breaker();
+        aiReviewService = new AiReviewService(
+                weatherService,
+                restTemplate,
+                new CallGuard("ai", breaker, new TokenBucket(100, 100), 10, 0, new SimpleMeterRegistry()),
+                objectMapper,
+                "fake-api-key",
+                "https://fake.api.url"
+        );
+        when(weatherService.getWeather()).thenThrow(new IllegalStateException("weather broken"));
+        Product product = new Product();
+
+        // Failures while building the prompt are not AI call failures
+        for (int i = 0; i < 10; i++) {
+            assertThrows(IllegalStateException.class, () -> aiReviewService.generateReviews(product, 1));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void generateReviews_rejectsCallWhenRateLimitIsUsedUp() throws IOException {
+        aiReviewService = new AiReviewService(
+                weatherService,
+                restTemplate,
+                new CallGuard("ai", breaker(), new TokenBucket(0.001, 1), 10, 0, new SimpleMeterRegistry()),
+                objectMapper,
+                "fake-api-key",
+                "https://fake.api.url"
+        );
+        when(weatherService.getWeather()).thenReturn("Soligt");
+        mockAiResponse(reviewsJson(1));
+        Product product = new Product();
+
+        assertEquals(1, aiReviewService.generateReviews(product, 1).size());
+        assertThrows(CapacityExceededException.class, () -> aiReviewService.generateReviews(product, 1));
+        verify(restTemplate, times(1)).postForObject(anyString(), any(HttpEntity.class), eq(String.class));
+    }
 }
@@ -1,5 +1,7 @@
 package com.jin12.reviews_api.service;
 
+import com.jin12.reviews_api.model.User;
+import com.jin12.reviews_api.security.AuthenticatedUser;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
@@ -11,6 +13,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import javax.crypto.SecretKey;
 import java.util.Base64;
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -22,33 +25,51 @@ public class JwtServiceTest {
     private final String encodedSecret = Base64.getEncoder().encodeToString(rawSecret.getBytes());
     private final long expiration = 1000 * 60 * 10; // 10 minuter
 
-    private UserDetails userDetails;
+    private User user;
 
     @BeforeEach
     void setUp() {
-        jwtService = new JwtService(encodedSecret, expiration);
+        jwtService = new JwtService(encodedSecret, List.of(), expiration);
 
-        userDetails = mock(UserDetails.class);
-        when(userDetails.getUsername()).thenReturn("testuser");
+        user = User.builder().id(42L).username("testuser").build();
     }
 
     @Test
     void testGenerateAndValidateToken() {
-        String token = jwtService.generateToken(userDetails);
+        String token = jwtService.generateToken(user);
         assertNotNull(token);
-        assertTrue(jwtService.isTokenValid(token, userDetails));
+        assertTrue(jwtService.isTokenValid(token, user));
     }
 
     @Test
     void testExtractUsername() {
-        String token = jwtService.generateToken(userDetails);
+        String token = jwtService.generateToken(user);
         String username = jwtService.extractUsername(token);
         assertEquals("testuser", username);
     }
 
+    @Test
+    void testParseTokenReadsUserIdAndUsernameFromClaims() {
+        String token = jwtService.generateToken(user);
+
+        assertEquals(new AuthenticatedUser(42L, "testuser"), jwtService.parseToken(token));
+    }
+
+    @Test
+    void testParseTokenWithoutUserIdClaim() {
+        // Token utfärdad innan användar-id lades i den
+        String oldToken = Jwts.builder()
+                .subject("testuser")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(encodedSecret)))
+                .compact();
+
+        assertEquals(new AuthenticatedUser(null, "testuser"), jwtService.parseToken(oldToken));
+    }
+
     @Test
     void testIsTokenValid_InvalidUsername() {
-        String token = jwtService.generateToken(userDetails);
+        String token = jwtService.generateToken(user);
 
         UserDetails otherUser = mock(UserDetails.class);
         when(otherUser.getUsername()).thenReturn("otheruser");
@@ -65,7 +86,7 @@ public class JwtServiceTest {
         SecretKey key = Keys.hmacShaKeyFor(Base64.getDecoder().decode(encodedSecret));
 
         String expiredToken = Jwts.builder()
-                .subject(userDetails.getUsername())
+                .subject(user.getUsername())
                 .issuedAt(issuedAt)
                 .expiration(expiredAt)
                 .signWith(key)
@@ -80,4 +101,29 @@ public class JwtServiceTest {
         String invalidToken = "not.a.valid.token";
         assertThrows(JwtException.class, () -> jwtService.extractUsername(invalidToken));
     }
+
+    @Test
+    void testTokenNamesSigningKeyInKidHeader() {
+        String token = jwtService.generateToken(user);
+        SecretKey key = Keys.hmacShaKeyFor(Base64.getDecoder().decode(encodedSecret));
+
+        String kid = Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getHeader().getKeyId();
+
+        assertEquals(JwtService.keyId(key), kid);
+    }
+
+    @Test
+    void testRotationAcceptsTokensOfPreviousSecret() {
+        String newSecret = Base64.getEncoder().encodeToString("another-secret-key-1234567890abcdef".getBytes());
+        String oldToken = jwtService.generateToken(user);
+
+        JwtService rotated = new JwtService(newSecret, List.of(encodedSecret), expiration);
+        assertEquals(new AuthenticatedUser(42L, "testuser"), rotated.parseToken(oldToken));
+        assertEquals("testuser", rotated.extractUsername(rotated.generateToken(user)));
+
+        // När den gamla nyckeln tagits bort avvisas dess tokens
+        JwtService retired = new JwtService(newSecret, List.of(), expiration);
+        assertThrows(JwtException.class, () -> retired.parseToken(oldToken));
+        assertThrows(JwtException.class, () -> jwtService.parseToken(rotated.generateToken(user)));
+    }
 }
@@ -0,0 +1,90 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.dto.ReviewSample;
+import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.Review;
+import com.jin12.reviews_api.repository.ReviewRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MarkovReviewGeneratorTest {
+
+    private ReviewRepository reviewRepository;
+    private MarkovReviewGenerator generator;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        reviewRepository = mock(ReviewRepository.class);
+        generator = new MarkovReviewGenerator(reviewRepository, 100, 60000, 10);
+        product = product(1L);
+    }
+
+    private static Product product(Long userId) {
+        Product product = new Product();
+        product.setUserId(userId);
+        product.setProductId("mugg");
+        product.setProductName("Mugg");
+        product.setCategory("Kök");
+        return product;
+    }
+
+    @Test
+    void testBuildsTextsFromOwnersStoredReviews() {
+        when(reviewRepository.findHumanSamplesByUserId(1L, Limit.of(100))).thenReturn(List.of(
+                new ReviewSample("Riktigt bra mugg", 5),
+                new ReviewSample("Riktigt dålig kvalitet", 2)));
+        Set<String> corpusWords = Set.of("Riktigt", "bra", "mugg", "dålig", "kvalitet");
+
+        List<Review> reviews = generator.generateReviews(product, 4);
+
+        assertEquals(4, reviews.size());
+        for (Review review : reviews) {
+            assertTrue(review.isGeneratedByAI());
+            assertTrue(review.getName().startsWith("Kund "), review.getName());
+            assertTrue(Set.of(2, 5).contains(review.getRating()));
+            assertTrue(review.getReviewText().startsWith("Riktigt"));
+            for (String word : review.getReviewText().split(" ")) {
+                assertTrue(corpusWords.contains(word), word);
+            }
+        }
+    }
+
+    @Test
+    void testKeepsOneModelPerOwner() {
+        when(reviewRepository.findHumanSamplesByUserId(1L, Limit.of(100)))
+                .thenReturn(List.of(new ReviewSample("Ettans text", 5)));
+        when(reviewRepository.findHumanSamplesByUserId(2L, Limit.of(100)))
+                .thenReturn(List.of(new ReviewSample("Tvåans text", 1)));
+
+        assertEquals("Ettans text", generator.generateReviews(product(1L), 1).get(0).getReviewText());
+        assertEquals("Tvåans text", generator.generateReviews(product(2L), 1).get(0).getReviewText());
+    }
+
+    @Test
+    void testFallsBackToTemplateWithoutStoredReviews() {
+        when(reviewRepository.findHumanSamplesByUserId(any(), any())).thenReturn(List.of());
+
+        List<Review> reviews = generator.generateReviews(product, 2);
+
+        assertEquals(2, reviews.size());
+        assertTrue(reviews.get(0).getReviewText().contains("Mugg"));
+    }
+
+    @Test
+    void testReusesModelUntilRefreshInterval() {
+        when(reviewRepository.findHumanSamplesByUserId(any(), any())).thenReturn(List.of(new ReviewSample("Bra", 4)));
+
+        generator.generateReviews(product, 1);
+        generator.generateReviews(product, 1);
+
+        verify(reviewRepository, times(1)).findHumanSamplesByUserId(any(), any());
+    }
+}
@@ -1,11 +1,27 @@
 package com.jin12.reviews_api.service;
 
+import com.jin12.reviews_api.cache.BoundedCache;
+import com.jin12.reviews_api.cache.DayKey;
+import com.jin12.reviews_api.cache.SerializedResponse;
+import com.jin12.reviews_api.dto.ReviewsRespons;
+import com.jin12.reviews_api.dto.ContentVersion;
+import com.jin12.reviews_api.dto.ProductCursor;
+import com.jin12.reviews_api.dto.ProductPage;
+import com.jin12.reviews_api.dto.ProductRespons;
+import com.jin12.reviews_api.dto.ProductSort;
+import com.jin12.reviews_api.exception.ProductAlreadyExistsException;
 import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductKey;
 import com.jin12.reviews_api.repository.ProductRepository;
+import com.jin12.reviews_api.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -16,64 +32,131 @@ import static org.mockito.Mockito.*;
 class ProductServiceTest {
 
     private ProductRepository productRepository;
+    private UserRepository userRepository;
+    private ReviewGenerationJobService reviewGenerationJobService;
+    private ReviewStatsService reviewStatsService;
+    private BoundedCache<DayKey<ProductKey>, SerializedResponse<ReviewsRespons>> reviewsCache;
     private ProductService productService;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setUp() {
         productRepository = mock(ProductRepository.class);
-        productService = new ProductService(productRepository);
+        userRepository = mock(UserRepository.class);
+        reviewGenerationJobService = mock(ReviewGenerationJobService.class);
+        reviewStatsService = mock(ReviewStatsService.class);
+        reviewsCache = mock(BoundedCache.class);
+        productService = new ProductService(productRepository, userRepository, reviewGenerationJobService,
+                reviewStatsService, reviewsCache);
     }
 
     @Test
     void testAddProduct() {
         Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("abc");
         when(productRepository.save(product)).thenReturn(product);
 
         Product result = productService.addProduct(product);
 
         assertEquals(product, result);
         verify(productRepository, times(1)).save(product);
+        verify(reviewGenerationJobService).enqueue(new ProductKey(1L, "abc"));
+        verify(reviewStatsService).createFor(new ProductKey(1L, "abc"));
+    }
+
+    @Test
+    void testAddProductRejectsTakenId() {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("abc");
+        when(productRepository.existsById(new ProductKey(1L, "abc"))).thenReturn(true);
+
+        assertThrows(ProductAlreadyExistsException.class, () -> productService.addProduct(product));
+        verify(productRepository, never()).save(any());
+    }
+
+    @Test
+    void testAddAndDeleteProductBumpOwnersProductListVersion() {
+        Product product = new Product();
+        product.setUserId(7L);
+        product.setProductId("abc");
+        when(productRepository.save(product)).thenReturn(product);
+
+        productService.addProduct(product);
+        when(productRepository.existsById(product.key())).thenReturn(true);
+        productService.deleteProduct(product.key());
+
+        verify(userRepository, times(2)).bumpProductsVersion(eq(7L), any(Instant.class));
+    }
+
+    @Test
+    void testGetProductListVersion() {
+        ContentVersion version = new ContentVersion(3, Instant.EPOCH);
+        when(userRepository.findProductsVersion(7L)).thenReturn(Optional.of(version));
+
+        assertEquals(Optional.of(version), productService.getProductListVersion(7L));
     }
 
     @Test
     void testDeleteProductWhenExists() {
-        String productId = "abc123";
-        when(productRepository.existsById(productId)).thenReturn(true);
+        ProductKey key = new ProductKey(1L, "abc123");
+        when(productRepository.existsById(key)).thenReturn(true);
 
-        productService.deleteProduct(productId);
+        productService.deleteProduct(key);
 
-        verify(productRepository, times(1)).deleteById(productId);
+        verify(productRepository, times(1)).deleteById(key);
+        verify(reviewStatsService).deleteFor(key);
+        verify(reviewsCache).invalidate(DayKey.today(key));
+    }
+
+    @Test
+    void testDeleteProductInvalidatesCacheAfterCommit() {
+        ProductKey key = new ProductKey(1L, "abc123");
+        when(productRepository.existsById(key)).thenReturn(true);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            productService.deleteProduct(key);
+            verify(reviewsCache, never()).invalidate(DayKey.today(key));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(reviewsCache).invalidate(DayKey.today(key));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
     }
 
     @Test
     void testDeleteProductWhenNotExists() {
-        String productId = "notExist";
-        when(productRepository.existsById(productId)).thenReturn(false);
+        ProductKey key = new ProductKey(1L, "notExist");
+        when(productRepository.existsById(key)).thenReturn(false);
 
-        productService.deleteProduct(productId);
+        productService.deleteProduct(key);
 
-        verify(productRepository, never()).deleteById(productId);
+        verify(productRepository, never()).deleteById(key);
     }
 
     @Test
     void testGetProductByIdWhenExists() {
-        String productId = "p1";
+        ProductKey key = new ProductKey(1L, "p1");
         Product product = new Product();
-        product.setProductId(productId);
-        when(productRepository.findByProductId(productId)).thenReturn(Optional.of(product));
+        product.setUserId(1L);
+        product.setProductId("p1");
+        when(productRepository.findById(key)).thenReturn(Optional.of(product));
 
-        Product result = productService.getProductById(productId);
+        Product result = productService.getProductById(key);
 
         assertEquals(product, result);
     }
 
     @Test
     void testGetProductByIdWhenNotExists() {
-        String productId = "missing";
-        when(productRepository.findByProductId(productId)).thenReturn(Optional.empty());
+        ProductKey key = new ProductKey(1L, "missing");
+        when(productRepository.findById(key)).thenReturn(Optional.empty());
 
         RuntimeException exception = assertThrows(RuntimeException.class, () ->
-                productService.getProductById(productId));
+                productService.getProductById(key));
 
         assertTrue(exception.getMessage().contains("finns inte"));
     }
@@ -104,4 +187,33 @@ class ProductServiceTest {
         assertEquals(2, result.size());
         assertEquals(userProducts, result);
     }
+
+    @Test
+    void testGetProductPageReturnsCursorWhenMoreRowsExist() {
+        when(productRepository.findPageOrderByName(eq(7L), anyString(), anyString(), any()))
+                .thenReturn(List.of(product("a", null), product("b", "Cap"), product("c", "Shirt")));
+
+        ProductPage page = productService.getProductPage(7L, ProductSort.NAME, null, 2);
+
+        assertEquals(2, page.getProducts().size());
+        assertEquals(new ProductCursor(ProductSort.NAME, "Cap", "b"), ProductCursor.decode(page.getNextCursor()));
+        verify(productRepository).findPageOrderByName(7L, "", "", Limit.of(3));
+    }
+
+    @Test
+    void testGetProductPageSeeksFromCursor() {
+        when(productRepository.findPageOrderById(eq(12L), anyString(), any()))
+                .thenReturn(List.of(product("c", "Shirt")));
+
+        ProductPage page = productService.getProductPage(12L, ProductSort.ID, new ProductCursor(ProductSort.ID, "", "b"), 2);
+
+        assertNull(page.getNextCursor());
+        verify(productRepository).findPageOrderById(12L, "b", Limit.of(3));
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductPage(12L, ProductSort.CATEGORY,
+                new ProductCursor(ProductSort.ID, "", "b"), 2));
+    }
+
+    private static ProductRespons product(String productId, String name) {
+        return ProductRespons.builder().productId(productId).productName(name).build();
+    }
 }
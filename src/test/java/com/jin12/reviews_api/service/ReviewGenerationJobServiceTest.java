@@ -0,0 +1,134 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ReviewGenerationJob;
+import com.jin12.reviews_api.model.ReviewGenerationJob.Status;
+import com.jin12.reviews_api.repository.ReviewGenerationJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReviewGenerationJobServiceTest {
+
+    private static final ProductKey PRODUCT = new ProductKey(1L, "abc");
+
+    private ReviewGenerationJobRepository jobRepository;
+    private ReviewGenerationJobService jobService;
+
+    @BeforeEach
+    void setUp() {
+        jobRepository = mock(ReviewGenerationJobRepository.class);
+        jobService = new ReviewGenerationJobService(jobRepository, 3, 1000, 60000);
+    }
+
+    @Test
+    void testEnqueueSavesPendingJob() {
+        when(jobRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        ReviewGenerationJob job = jobService.enqueue(PRODUCT);
+
+        assertEquals(1L, job.getUserId());
+        assertEquals("abc", job.getProductId());
+        assertEquals(Status.PENDING, job.getStatus());
+        assertEquals(0, job.getAttempts());
+    }
+
+    @Test
+    void testEnqueueIfIdleSkipsProductWithOpenJob() {
+        when(jobRepository.existsByUserIdAndProductIdAndStatusIn(eq(1L), eq("abc"), any())).thenReturn(true);
+
+        assertFalse(jobService.enqueueIfIdle(PRODUCT));
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void testClaimDueJobsSkipsJobsTakenByOthers() {
+        ReviewGenerationJob mine = new ReviewGenerationJob(new ProductKey(1L, "a"));
+        mine.setId(1L);
+        ReviewGenerationJob taken = new ReviewGenerationJob(new ProductKey(1L, "b"));
+        taken.setId(2L);
+        when(jobRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+                eq(Status.PENDING), any(), eq(Limit.of(2)))).thenReturn(List.of(mine, taken));
+        when(jobRepository.claim(eq(1L), any())).thenReturn(1);
+        when(jobRepository.claim(eq(2L), any())).thenReturn(0);
+
+        List<ReviewGenerationJob> claimed = jobService.claimDueJobs(2);
+
+        assertEquals(List.of(mine), claimed);
+        assertEquals(Status.RUNNING, mine.getStatus());
+        assertEquals(1, mine.getAttempts());
+    }
+
+    @Test
+    void testMarkDoneUpdatesOnlyTheClaimedJob() {
+        LocalDateTime lockedAt = LocalDateTime.now();
+        ReviewGenerationJob job = runningJob(1, lockedAt);
+        when(jobRepository.finish(7L, lockedAt)).thenReturn(1);
+
+        assertTrue(jobService.markDone(job));
+
+        assertEquals(Status.DONE, job.getStatus());
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void testMarkDoneLeavesDeletedOrReclaimedJobAlone() {
+        LocalDateTime lockedAt = LocalDateTime.now();
+        when(jobRepository.finish(7L, lockedAt)).thenReturn(0);
+
+        assertFalse(jobService.markDone(runningJob(1, lockedAt)));
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void testMarkFailedSchedulesRetryWithExponentialBackoff() {
+        LocalDateTime lockedAt = LocalDateTime.now();
+        ReviewGenerationJob job = runningJob(2, lockedAt);
+        when(jobRepository.fail(eq(7L), eq(lockedAt), eq(Status.PENDING), any(), eq("timeout"))).thenReturn(1);
+
+        assertTrue(jobService.markFailed(job, "timeout"));
+
+        assertEquals(Status.PENDING, job.getStatus());
+        assertEquals("timeout", job.getLastError());
+        // Second attempt failed: 1000 ms * 2^1
+        assertTrue(job.getNextAttemptAt().isAfter(LocalDateTime.now().plusNanos(1_500_000_000L)));
+        assertTrue(job.getNextAttemptAt().isBefore(LocalDateTime.now().plusSeconds(3)));
+        verify(jobRepository).fail(7L, lockedAt, Status.PENDING, job.getNextAttemptAt(), "timeout");
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void testMarkFailedDoesNotRevivePendingJobOfDeletedProduct() {
+        LocalDateTime lockedAt = LocalDateTime.now();
+        when(jobRepository.fail(anyLong(), any(), any(), any(), any())).thenReturn(0);
+
+        assertFalse(jobService.markFailed(runningJob(1, lockedAt), "timeout"));
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void testMarkFailedGivesUpAfterMaxAttempts() {
+        LocalDateTime lockedAt = LocalDateTime.now();
+        ReviewGenerationJob job = runningJob(3, lockedAt);
+
+        jobService.markFailed(job, "timeout");
+
+        assertEquals(Status.FAILED, job.getStatus());
+        verify(jobRepository).fail(eq(7L), eq(lockedAt), eq(Status.FAILED), any(), eq("timeout"));
+    }
+
+    private static ReviewGenerationJob runningJob(int attempts, LocalDateTime lockedAt) {
+        ReviewGenerationJob job = new ReviewGenerationJob(PRODUCT);
+        job.setId(7L);
+        job.setStatus(Status.RUNNING);
+        job.setAttempts(attempts);
+        job.setLockedAt(lockedAt);
+        return job;
+    }
+}
@@ -0,0 +1,91 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.exception.ProductNotFoundException;
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ReviewGenerationJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.mockito.Mockito.*;
+
+class ReviewGenerationWorkerTest {
+
+    private static final ProductKey PRODUCT = new ProductKey(1L, "abc");
+
+    private ReviewGenerationJobService jobService;
+    private ReviewService reviewService;
+    private ExecutorService executor;
+    private ReviewGenerationWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        jobService = mock(ReviewGenerationJobService.class);
+        reviewService = mock(ReviewService.class);
+        executor = Executors.newSingleThreadExecutor();
+        worker = new ReviewGenerationWorker(jobService, reviewService, executor, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testRunMarksJobDoneWhenProductIsFilled() {
+        ReviewGenerationJob job = new ReviewGenerationJob(PRODUCT);
+        when(reviewService.topUpReviews(PRODUCT)).thenReturn(0);
+
+        worker.run(job);
+
+        verify(jobService).markDone(job);
+    }
+
+    @Test
+    void testRunRetriesWhenReviewsAreStillMissing() {
+        ReviewGenerationJob job = new ReviewGenerationJob(PRODUCT);
+        when(reviewService.topUpReviews(PRODUCT)).thenReturn(2);
+
+        worker.run(job);
+
+        verify(jobService).markFailed(job, "2 review(s) still missing");
+    }
+
+    @Test
+    void testRunRetriesWhenGenerationFails() {
+        ReviewGenerationJob job = new ReviewGenerationJob(PRODUCT);
+        when(reviewService.topUpReviews(PRODUCT)).thenThrow(new CompletionException(new IOException("AI down")));
+
+        worker.run(job);
+
+        verify(jobService).markFailed(eq(job), contains("AI down"));
+    }
+
+    @Test
+    void testRunDropsJobForDeletedProduct() {
+        ReviewGenerationJob job = new ReviewGenerationJob(PRODUCT);
+        when(reviewService.topUpReviews(PRODUCT)).thenThrow(new ProductNotFoundException("Product does not exist"));
+
+        worker.run(job);
+
+        verify(jobService).markDone(job);
+    }
+
+    @Test
+    void testPollClaimsUpToFreeWorkersAndRunsJobs() {
+        ReviewGenerationJob job = new ReviewGenerationJob(PRODUCT);
+        when(jobService.claimDueJobs(2)).thenReturn(List.of(job));
+
+        worker.poll();
+
+        verify(jobService).claimDueJobs(2);
+        verify(reviewService, timeout(1000)).topUpReviews(PRODUCT);
+        verify(jobService, timeout(1000)).markDone(job);
+    }
+}
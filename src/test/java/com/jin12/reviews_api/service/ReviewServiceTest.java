@@ -1,168 +1,653 @@
 package com.jin12.reviews_api.service;
 
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.jin12.reviews_api.cache.BoundedCache;
+import com.jin12.reviews_api.cache.DayKey;
+import com.jin12.reviews_api.cache.ResponseSerializer;
+import com.jin12.reviews_api.cache.SerializedResponse;
+import com.jin12.reviews_api.dto.ContentVersion;
+import com.jin12.reviews_api.dto.ProductStatsRow;
+import com.jin12.reviews_api.dto.ProductWithStats;
+import com.jin12.reviews_api.dto.ReviewAggregate;
+import com.jin12.reviews_api.dto.ReviewCursor;
+import com.jin12.reviews_api.dto.ReviewFilter;
+import com.jin12.reviews_api.dto.ReviewListItem;
+import com.jin12.reviews_api.dto.ReviewPage;
+import com.jin12.reviews_api.dto.ReviewRespons;
 import com.jin12.reviews_api.dto.ReviewStatsResponse;
+import com.jin12.reviews_api.dto.ReviewsRespons;
+import com.jin12.reviews_api.exception.CapacityExceededException;
 import com.jin12.reviews_api.exception.ProductNotFoundException;
 import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ProductReviewStats;
 import com.jin12.reviews_api.model.Review;
 import com.jin12.reviews_api.repository.ProductRepository;
 import com.jin12.reviews_api.repository.ReviewRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class ReviewServiceTest {
 
+    private static final ProductKey PROD = new ProductKey(1L, "prod");
+    private static final ProductKey P1 = new ProductKey(1L, "p1");
+    private static final ProductKey P2 = new ProductKey(1L, "p2");
+
     private ReviewRepository reviewRepository;
     private ProductRepository productRepository;
-    private AiReviewService aiReviewService;
+    private ReviewGenerator reviewGenerator;
+    private ReviewGenerationJobService jobService;
+    private ReviewStatsService statsService;
+    private TransactionTemplate transactionTemplate;
+    private BoundedCache<DayKey<ProductKey>, SerializedResponse<ReviewsRespons>> reviewsCache;
+    private ExecutorService executor;
     private ReviewService reviewService;
 
     @BeforeEach
     void setUp() {
         reviewRepository = mock(ReviewRepository.class);
         productRepository = mock(ProductRepository.class);
-        aiReviewService = mock(AiReviewService.class);
-        reviewService = new ReviewService(reviewRepository, productRepository, aiReviewService);
+        reviewGenerator = mock(ReviewGenerator.class);
+        jobService = mock(ReviewGenerationJobService.class);
+        statsService = mock(ReviewStatsService.class);
+        transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        reviewsCache = new BoundedCache<>("reviews", 100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        reviewService = reviewService(2000);
+        when(statsService.windowTotals(any(ProductKey.class), anyInt())).thenReturn(window(recent(0, 0, 0, 0, 0)));
+    }
+
+    private ReviewService reviewService(long aiDeadlineMs) {
+        return new ReviewService(reviewRepository, productRepository, reviewGenerator, jobService, statsService,
+                transactionTemplate, reviewsCache,
+                new ResponseSerializer(JsonMapper.builder().findAndAddModules().build(), 0), executor, aiDeadlineMs);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
     }
 
     @Test
     void testAddReviewSuccess() {
-        String productId = "prod1";
+        ProductKey productKey = new ProductKey(1L, "prod1");
         Product product = new Product();
         Review review = new Review();
 
-        when(productRepository.findById(productId)).thenReturn(Optional.of(product));
+        when(productRepository.findById(productKey)).thenReturn(Optional.of(product));
         when(reviewRepository.save(any(Review.class))).thenAnswer(inv -> inv.getArgument(0));
 
-        Review saved = reviewService.addReview(productId, review);
+        Review saved = reviewService.addReview(productKey, review);
 
         assertEquals(product, saved.getProduct());
         assertNotNull(saved.getDate());
         verify(reviewRepository).save(saved);
+        verify(statsService).recordAdded(productKey, List.of(saved));
     }
 
     @Test
     void testAddReviewProductNotFound() {
-        when(productRepository.findById("badId")).thenReturn(Optional.empty());
+        when(productRepository.findById(new ProductKey(1L, "badId"))).thenReturn(Optional.empty());
 
         RuntimeException ex = assertThrows(RuntimeException.class, () ->
-                reviewService.addReview("badId", new Review()));
+                reviewService.addReview(new ProductKey(1L, "badId"), new Review()));
 
         assertTrue(ex.getMessage().contains("Produkt finns inte"));
     }
 
     @Test
     void testDeleteReview() {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+        Review review = new Review("Name", "Text", 3, false);
+        review.setProduct(product);
+        when(reviewRepository.findById(42L)).thenReturn(Optional.of(review));
+
+        reviewService.deleteReview(42L);
+
+        verify(reviewRepository).delete(review);
+        verify(statsService).recordRemoved(PROD, List.of(review));
+    }
+
+    @Test
+    void testDeleteReviewMissingLeavesStatsAlone() {
+        when(reviewRepository.findById(42L)).thenReturn(Optional.empty());
+
         reviewService.deleteReview(42L);
-        verify(reviewRepository).deleteById(42L);
+
+        verify(reviewRepository, never()).delete(any());
+        verifyNoInteractions(statsService);
     }
 
     @Test
     void testGetRecentReviewsEnough() throws IOException, InterruptedException {
         Product product = new Product();
+        product.setUserId(1L);
         product.setProductId("prod");
-        List<Review> recentReviews = createReviews(5);
 
-        when(productRepository.findById("prod")).thenReturn(Optional.of(product));
-        when(reviewRepository.findByProductAndDateAfter(eq(product), any()))
-                .thenReturn(new ArrayList<>(recentReviews));
+        when(productRepository.findById(PROD)).thenReturn(Optional.of(product));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenReturn(rows(5));
 
-        List<Review> result = reviewService.getRecentReviews("prod");
+        List<ReviewRespons> result = reviewService.getRecentReviews(PROD);
 
         assertEquals(5, result.size());
-        verify(aiReviewService, never()).generateReview(any());
+        verify(reviewGenerator, never()).generateReviews(any(), anyInt());
     }
 
     @Test
     void testGetRecentReviewsWithAiGenerated() throws Exception {
         Product product = new Product();
+        product.setUserId(1L);
         product.setProductId("prod");
-        List<Review> existingReviews = createReviews(2);
-        Review aiReview = new Review();
-        aiReview.setRating(4);
-        aiReview.setDate(LocalDate.now());
+        List<Review> aiReviews = createReviews(3);
 
-        when(productRepository.findById("prod")).thenReturn(Optional.of(product));
-        when(reviewRepository.findByProductAndDateAfter(eq(product), any()))
-                .thenReturn(new ArrayList<>(existingReviews));
-        when(aiReviewService.generateReview(product)).thenReturn(aiReview);
-        when(reviewRepository.save(any())).thenReturn(aiReview);
+        when(productRepository.findById(PROD)).thenReturn(Optional.of(product));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenReturn(rows(2));
+        when(reviewGenerator.generateReviews(product, 3)).thenReturn(aiReviews);
 
-        List<Review> result = reviewService.getRecentReviews("prod");
+        List<ReviewRespons> result = reviewService.getRecentReviews(PROD);
 
         assertEquals(5, result.size());
-        verify(aiReviewService, times(3)).generateReview(product);
+        verify(reviewGenerator, times(1)).generateReviews(product, 3);
+        verify(reviewRepository).saveAll(aiReviews);
+        verify(statsService).recordAdded(PROD, aiReviews);
+    }
+
+    @Test
+    void testGetRecentReviewsSavesAiReviewsAfterDeadline() throws Exception {
+        reviewService = reviewService(200);
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+        List<Review> aiReviews = createReviews(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch saved = new CountDownLatch(1);
+
+        when(productRepository.findById(PROD)).thenReturn(Optional.of(product));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenReturn(rows(3));
+        // The AI call blocks until released, well past the deadline
+        when(reviewGenerator.generateReviews(product, 2)).thenAnswer(inv -> {
+            release.await();
+            return aiReviews;
+        });
+        when(reviewRepository.saveAll(aiReviews)).thenAnswer(inv -> {
+            saved.countDown();
+            return aiReviews;
+        });
+
+        List<ReviewRespons> result = reviewService.getRecentReviews(PROD);
+
+        assertEquals(3, result.size());
+
+        // The late batch is still saved once it finishes
+        release.countDown();
+        assertTrue(saved.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testGetRecentReviewsCoalescesConcurrentGenerationForSameProduct() throws Exception {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+        List<Review> aiReviews = createReviews(5);
+        int callers = 10;
+        CountDownLatch allRead = new CountDownLatch(callers);
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(productRepository.findById(PROD)).thenReturn(Optional.of(product));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenAnswer(inv -> {
+            allRead.countDown();
+            return new ArrayList<>();
+        });
+        when(reviewGenerator.generateReviews(product, 5)).thenAnswer(inv -> {
+            release.await();
+            return aiReviews;
+        });
+
+        List<CompletableFuture<List<ReviewRespons>>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> reviewService.getRecentReviews(PROD), executor));
+        }
+        assertTrue(allRead.await(2, TimeUnit.SECONDS));
+        Thread.sleep(100); // let every caller reach the in-flight generation
+        release.countDown();
+
+        for (CompletableFuture<List<ReviewRespons>> result : results) {
+            assertEquals(5, result.get(2, TimeUnit.SECONDS).size());
+        }
+        verify(reviewGenerator, times(1)).generateReviews(product, 5);
+        verify(reviewRepository, times(1)).saveAll(aiReviews);
+    }
+
+    @Test
+    void testGetRecentReviewsSkipsGenerationWhenEarlierBatchAlreadySaved() throws Exception {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+
+        when(productRepository.findById(PROD)).thenReturn(Optional.of(product));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenReturn(rows(2));
+        // By the time generation starts, another request has already filled the product
+        when(reviewRepository.countByProductAndDateAfter(eq(product), any())).thenReturn(5L);
+
+        List<ReviewRespons> result = reviewService.getRecentReviews(PROD);
+
+        assertEquals(2, result.size());
+        verify(reviewGenerator, never()).generateReviews(any(), anyInt());
+    }
+
+    @Test
+    void testGetReviewsForProductReadsRecentStatsAndAllTimeTotals() throws Exception {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+        product.setProductName("TestProduct");
+
+        when(statsService.findProductWithStats(PROD))
+                .thenReturn(Optional.of(new ProductWithStats(product, stats(PROD, 0, 1, 1, 4, 6))));
+        when(statsService.windowTotals(PROD, twoMonthsInDays())).thenReturn(window(recent(0, 0, 1, 4, 6)));
+        when(reviewRepository.findRecentReviews(eq(product), any(), eq(Limit.of(10)))).thenReturn(rows(10));
+
+        ReviewsRespons response = reviewService.getReviewsForProduct(PROD);
+
+        assertEquals(10, response.getReviews().size());
+        assertEquals(0, response.getPendingReviews());
+        // Stats cover every recent review of the product, not only the ten shown
+        assertEquals(11, response.getStats().getTotalReviews());
+        assertEquals(49.0 / 11, response.getStats().getCurrentAverage(), 1e-9);
+        assertEquals(Map.of(1, 0L, 2, 0L, 3, 1L, 4, 4L, 5, 6L), response.getStats().getRatingHistogram());
+        assertEquals(LocalDate.now().toString(), response.getStats().getLastReviewDate());
+        assertEquals(12, response.getStats().getAllTimeReviews());
+        assertEquals(4.25, response.getStats().getAllTimeAverage(), 1e-9);
+        verify(statsService, times(1)).windowTotals(any(ProductKey.class), anyInt());
+        verify(reviewRepository, times(1)).findRecentReviews(eq(product), any(), any());
+        verifyNoMoreInteractions(reviewRepository);
+        verifyNoInteractions(reviewGenerator, productRepository);
+    }
+
+    @Test
+    void testGetReviewsForProductAddsGeneratedReviewsToStats() throws Exception {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+        List<Review> aiReviews = createReviews(3);
+
+        when(statsService.findProductWithStats(PROD))
+                .thenReturn(Optional.of(new ProductWithStats(product, stats(PROD, 0, 0, 0, 0, 2))));
+        when(statsService.windowTotals(any(ProductKey.class), anyInt())).thenReturn(window(recent(0, 0, 0, 0, 2)));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenReturn(rows(2));
+        when(reviewGenerator.generateReviews(product, 3)).thenReturn(aiReviews);
+
+        ReviewsRespons response = reviewService.getReviewsForProduct(PROD);
+
+        assertEquals(5, response.getReviews().size());
+        assertEquals(5, response.getStats().getTotalReviews());
+        assertEquals(4.4, response.getStats().getCurrentAverage(), 1e-9);
+        assertEquals(3L, response.getStats().getRatingHistogram().get(4));
+        assertEquals(5, response.getStats().getAllTimeReviews());
+        assertEquals(4.4, response.getStats().getAllTimeAverage(), 1e-9);
+    }
+
+    @Test
+    void testGetReviewsForProductServesCompleteResponseFromCacheUntilReviewAdded() {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+
+        when(statsService.findProductWithStats(PROD))
+                .thenReturn(Optional.of(new ProductWithStats(product, stats(PROD, 0, 0, 0, 5, 0))));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenReturn(rows(5));
+        when(productRepository.findById(PROD)).thenReturn(Optional.of(product));
+        when(reviewRepository.save(any(Review.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        ReviewsRespons first = reviewService.getReviewsForProduct(PROD);
+        assertSame(first, reviewService.getReviewsForProduct(PROD));
+        verify(statsService, times(1)).findProductWithStats(PROD);
+
+        reviewService.addReview(PROD, new Review("Name", "Text", 5, false));
+
+        assertNotSame(first, reviewService.getReviewsForProduct(PROD));
+        verify(statsService, times(2)).findProductWithStats(PROD);
+    }
+
+    @Test
+    void testGetSerializedReviewsForProductCachesJsonGzipAndVersionTag() {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+        ProductReviewStats stats = stats(PROD, 0, 0, 0, 5, 0);
+        stats.setVersion(6);
+        ContentVersion version = new ContentVersion(6, stats.getUpdatedAt());
+
+        when(statsService.findProductWithStats(PROD)).thenReturn(Optional.of(new ProductWithStats(product, stats)));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenReturn(rows(5));
+
+        SerializedResponse<ReviewsRespons> serialized = reviewService.getSerializedReviewsForProduct(PROD);
+
+        String json = new String(serialized.json(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"productId\":\"prod\""));
+        assertNotNull(serialized.gzip());
+        assertEquals(version.etag(LocalDate.now()), serialized.etag());
+        assertEquals(version.lastModified(LocalDate.now()), serialized.lastModified());
+        assertSame(serialized, reviewService.getSerializedReviewsForProduct(PROD));
+        assertSame(serialized.body(), reviewService.getReviewsForProduct(PROD));
+        verify(statsService, times(1)).findProductWithStats(PROD);
+    }
+
+    @Test
+    void testGetSerializedReviewsForProductDoesNotServeYesterdaysResponse() {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+        ProductReviewStats stats = stats(PROD, 0, 0, 0, 5, 0);
+        ContentVersion version = new ContentVersion(stats.getVersion(), stats.getUpdatedAt());
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        SerializedResponse<ReviewsRespons> old = new SerializedResponse<>(new ReviewsRespons(), new byte[0], null,
+                version.etag(yesterday), version.lastModified(yesterday));
+        reviewsCache.get(new DayKey<>(PROD, yesterday), key -> old, cached -> true);
+
+        when(statsService.findProductWithStats(PROD)).thenReturn(Optional.of(new ProductWithStats(product, stats)));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenReturn(rows(5));
+
+        SerializedResponse<ReviewsRespons> serialized = reviewService.getSerializedReviewsForProduct(PROD);
+
+        assertNotSame(old, serialized);
+        assertEquals(version.etag(LocalDate.now()), serialized.etag());
+        verify(statsService, times(1)).findProductWithStats(PROD);
+    }
+
+    @Test
+    void testGetReviewsVersionReadsOnlyTheVersion() {
+        ContentVersion version = new ContentVersion(2, Instant.EPOCH);
+        when(statsService.findVersion(PROD)).thenReturn(Optional.of(version));
+
+        assertEquals(Optional.of(version), reviewService.getReviewsVersion(PROD));
+        verify(statsService, never()).findProductWithStats(any());
+        verifyNoInteractions(reviewRepository);
+    }
+
+    @Test
+    void testGetReviewsForProductDoesNotCachePendingOrWindowedResponses() throws Exception {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+
+        when(statsService.findProductWithStats(PROD))
+                .thenReturn(Optional.of(new ProductWithStats(product, stats(PROD, 0, 0, 0, 2, 0))));
+        when(statsService.windowTotals(PROD, 30)).thenReturn(new ReviewStatsService.WindowTotals(
+                new ReviewAggregate(0, 0, 0, 0, 0, 0, 0, null), new ReviewAggregate(0, 0, 0, 0, 0, 0, 0, null)));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenReturn(rows(2));
+        when(reviewGenerator.generateReviews(product, 3)).thenThrow(new CapacityExceededException("ai: rate limit reached"));
+
+        reviewService.getReviewsForProduct(PROD);
+        reviewService.getReviewsForProduct(PROD);
+        reviewService.getReviewsForProduct(PROD, 30);
+        reviewService.getReviewsForProduct(PROD, 30);
+
+        assertEquals(0, reviewsCache.size());
+        verify(statsService, times(4)).findProductWithStats(PROD);
+    }
+
+    @Test
+    void testGetReviewsForProductNotFound() {
+        when(statsService.findProductWithStats(new ProductKey(1L, "bad"))).thenReturn(Optional.empty());
+
+        assertThrows(ProductNotFoundException.class, () -> reviewService.getReviewsForProduct(new ProductKey(1L, "bad")));
+    }
+
+    @Test
+    void testGetReviewsForProductMarksRestPendingWhenAiIsBusy() throws Exception {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+
+        when(statsService.findProductWithStats(PROD))
+                .thenReturn(Optional.of(new ProductWithStats(product, stats(PROD, 0, 0, 0, 2, 0))));
+        when(reviewRepository.findRecentReviews(eq(product), any(), any())).thenReturn(rows(2));
+        when(reviewGenerator.generateReviews(product, 3)).thenThrow(new CapacityExceededException("ai: rate limit reached"));
+        when(jobService.enqueueIfIdle(PROD)).thenReturn(true);
+
+        ReviewsRespons response = reviewService.getReviewsForProduct(PROD);
+
+        assertEquals(2, response.getReviews().size());
+        assertEquals(3, response.getPendingReviews());
+        verify(jobService).enqueueIfIdle(PROD);
+        verify(reviewRepository, never()).saveAll(any());
     }
 
     @Test
     void testGetRecentReviewsProductNotFound() {
-        when(productRepository.findById("bad")).thenReturn(Optional.empty());
+        when(productRepository.findById(new ProductKey(1L, "bad"))).thenReturn(Optional.empty());
 
         assertThrows(ProductNotFoundException.class, () ->
-                reviewService.getRecentReviews("bad"));
+                reviewService.getRecentReviews(new ProductKey(1L, "bad")));
     }
 
     @Test
-    void testGetProductStatsEnoughReviews() {
+    void testGetProductStatsSumsRecentReviewsWithoutLoadingThem() {
         Product product = new Product();
+        product.setUserId(1L);
         product.setProductId("p1");
         product.setProductName("TestProduct");
-        List<Review> reviews = createReviews(5);
-        reviews.get(0).setDate(LocalDate.now()); // Ensuring latest
 
-        when(productRepository.findById("p1")).thenReturn(Optional.of(product));
-        when(reviewRepository.findByProductAndDateAfter(eq(product), any())).thenReturn(reviews);
+        when(statsService.findProductWithStats(P1))
+                .thenReturn(Optional.of(new ProductWithStats(product, stats(P1, 1, 0, 1, 0, 3))));
+        // The one-star review is older than two months
+        when(statsService.windowTotals(P1, twoMonthsInDays())).thenReturn(window(recent(0, 0, 1, 0, 3)));
 
-        ReviewStatsResponse response = reviewService.getProductStats("p1");
+        ReviewStatsResponse response = reviewService.getProductStats(P1);
 
         assertEquals("p1", response.getProductId());
         assertEquals("TestProduct", response.getProductName());
-        assertEquals(5, response.getTotalReviews());
-        assertNotNull(response.getLastReviewDate());
+        assertEquals(4, response.getTotalReviews());
+        assertEquals(4.5, response.getCurrentAverage(), 1e-9);
+        assertEquals(5, response.getAllTimeReviews());
+        assertEquals(3.8, response.getAllTimeAverage(), 1e-9);
+        assertEquals(LocalDate.now().toString(), response.getLastReviewDate());
+        verifyNoInteractions(reviewRepository, productRepository);
+    }
+
+    @Test
+    void testGetProductStatsBatchReadsTotalsRowsAndBucketsOnly() {
+        when(statsService.findStatsRows(1L, List.of("p1", "p2", "missing"))).thenReturn(List.of(
+                new ProductStatsRow("p1", "Shirt", stats(P1, 1, 0, 1, 0, 3)),
+                new ProductStatsRow("p2", "Cap", stats(P2, 0, 0, 0, 0, 0))));
+        when(statsService.windowTotals(1L, List.of("p1", "p2"), twoMonthsInDays()))
+                .thenReturn(Map.of("p1", window(recent(0, 0, 1, 0, 1)), "p2", window(recent(0, 0, 0, 0, 0))));
+
+        Map<String, ReviewStatsResponse> result = reviewService.getProductStatsBatch(1L, List.of("p1", "p2", "missing"));
+
+        assertEquals(Set.of("p1", "p2"), result.keySet());
+        assertEquals("Shirt", result.get("p1").getProductName());
+        assertEquals(4.0, result.get("p1").getCurrentAverage(), 1e-9);
+        assertEquals(3.8, result.get("p1").getAllTimeAverage(), 1e-9);
+        assertEquals(0, result.get("p2").getTotalReviews());
+        assertEquals(0.0, result.get("p2").getCurrentAverage());
+        verifyNoInteractions(reviewRepository, productRepository, reviewGenerator, jobService);
     }
 
     @Test
-    void testGetProductStatsFallbackToTop10() {
+    void testGetProductStatsForWindowSumsBuckets() {
         Product product = new Product();
-        product.setProductId("p2");
-        product.setProductName("FallbackProduct");
+        product.setUserId(1L);
+        product.setProductId("p1");
+
+        when(statsService.findProductWithStats(P1))
+                .thenReturn(Optional.of(new ProductWithStats(product, stats(P1, 1, 0, 1, 0, 3))));
+        when(statsService.windowTotals(P1, 30)).thenReturn(new ReviewStatsService.WindowTotals(
+                new ReviewAggregate(2, 9, 0, 0, 0, 1, 1, LocalDate.now()),
+                new ReviewAggregate(1, 1, 1, 0, 0, 0, 0, LocalDate.now().minusDays(40))));
+
+        ReviewStatsResponse response = reviewService.getProductStats(P1, 30);
+
+        assertEquals("30d", response.getWindow());
+        assertEquals(2, response.getTotalReviews());
+        assertEquals(4.5, response.getCurrentAverage(), 1e-9);
+        assertEquals(1.0, response.getPreviousAverage(), 1e-9);
+        assertEquals(Map.of(1, 0L, 2, 0L, 3, 0L, 4, 1L, 5, 1L), response.getRatingHistogram());
+        verifyNoInteractions(reviewRepository);
+    }
+
+    @Test
+    void testGetProductStatsWithoutWindowHasNoTrend() {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("p1");
+
+        when(statsService.findProductWithStats(P1))
+                .thenReturn(Optional.of(new ProductWithStats(product, stats(P1, 0, 0, 0, 0, 1))));
 
-        when(productRepository.findById("p2")).thenReturn(Optional.of(product));
-        when(reviewRepository.findByProductAndDateAfter(eq(product), any()))
-                .thenReturn(Collections.emptyList());
+        ReviewStatsResponse response = reviewService.getProductStats(P1);
+
+        assertNull(response.getWindow());
+        assertNull(response.getPreviousAverage());
+        verify(statsService).windowTotals(P1, twoMonthsInDays());
+    }
+
+    @Test
+    void testGetProductStatsWithoutReviews() {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("p2");
 
-        List<Review> fallback = createReviews(3);
-        fallback.get(0).setDate(LocalDate.now());
-        when(reviewRepository.findTop10ByProductOrderByDateDesc(product)).thenReturn(fallback);
+        when(statsService.findProductWithStats(P2))
+                .thenReturn(Optional.of(new ProductWithStats(product, new ProductReviewStats(P2))));
 
-        ReviewStatsResponse response = reviewService.getProductStats("p2");
+        ReviewStatsResponse response = reviewService.getProductStats(P2);
 
-        assertEquals("FallbackProduct", response.getProductName());
-        assertEquals(3, response.getTotalReviews());
+        assertEquals(0, response.getTotalReviews());
+        assertEquals(0.0, response.getCurrentAverage());
+        assertNull(response.getLastReviewDate());
     }
 
     @Test
     void testGetProductStatsProductNotFound() {
-        when(productRepository.findById("missing")).thenReturn(Optional.empty());
+        when(statsService.findProductWithStats(new ProductKey(1L, "missing"))).thenReturn(Optional.empty());
 
         assertThrows(RuntimeException.class, () ->
-                reviewService.getProductStats("missing"));
+                reviewService.getProductStats(new ProductKey(1L, "missing")));
     }
 
     @Test
     void testDeleteReviewsByProductId() {
-        String productId = "some-product-id";
-        reviewService.deleteReviewsByProductId(productId);
-        verify(reviewRepository).deleteByProductId(productId);
+        ProductKey productKey = new ProductKey(1L, "some-product-id");
+        reviewService.deleteReviewsByProductId(productKey);
+        verify(reviewRepository).deleteByProductId(1L, "some-product-id");
+        verify(statsService).rebuild(productKey);
+    }
+
+    // Utility methods
+    private List<ReviewRespons> rows(int count) {
+        List<ReviewRespons> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new ReviewRespons(LocalDate.now().minusDays(i), "Reviewer " + i, 4, "Text"));
+        }
+        return rows;
+    }
+
+    @Test
+    void testGetReviewPageReturnsCursorWhenMoreRowsExist() {
+        LocalDate day = LocalDate.of(2025, 3, 10);
+        when(productRepository.existsById(P1)).thenReturn(true);
+        when(reviewRepository.findReviewPage(eq(1L), eq("p1"), any(), any(), anyLong(), any(), any(), any()))
+                .thenReturn(List.of(listItem(9, day), listItem(8, day), listItem(7, day.minusDays(1))));
+
+        ReviewPage page = reviewService.getReviewPage(P1, ReviewFilter.NONE, null, 2);
+
+        assertEquals(2, page.getReviews().size());
+        assertEquals(new ReviewCursor(day, 8), ReviewCursor.decode(page.getNextCursor()));
+        verify(reviewRepository).findReviewPage(1L, "p1", LocalDate.of(1, 1, 1), LocalDate.of(9999, 12, 31),
+                Long.MAX_VALUE, null, null, Limit.of(3));
+    }
+
+    @Test
+    void testGetReviewPageSeeksFromCursorWithinDateRange() {
+        LocalDate day = LocalDate.of(2025, 3, 10);
+        when(productRepository.existsById(P1)).thenReturn(true);
+        when(reviewRepository.findReviewPage(eq(1L), eq("p1"), any(), any(), anyLong(), any(), any(), any()))
+                .thenReturn(List.of(listItem(5, day)));
+        ReviewFilter filter = new ReviewFilter(4, false, day.minusDays(7), day);
+
+        ReviewPage page = reviewService.getReviewPage(P1, filter, new ReviewCursor(day, 6), 2);
+        reviewService.getReviewPage(P1, filter, new ReviewCursor(day.plusDays(3), 6), 2);
+
+        assertNull(page.getNextCursor());
+        verify(reviewRepository).findReviewPage(1L, "p1", day.minusDays(7), day, 6L, 4, false, Limit.of(3));
+        // A cursor after the range starts at the end of the range
+        verify(reviewRepository).findReviewPage(1L, "p1", day.minusDays(7), day.plusDays(1), Long.MAX_VALUE, 4, false,
+                Limit.of(3));
+    }
+
+    @Test
+    void testGetReviewPageProductNotFound() {
+        when(productRepository.existsById(new ProductKey(1L, "missing"))).thenReturn(false);
+
+        assertThrows(ProductNotFoundException.class,
+                () -> reviewService.getReviewPage(new ProductKey(1L, "missing"), ReviewFilter.NONE, null, 20));
+        verifyNoInteractions(reviewRepository);
+    }
+
+    private static ReviewListItem listItem(long id, LocalDate date) {
+        return ReviewListItem.builder().id(id).date(date).name("N" + id).rating(4).text("Text").build();
+    }
+
+    private static ReviewStatsService.WindowTotals window(ReviewAggregate current) {
+        return new ReviewStatsService.WindowTotals(current, new ReviewAggregate(0, 0, 0, 0, 0, 0, 0, null));
+    }
+
+    // The default stats window: the days after the day two months ago, up to and including today
+    private static int twoMonthsInDays() {
+        return (int) ChronoUnit.DAYS.between(LocalDate.now().minusMonths(2), LocalDate.now());
+    }
+
+    private static ReviewAggregate recent(long... stars) {
+        long count = 0;
+        long ratingSum = 0;
+        for (int star = 1; star <= stars.length; star++) {
+            count += stars[star - 1];
+            ratingSum += star * stars[star - 1];
+        }
+        return new ReviewAggregate(count, ratingSum, stars[0], stars[1], stars[2], stars[3], stars[4],
+                count == 0 ? null : LocalDate.now());
+    }
+
+    private ProductReviewStats stats(ProductKey productKey, long... stars) {
+        ProductReviewStats stats = new ProductReviewStats(productKey);
+        stats.setStars1(stars[0]);
+        stats.setStars2(stars[1]);
+        stats.setStars3(stars[2]);
+        stats.setStars4(stars[3]);
+        stats.setStars5(stars[4]);
+        for (int star = 1; star <= 5; star++) {
+            stats.setReviewCount(stats.getReviewCount() + stars[star - 1]);
+            stats.setRatingSum(stats.getRatingSum() + star * stars[star - 1]);
+        }
+        stats.setLastReviewDate(LocalDate.now());
+        return stats;
     }
 
-    // Utility method
     private List<Review> createReviews(int count) {
         List<Review> reviews = new ArrayList<>();
         for (int i = 0; i < count; i++) {
@@ -0,0 +1,164 @@
+package com.jin12.reviews_api.service;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.jin12.reviews_api.cache.BoundedCache;
+import com.jin12.reviews_api.cache.ResponseSerializer;
+import com.jin12.reviews_api.dto.ReviewStatsResponse;
+import com.jin12.reviews_api.dto.ReviewsRespons;
+import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.Review;
+import com.jin12.reviews_api.model.User;
+import com.jin12.reviews_api.repository.ProductRepository;
+import com.jin12.reviews_api.repository.ProductReviewStatsRepository;
+import com.jin12.reviews_api.repository.ReviewRepository;
+import com.jin12.reviews_api.repository.ReviewStatsBucketRepository;
+import com.jin12.reviews_api.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ReviewService against real repositories and a real ReviewStatsService, so that the rating totals and buckets
+ * the AI reviews are saved into are the same ones the statistics are read from.
+ */
+@ActiveProfiles("test")
+@DataJpaTest
+// AI-recensionerna sparas på en annan tråd och måste därför se committad data
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReviewServiceWindowStatsTest {
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductReviewStatsRepository statsRepository;
+
+    @Autowired
+    private ReviewStatsBucketRepository bucketRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ReviewGenerator reviewGenerator;
+    private ReviewStatsService statsService;
+    private ExecutorService executor;
+    private ReviewService reviewService;
+    private ProductKey productKey;
+
+    @BeforeEach
+    void setUp() {
+        reviewGenerator = mock(ReviewGenerator.class);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        statsService = new ReviewStatsService(statsRepository, bucketRepository, reviewRepository, 90);
+        reviewService = new ReviewService(reviewRepository, productRepository, reviewGenerator,
+                mock(ReviewGenerationJobService.class), statsService, new TransactionTemplate(transactionManager),
+                new BoundedCache<>("reviews", 100, Duration.ofMinutes(1), new SimpleMeterRegistry()),
+                new ResponseSerializer(JsonMapper.builder().findAndAddModules().build(), 0), executor, 5000);
+
+        User user = new User();
+        user.setUsername("windowuser");
+        user.setPassword("password");
+        user = userRepository.save(user);
+        Product product = new Product();
+        product.setUserId(user.getId());
+        product.setProductId("prod");
+        product.setProductName("Produkt");
+        productRepository.save(product);
+        productKey = product.key();
+        statsService.createFor(productKey);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        reviewRepository.deleteAllInBatch();
+        bucketRepository.deleteAllInBatch();
+        statsRepository.deleteAllInBatch();
+        productRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Should count AI reviews generated during a windowed read once")
+    void testWindowedStatsCountGeneratedReviewsOnce() throws Exception {
+        // En befintlig recension i fönstret, fyra genereras under läsningen
+        Product product = productRepository.findById(productKey).orElseThrow();
+        Review existing = new Review("Kund", "Bra", 5, false);
+        existing.setProduct(product);
+        existing.setDate(LocalDate.now().minusDays(1));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                statsService.recordAdded(productKey, List.of(reviewRepository.save(existing))));
+        when(reviewGenerator.generateReviews(any(Product.class), anyInt())).thenAnswer(inv -> {
+            List<Review> reviews = new ArrayList<>();
+            for (int i = 0; i < inv.<Integer>getArgument(1); i++) {
+                Review review = new Review("AI " + i, "Genererad", 3, true);
+                review.setProduct(inv.getArgument(0));
+                review.setDate(LocalDate.now());
+                reviews.add(review);
+            }
+            return reviews;
+        });
+
+        ReviewsRespons response = reviewService.getReviewsForProduct(productKey, 30);
+
+        ReviewStatsResponse stats = response.getStats();
+        assertThat(response.getReviews()).hasSize(5);
+        assertThat(stats.getTotalReviews()).isEqualTo(5);
+        assertThat(stats.getCurrentAverage()).isEqualTo((5 + 4 * 3) / 5.0);
+        assertThat(stats.getRatingHistogram()).isEqualTo(Map.of(1, 0L, 2, 0L, 3, 4L, 4, 0L, 5, 1L));
+
+        // Nästa läsning ser samma siffror, nu enbart från hinkarna
+        assertThat(reviewService.getReviewsForProduct(productKey, 30).getStats().getTotalReviews()).isEqualTo(5);
+        assertThat(reviewService.getProductStats(productKey).getTotalReviews()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should count AI reviews generated during a read with the default window once")
+    void testDefaultStatsCountGeneratedReviewsOnce() throws Exception {
+        when(reviewGenerator.generateReviews(any(Product.class), anyInt())).thenAnswer(inv -> {
+            List<Review> reviews = new ArrayList<>();
+            for (int i = 0; i < inv.<Integer>getArgument(1); i++) {
+                Review review = new Review("AI " + i, "Genererad", 4, true);
+                review.setProduct(inv.getArgument(0));
+                review.setDate(LocalDate.now());
+                reviews.add(review);
+            }
+            return reviews;
+        });
+
+        ReviewStatsResponse stats = reviewService.getReviewsForProduct(productKey).getStats();
+
+        assertThat(stats.getTotalReviews()).isEqualTo(5);
+        assertThat(stats.getAllTimeReviews()).isEqualTo(5);
+        assertThat(reviewService.getProductStats(productKey).getTotalReviews()).isEqualTo(5);
+        assertThat(reviewService.getProductStats(productKey).getAllTimeReviews()).isEqualTo(5);
+    }
+}
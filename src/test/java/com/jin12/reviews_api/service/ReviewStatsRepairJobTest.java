@@ -0,0 +1,63 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.repository.ProductRepository;
+import com.jin12.reviews_api.repository.ProductReviewStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+class ReviewStatsRepairJobTest {
+
+    private static final ProductKey A = new ProductKey(1L, "a");
+    private static final ProductKey B = new ProductKey(1L, "b");
+    private static final ProductKey C = new ProductKey(2L, "a");
+
+    private ReviewStatsService statsService;
+    private ProductRepository productRepository;
+    private ProductReviewStatsRepository statsRepository;
+    private ReviewStatsRepairJob repairJob;
+
+    @BeforeEach
+    void setUp() {
+        statsService = mock(ReviewStatsService.class);
+        productRepository = mock(ProductRepository.class);
+        statsRepository = mock(ProductReviewStatsRepository.class);
+        repairJob = new ReviewStatsRepairJob(statsService, productRepository, statsRepository);
+    }
+
+    @Test
+    void testBackfillBuildsOnlyMissingRows() {
+        when(statsRepository.findProductKeysWithoutStats()).thenReturn(List.of(A));
+
+        repairJob.backfill();
+
+        verify(statsService).rebuild(A);
+        verifyNoMoreInteractions(statsService);
+    }
+
+    @Test
+    void testRepairRebuildsEveryProductAndContinuesAfterFailure() {
+        when(productRepository.findAllProductKeys()).thenReturn(List.of(A, B, C));
+        when(statsService.rebuild(B)).thenThrow(new IllegalStateException("lock timeout"));
+
+        repairJob.repair();
+
+        verify(statsService).rebuild(A);
+        verify(statsService).rebuild(B);
+        verify(statsService).rebuild(C);
+    }
+
+    @Test
+    void testCompactRollsUpEveryProductWithOldDays() {
+        when(statsService.findProductKeysToCompact()).thenReturn(List.of(A, B));
+
+        repairJob.compact();
+
+        verify(statsService).compact(A);
+        verify(statsService).compact(B);
+    }
+}
@@ -0,0 +1,263 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.dto.ProductStatsRow;
+import com.jin12.reviews_api.dto.ProductWithStats;
+import com.jin12.reviews_api.dto.ReviewAggregate;
+import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.ProductKey;
+import com.jin12.reviews_api.model.ProductReviewStats;
+import com.jin12.reviews_api.model.Review;
+import com.jin12.reviews_api.model.ReviewStatsBucket;
+import com.jin12.reviews_api.model.ReviewStatsBucket.Granularity;
+import com.jin12.reviews_api.repository.ProductReviewStatsRepository;
+import com.jin12.reviews_api.repository.ReviewRepository;
+import com.jin12.reviews_api.repository.ReviewStatsBucketRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReviewStatsServiceTest {
+
+    private static final ProductKey PROD = new ProductKey(1L, "prod");
+
+    private ProductReviewStatsRepository statsRepository;
+    private ReviewStatsBucketRepository bucketRepository;
+    private ReviewRepository reviewRepository;
+    private ReviewStatsService statsService;
+
+    @BeforeEach
+    void setUp() {
+        statsRepository = mock(ProductReviewStatsRepository.class);
+        bucketRepository = mock(ReviewStatsBucketRepository.class);
+        reviewRepository = mock(ReviewRepository.class);
+        statsService = new ReviewStatsService(statsRepository, bucketRepository, reviewRepository, 90);
+        when(statsRepository.save(any(ProductReviewStats.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void testRecordAddedIncrementsTotalsAndHistogram() {
+        LocalDate today = LocalDate.now();
+        when(statsRepository.increment(anyLong(), anyString(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(),
+                anyLong(), anyLong(), any(), any())).thenReturn(1);
+
+        statsService.recordAdded(PROD, List.of(review(5, today.minusDays(2)), review(3, today), review(5, today)));
+
+        verify(statsRepository).increment(eq(1L), eq("prod"), eq(3L), eq(13L), eq(0L), eq(0L), eq(1L), eq(0L), eq(2L),
+                eq(today), any(Instant.class));
+        verify(bucketRepository).add(1L, "prod", Granularity.DAY, today.minusDays(2), 1, 5, 0, 0, 0, 0, 1);
+        verify(bucketRepository).add(1L, "prod", Granularity.DAY, today, 2, 8, 0, 0, 1, 0, 1);
+        verifyNoInteractions(reviewRepository);
+    }
+
+    @Test
+    void testRecordAddedInsertsMissingBucketAndRoutesOldReviewsToTheirMonth() {
+        LocalDate old = LocalDate.now().minusYears(1);
+        when(statsRepository.increment(anyLong(), anyString(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(),
+                anyLong(), anyLong(), any(), any())).thenReturn(1);
+
+        statsService.recordAdded(PROD, List.of(review(2, old)));
+
+        verify(bucketRepository).add(1L, "prod", Granularity.MONTH, old.withDayOfMonth(1), 1, 2, 0, 1, 0, 0, 0);
+        verify(bucketRepository).save(argThat(bucket -> bucket.getGranularity() == Granularity.MONTH
+                && bucket.getBucketStart().equals(old.withDayOfMonth(1)) && bucket.getStars2() == 1));
+    }
+
+    @Test
+    void testRecordAddedRebuildsWhenRowIsMissing() {
+        when(statsRepository.increment(anyLong(), anyString(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(),
+                anyLong(), anyLong(), any(), any())).thenReturn(0);
+        when(statsRepository.lockByProductId(1L, "prod")).thenReturn(Optional.empty());
+        when(reviewRepository.aggregateByProductId(1L, "prod"))
+                .thenReturn(new ReviewAggregate(2, 9, 0, 0, 0, 1, 1, LocalDate.now()));
+
+        statsService.recordAdded(PROD, List.of(review(4, LocalDate.now())));
+
+        verify(statsRepository).save(argThat(stats -> stats.getReviewCount() == 2 && stats.getRatingSum() == 9));
+    }
+
+    @Test
+    void testRecordRemovedDecrementsTotals() {
+        when(statsRepository.decrement(anyLong(), anyString(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(),
+                anyLong(), anyLong(), any())).thenReturn(1);
+
+        statsService.recordRemoved(PROD, List.of(review(1, LocalDate.now())));
+
+        verify(statsRepository).decrement(eq(1L), eq("prod"), eq(1L), eq(1L), eq(1L), eq(0L), eq(0L), eq(0L), eq(0L),
+                any(Instant.class));
+    }
+
+    @Test
+    void testRecordRemovedFallsBackToMonthWhenDayWasCompacted() {
+        LocalDate date = LocalDate.now().minusDays(100);
+        when(statsRepository.decrement(anyLong(), anyString(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(),
+                anyLong(), anyLong(), any())).thenReturn(1);
+        when(bucketRepository.add(eq(1L), eq("prod"), eq(Granularity.DAY), any(), anyLong(), anyLong(), anyLong(),
+                anyLong(), anyLong(), anyLong(), anyLong())).thenReturn(0);
+
+        statsService.recordRemoved(PROD, List.of(review(4, date)));
+
+        verify(bucketRepository).add(1L, "prod", Granularity.MONTH, date.withDayOfMonth(1), -1, -4, 0, 0, 0, -1, 0);
+        verify(bucketRepository, never()).save(any());
+    }
+
+    @Test
+    void testWindowTotalsSumsCurrentAndPreviousWindow() {
+        LocalDate today = LocalDate.now();
+        when(bucketRepository.findByUserIdAndProductIdAndBucketStartGreaterThanEqual(1L, "prod", today.minusDays(59)))
+                .thenReturn(List.of(
+                        bucket(Granularity.DAY, today, 5),
+                        bucket(Granularity.DAY, today.minusDays(29), 3),
+                        bucket(Granularity.DAY, today.minusDays(30), 1)));
+
+        ReviewStatsService.WindowTotals totals = statsService.windowTotals(PROD, 30);
+
+        assertEquals(new ReviewAggregate(2, 8, 0, 0, 1, 0, 1, today), totals.current());
+        assertEquals(new ReviewAggregate(1, 1, 1, 0, 0, 0, 0, today.minusDays(30)), totals.previous());
+    }
+
+    @Test
+    void testWindowTotalsForSeveralProductsReadsBucketsOnce() {
+        LocalDate today = LocalDate.now();
+        ReviewStatsBucket other = bucket(Granularity.DAY, today, 4);
+        other.setProductId("other");
+        when(bucketRepository.findByUserIdAndProductIdInAndBucketStartGreaterThanEqual(1L, List.of("prod", "other", "empty"),
+                today.minusDays(59)))
+                .thenReturn(List.of(bucket(Granularity.DAY, today, 5), other, bucket(Granularity.DAY, today.minusDays(30), 1)));
+
+        Map<String, ReviewStatsService.WindowTotals> totals =
+                statsService.windowTotals(1L, List.of("prod", "other", "empty"), 30);
+
+        assertEquals(new ReviewAggregate(1, 5, 0, 0, 0, 0, 1, today), totals.get("prod").current());
+        assertEquals(new ReviewAggregate(1, 1, 1, 0, 0, 0, 0, today.minusDays(30)), totals.get("prod").previous());
+        assertEquals(new ReviewAggregate(1, 4, 0, 0, 0, 1, 0, today), totals.get("other").current());
+        assertEquals(new ReviewAggregate(0, 0, 0, 0, 0, 0, 0, null), totals.get("empty").current());
+        verify(bucketRepository, times(1))
+                .findByUserIdAndProductIdInAndBucketStartGreaterThanEqual(anyLong(), any(), any());
+    }
+
+    @Test
+    void testCompactRollsOldDaysIntoMonths() {
+        LocalDate month = LocalDate.now().minusYears(1).withDayOfMonth(1);
+        List<ReviewStatsBucket> days = List.of(
+                bucket(Granularity.DAY, month, 5),
+                bucket(Granularity.DAY, month.plusDays(3), 4),
+                bucket(Granularity.DAY, month.plusMonths(1), 1));
+        when(bucketRepository.findByUserIdAndProductIdAndGranularityAndBucketStartBefore(eq(1L), eq("prod"),
+                eq(Granularity.DAY), any()))
+                .thenReturn(days);
+        when(bucketRepository.add(anyLong(), anyString(), any(), any(), anyLong(), anyLong(), anyLong(), anyLong(),
+                anyLong(), anyLong(), anyLong())).thenReturn(1);
+
+        assertEquals(3, statsService.compact(PROD));
+
+        verify(statsRepository).lockByProductId(1L, "prod");
+        verify(bucketRepository).deleteAll(days);
+        verify(bucketRepository).add(1L, "prod", Granularity.MONTH, month, 2, 9, 0, 0, 0, 1, 1);
+        verify(bucketRepository).add(1L, "prod", Granularity.MONTH, month.plusMonths(1), 1, 1, 1, 0, 0, 0, 0);
+    }
+
+    @Test
+    void testRebuildOverwritesDriftedRow() {
+        ProductReviewStats stats = new ProductReviewStats(PROD);
+        stats.setReviewCount(7);
+        stats.setVersion(3);
+        stats.setUpdatedAt(Instant.EPOCH);
+        when(statsRepository.lockByProductId(1L, "prod")).thenReturn(Optional.of(stats));
+        when(reviewRepository.aggregateByProductId(1L, "prod"))
+                .thenReturn(new ReviewAggregate(2, 6, 0, 1, 0, 1, 0, LocalDate.now()));
+
+        when(reviewRepository.aggregateDailyByProductId(1L, "prod"))
+                .thenReturn(List.of(new ReviewAggregate(2, 6, 0, 1, 0, 1, 0, LocalDate.now())));
+
+        ProductReviewStats rebuilt = statsService.rebuild(PROD);
+
+        verify(bucketRepository).deleteByProductId(1L, "prod");
+        verify(bucketRepository).saveAll(argThat(buckets -> buckets.iterator().next().getReviewCount() == 2));
+        assertEquals(2, rebuilt.getReviewCount());
+        assertEquals(6, rebuilt.getRatingSum());
+        assertArrayEquals(new long[]{0, 1, 0, 1, 0}, rebuilt.histogram());
+        assertEquals(4, rebuilt.getVersion());
+        assertTrue(rebuilt.getUpdatedAt().isAfter(Instant.EPOCH));
+        verify(statsRepository).save(stats);
+    }
+
+    @Test
+    void testRebuildLeavesMatchingRowUntouched() {
+        ProductReviewStats stats = new ProductReviewStats(PROD);
+        when(statsRepository.lockByProductId(1L, "prod")).thenReturn(Optional.of(stats));
+        when(reviewRepository.aggregateByProductId(1L, "prod"))
+                .thenReturn(new ReviewAggregate(0, 0, 0, 0, 0, 0, 0, null));
+
+        assertSame(stats, statsService.rebuild(PROD));
+        verify(statsRepository, never()).save(any());
+        verify(bucketRepository, never()).deleteByProductId(any(), any());
+    }
+
+    @Test
+    void testFindProductWithStatsComputesMissingRowWithoutStoringIt() {
+        Product product = new Product();
+        product.setUserId(1L);
+        product.setProductId("prod");
+        when(statsRepository.findProductWithStats(1L, "prod")).thenReturn(Optional.of(new ProductWithStats(product, null)));
+        when(reviewRepository.aggregateByProductId(1L, "prod"))
+                .thenReturn(new ReviewAggregate(1, 5, 0, 0, 0, 0, 1, LocalDate.now()));
+
+        ProductWithStats loaded = statsService.findProductWithStats(PROD).orElseThrow();
+
+        assertSame(product, loaded.product());
+        assertEquals(1, loaded.stats().getReviewCount());
+        assertEquals(1, loaded.stats().getStars5());
+        // Reads never write: the repair job creates the row
+        verify(statsRepository, never()).lockByProductId(any(), any());
+        verify(statsRepository, never()).save(any());
+        verifyNoInteractions(bucketRepository);
+    }
+
+    @Test
+    void testFindStatsRowsComputesMissingRowsWithoutStoringThem() {
+        ProductReviewStats existing = new ProductReviewStats(new ProductKey(1L, "a"));
+        when(statsRepository.findStatsRows(1L, List.of("a", "b"))).thenReturn(List.of(
+                new ProductStatsRow("a", "A", existing), new ProductStatsRow("b", "B", null)));
+        when(reviewRepository.aggregateByProductId(1L, "b"))
+                .thenReturn(new ReviewAggregate(2, 7, 0, 0, 1, 1, 0, LocalDate.now()));
+
+        List<ProductStatsRow> rows = statsService.findStatsRows(1L, List.of("a", "b"));
+
+        assertSame(existing, rows.get(0).stats());
+        assertEquals("B", rows.get(1).productName());
+        assertEquals(2, rows.get(1).stats().getReviewCount());
+        assertTrue(statsService.findStatsRows(1L, List.of()).isEmpty());
+        verify(statsRepository, times(1)).findStatsRows(any(), any());
+        verify(statsRepository, never()).save(any());
+    }
+
+    // A bucket holding a single review with the given rating
+    private ReviewStatsBucket bucket(Granularity granularity, LocalDate start, int rating) {
+        ReviewStatsBucket bucket = new ReviewStatsBucket(PROD, granularity, start);
+        bucket.setReviewCount(1);
+        bucket.setRatingSum(rating);
+        switch (rating) {
+            case 1 -> bucket.setStars1(1);
+            case 2 -> bucket.setStars2(1);
+            case 3 -> bucket.setStars3(1);
+            case 4 -> bucket.setStars4(1);
+            default -> bucket.setStars5(1);
+        }
+        return bucket;
+    }
+
+    private Review review(int rating, LocalDate date) {
+        Review review = new Review("Name", "Text", rating, false);
+        review.setDate(date);
+        return review;
+    }
+}
@@ -0,0 +1,63 @@
+package com.jin12.reviews_api.service;
+
+import com.jin12.reviews_api.model.Product;
+import com.jin12.reviews_api.model.Review;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeededReviewGeneratorTest {
+
+    private static Product product(String productId) {
+        Product product = new Product();
+        product.setProductId(productId);
+        product.setProductName("Whitesnake T-shirt");
+        product.setCategory("T-shirt");
+        return product;
+    }
+
+    @Test
+    void testGeneratesRequestedNumberOfAiMarkedReviews() {
+        Product product = product("1T1");
+
+        List<Review> reviews = new SeededReviewGenerator(42).generateReviews(product, 5);
+
+        assertEquals(5, reviews.size());
+        for (Review review : reviews) {
+            assertTrue(review.isGeneratedByAI());
+            assertSame(product, review.getProduct());
+            assertTrue(review.getRating() >= 1 && review.getRating() <= 5);
+            assertFalse(review.getDate().isBefore(LocalDate.now().minusMonths(2)));
+            assertTrue(review.getReviewText().contains("Whitesnake T-shirt"));
+        }
+    }
+
+    @Test
+    void testSameSeedAndProductGiveSameReviews() {
+        List<Review> first = new SeededReviewGenerator(7).generateReviews(product("1T1"), 3);
+        List<Review> second = new SeededReviewGenerator(7).generateReviews(product("1T1"), 3);
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    void testRepeatedCallForSameProductGivesNewReviews() {
+        SeededReviewGenerator generator = new SeededReviewGenerator(7);
+
+        List<Review> first = generator.generateReviews(product("1T1"), 5);
+        List<Review> second = generator.generateReviews(product("1T1"), 5);
+
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void testDifferentSeedGivesDifferentReviews() {
+        List<Review> first = new SeededReviewGenerator(1).generateReviews(product("1T1"), 5);
+        List<Review> second = new SeededReviewGenerator(2).generateReviews(product("1T1"), 5);
+
+        assertNotEquals(first, second);
+    }
+}
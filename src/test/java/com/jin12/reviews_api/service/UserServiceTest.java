@@ -1,14 +1,17 @@
 package com.jin12.reviews_api.service;
 
 import com.jin12.reviews_api.Utils.CryptoUtils;
+import com.jin12.reviews_api.cache.BoundedCache;
 import com.jin12.reviews_api.model.User;
 import com.jin12.reviews_api.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.lang.reflect.Field;
+import java.time.Duration;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -17,6 +20,7 @@ import static org.mockito.Mockito.*;
 class UserServiceTest {
 
     private UserRepository userRepository;
+    private SimpleMeterRegistry registry;
     private UserService userService;
 
     private final String masterKey = "1234567890123456"; // 16 tecken för AES
@@ -24,7 +28,8 @@ class UserServiceTest {
     @BeforeEach
     void setUp() throws Exception {
         userRepository = mock(UserRepository.class);
-        userService = new UserService(userRepository);
+        registry = new SimpleMeterRegistry();
+        userService = new UserService(userRepository, new BoundedCache<>("users", 10, Duration.ofMinutes(1), registry));
 
         // Injicera mocken i private-fältet via reflektion
         Field repoField = UserService.class.getDeclaredField("userRepository");
@@ -86,4 +91,41 @@ class UserServiceTest {
         String decrypted = CryptoUtils.decrypt(masterKey, user.getEncryptedApiKey());
         assertEquals(rawApiKey, decrypted);
     }
+
+    @Test
+    void testGetUserById() {
+        User user = User.builder().id(3L).username("full").build();
+        when(userRepository.findById(3L)).thenReturn(Optional.of(user));
+        when(userRepository.findById(4L)).thenReturn(Optional.empty());
+
+        assertSame(user, userService.getUserById(3L));
+        assertThrows(UsernameNotFoundException.class, () -> userService.getUserById(4L));
+    }
+
+    @Test
+    void testLoadUserByUsernameIsServedFromCacheUntilUserChanges() {
+        User user = User.builder().id(1L).username("cached").password("secret").build();
+        when(userRepository.findByUsername("cached")).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        assertSame(user, userService.loadUserByUsername("cached"));
+        assertSame(user, userService.loadUserByUsername("cached"));
+        verify(userRepository, times(1)).findByUsername("cached");
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "users").tag("result", "hit").counter().count());
+
+        userService.updateUserApiKey(1L, "new-key");
+        userService.loadUserByUsername("cached");
+
+        verify(userRepository, times(2)).findByUsername("cached");
+    }
+
+    @Test
+    void testUnknownUsernameIsNotCached() {
+        when(userRepository.findByUsername("later")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userService.loadUserByUsername("later"));
+        when(userRepository.findByUsername("later")).thenReturn(Optional.of(User.builder().username("later").build()));
+
+        assertEquals("later", userService.loadUserByUsername("later").getUsername());
+    }
 }
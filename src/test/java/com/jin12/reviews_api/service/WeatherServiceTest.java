@@ -3,91 +3,166 @@ package com.jin12.reviews_api.service;
 import com.jin12.reviews_api.dto.weatherService.MainResponse;
 import com.jin12.reviews_api.dto.weatherService.Weather;
 import com.jin12.reviews_api.dto.weatherService.WeatherResponse;
+import com.jin12.reviews_api.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class WeatherServiceTest {
 
-    private WeatherService weatherService;
     private RestTemplate restTemplate;
+    private CircuitBreaker circuitBreaker;
+    // Background refreshes are queued here and run by the test with runRefreshes()
+    private Queue<Runnable> refreshes;
 
     @BeforeEach
     void setUp() {
-        weatherService = new WeatherService();
-
-        // Inject mock RestTemplate
         restTemplate = mock(RestTemplate.class);
-        ReflectionTestUtils.setField(weatherService, "restTemplate", restTemplate);
+        circuitBreaker = new CircuitBreaker("weather", 50, 4, 2, Duration.ZERO, Duration.ofMinutes(1), 1,
+                new SimpleMeterRegistry());
+        refreshes = new ArrayDeque<>();
+    }
+
+    private WeatherService weatherService() {
+        WeatherService weatherService = new WeatherService(restTemplate, circuitBreaker, refreshes::add, 3);
 
         // Inject dummy API URL and key
         ReflectionTestUtils.setField(weatherService, "WEATHER_API_URL", "https://mock-api.com/weather");
         ReflectionTestUtils.setField(weatherService, "WEATHER_API_KEY", "dummy-key");
-
-        // Reset static fields (needed for clean state)
-        ReflectionTestUtils.setField(WeatherService.class, "latestWeather", null);
-        ReflectionTestUtils.setField(WeatherService.class, "latestWeatherTimestamp", 0L);
+        return weatherService;
     }
 
-    @Test
-    void testGetWeather_ReturnsWeatherDescription() {
-        WeatherResponse mockResponse = new WeatherResponse();
-        Weather mockWeather = new Weather();
-        mockWeather.setDescription("Clear sky");
-
-        MainResponse mockMain = new MainResponse();
-        mockMain.setTemp(293.15); // 20°C
+    private void runRefreshes() {
+        Runnable refresh;
+        while ((refresh = refreshes.poll()) != null) {
+            refresh.run();
+        }
+    }
 
-        mockResponse.setWeather(new Weather[]{mockWeather});
-        mockResponse.setMain(mockMain);
+    private static WeatherResponse weather(String description, double kelvin) {
+        WeatherResponse response = new WeatherResponse();
+        Weather w = new Weather();
+        w.setDescription(description);
+        MainResponse main = new MainResponse();
+        main.setTemp(kelvin);
+        response.setWeather(new Weather[]{w});
+        response.setMain(main);
+        return response;
+    }
 
+    @Test
+    void testPrefetch_FetchesInTheBackground() {
+        WeatherService weatherService = weatherService();
         when(restTemplate.getForObject(anyString(), eq(WeatherResponse.class)))
-                .thenReturn(mockResponse);
+                .thenReturn(weather("Clear sky", 293.15));
 
-        String result = weatherService.getWeather();
+        weatherService.prefetch();
+        verifyNoInteractions(restTemplate);
+        runRefreshes();
 
-        assertNotNull(result);
+        String result = weatherService.getWeather();
         assertTrue(result.contains("Clear sky"));
         assertTrue(result.contains("Temperature"));
     }
 
     @Test
-    void testGetWeather_ReturnsCachedValueWhenCalledTooSoon() {
-        // First call - returns real value
-        WeatherResponse mockResponse = new WeatherResponse();
-        Weather mockWeather = new Weather();
-        mockWeather.setDescription("Sunny");
+    void testPrefetch_SkipsWhileEarlierFetchIsPending() {
+        WeatherService weatherService = weatherService();
+        when(restTemplate.getForObject(anyString(), eq(WeatherResponse.class)))
+                .thenReturn(weather("Sunny", 300.15));
+
+        weatherService.prefetch();
+        weatherService.prefetch();
+        assertEquals(1, refreshes.size());
+        runRefreshes();
 
-        MainResponse mockMain = new MainResponse();
-        mockMain.setTemp(300.15); // 27°C
+        // Once the fetch has finished the next interval schedules a new one
+        weatherService.prefetch();
+        assertEquals(1, refreshes.size());
+    }
 
-        mockResponse.setWeather(new Weather[]{mockWeather});
-        mockResponse.setMain(mockMain);
+    @Test
+    void testPrefetch_KeepsSnapshotsAndStopsCallingApiWhenCircuitOpens() {
+        WeatherService weatherService = weatherService();
+        when(restTemplate.getForObject(anyString(), eq(WeatherResponse.class)))
+                .thenReturn(weather("Sunny", 300.15))
+                .thenThrow(new ResourceAccessException("timeout"));
+
+        for (int i = 0; i < 5; i++) {
+            weatherService.prefetch();
+            runRefreshes();
+            assertTrue(weatherService.getWeather().contains("Sunny"));
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        // One success and one failure reach the 50% threshold and open the breaker
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(WeatherResponse.class));
+    }
 
+    @Test
+    void testPrefetch_IgnoresNullResponse() {
+        WeatherService weatherService = weatherService();
         when(restTemplate.getForObject(anyString(), eq(WeatherResponse.class)))
-                .thenReturn(mockResponse);
+                .thenReturn(null);
 
-        String firstCall = weatherService.getWeather();
-        String secondCall = weatherService.getWeather(); // Should return cached value
+        weatherService.prefetch();
+        runRefreshes();
 
-        // Same value since second call is within cache timeout
-        assertEquals(firstCall, secondCall);
-        verify(restTemplate, times(1)).getForObject(anyString(), eq(WeatherResponse.class));
+        assertEquals(WeatherService.UNKNOWN_WEATHER, weatherService.getWeather());
     }
 
     @Test
-    void testGetWeather_ReturnsNullIfApiReturnsNull() {
+    void testGetWeather_PicksFromPrefetchedSnapshotsWithoutCallingApi() {
+        WeatherService weatherService = weatherService();
         when(restTemplate.getForObject(anyString(), eq(WeatherResponse.class)))
-                .thenReturn(null);
+                .thenReturn(weather("Sunny", 300.15), weather("Rain", 283.15));
+        weatherService.prefetch();
+        runRefreshes();
+        weatherService.prefetch();
+        runRefreshes();
+
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            seen.add(weatherService.getWeather());
+        }
+
+        assertEquals(2, seen.size());
+        assertTrue(seen.stream().anyMatch(w -> w.contains("Sunny")));
+        assertTrue(seen.stream().anyMatch(w -> w.contains("Rain")));
+        assertTrue(refreshes.isEmpty());
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(WeatherResponse.class));
+    }
 
-        String result = weatherService.getWeather();
+    @Test
+    void testGetWeather_RingBufferKeepsOnlyLatestSnapshots() {
+        WeatherService weatherService = weatherService();
+        when(restTemplate.getForObject(anyString(), eq(WeatherResponse.class)))
+                .thenReturn(weather("Old", 280.15), weather("A", 280.15), weather("B", 280.15), weather("C", 280.15));
+        for (int i = 0; i < 4; i++) {
+            weatherService.prefetch();
+            runRefreshes();
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(weatherService.getWeather().startsWith("Old"));
+        }
+    }
 
-        // Null means fallback to latestWeather, which should be null in this case
-        assertNull(result);
+    @Test
+    void testGetWeather_ReturnsPlaceholderBeforeFirstPrefetch() {
+        assertEquals(WeatherService.UNKNOWN_WEATHER, weatherService().getWeather());
     }
 
     @Test